@@ -0,0 +1,153 @@
+package com.mihai.whatsappclone;
+
+import com.mihai.whatsappclone.chat.Chat;
+import com.mihai.whatsappclone.message.Message;
+import com.mihai.whatsappclone.message.MessageState;
+import com.mihai.whatsappclone.message.MessageType;
+import com.mihai.whatsappclone.notification.Notification;
+import com.mihai.whatsappclone.notification.NotificationType;
+import com.mihai.whatsappclone.user.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the entities, tokens and payloads shared by the benchmarks.
+ * The data mirrors what the application handles: two participants, text and media messages.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String SENDER_ID = "2f1e6c3a-9d4b-4c58-8f0e-6a7b1c2d3e4f";
+    public static final String RECIPIENT_ID = "7a8b9c0d-1e2f-4a3b-9c4d-5e6f7a8b9c0d";
+
+    // Size of a placeholder generated for an image message.
+    private static final int PLACEHOLDER_SIZE = 700;
+
+    /**
+     * Creates a chat between the two benchmark users, holding the given number of messages.
+     *
+     * @param messageCount The number of messages of the chat.
+     * @return The Chat entity with its summary set.
+     */
+    public static Chat chat(int messageCount) {
+        Chat chat = new Chat();
+        chat.setId("0c1d2e3f-4a5b-4c6d-8e7f-9a0b1c2d3e4f");
+        chat.setSender(user(SENDER_ID, "Mihai", "Elisei"));
+        chat.setRecipient(user(RECIPIENT_ID, "Ana", "Popescu"));
+        chat.setCreatedDate(LocalDateTime.now());
+
+        List<Message> messages = new ArrayList<>(messageCount);
+        for (int i = 1; i <= messageCount; i++) {
+            messages.add(message(chat, i, i % 2 == 0 ? SENDER_ID : RECIPIENT_ID, false));
+        }
+        chat.setMessages(messages);
+
+        // The summary as maintained on every sent message.
+        chat.setLastMessageId((long) messageCount);
+        chat.setLastMessagePreview("See you tomorrow at the station, the train leaves at 9");
+        chat.setLastMessageType(MessageType.TEXT);
+        chat.setLastMessageDate(LocalDateTime.now());
+        chat.setSenderUnreadCount(messageCount / 2);
+        chat.setRecipientLastReadMessageId(messageCount / 2L);
+        return chat;
+    }
+
+    /**
+     * Creates a message of the given chat.
+     *
+     * @param chat     The chat of the message.
+     * @param id       The ID of the message.
+     * @param senderId The ID of the sender, the other participant is the recipient.
+     * @param media    Whether the message is an image with a placeholder.
+     * @return The Message entity.
+     */
+    public static Message message(Chat chat, long id, String senderId, boolean media) {
+        Message message = new Message();
+        message.setId(id);
+        message.setChat(chat);
+        message.setSenderId(senderId);
+        message.setRecipientId(SENDER_ID.equals(senderId) ? RECIPIENT_ID : SENDER_ID);
+        message.setState(MessageState.SENT);
+        message.setCreatedDate(LocalDateTime.now());
+        if (media) {
+            message.setType(MessageType.IMAGE);
+            message.setMediaFilePath("./uploads/media/ab/cd/abcd" + id);
+            message.setMediaContentType("image/jpeg");
+            message.setMediaSize(2_400_000L);
+            message.setMediaPlaceholder(new byte[PLACEHOLDER_SIZE]);
+        } else {
+            message.setType(MessageType.TEXT);
+            message.setContent("See you tomorrow at the station, the train leaves at 9");
+        }
+        return message;
+    }
+
+    /**
+     * Creates the notification pushed for a new message.
+     *
+     * @param media Whether the message is an image.
+     * @return The Notification.
+     */
+    public static Notification notification(boolean media) {
+        return Notification.builder()
+                .chatId("0c1d2e3f-4a5b-4c6d-8e7f-9a0b1c2d3e4f")
+                .content(media ? null : "See you tomorrow at the station, the train leaves at 9")
+                .senderId(SENDER_ID)
+                .recipientId(RECIPIENT_ID)
+                .chatName("Mihai Elisei")
+                .messageType(media ? MessageType.IMAGE : MessageType.TEXT)
+                .type(media ? NotificationType.IMAGE : NotificationType.MESSAGE)
+                .mediaUrl(media ? "/api/v1/messages/42/media" : null)
+                .previewUrl(media ? "/api/v1/messages/42/media?size=preview" : null)
+                .messageId(42L)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Creates an access token as issued by Keycloak for the sender.
+     *
+     * @return The decoded Jwt.
+     */
+    public static Jwt jwt() {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(SENDER_ID)
+                .issuer("http://localhost:9090/realms/whatsapp-clone")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .claim("email", "mihai@example.com")
+                .claim("given_name", "Mihai")
+                .claim("family_name", "Elisei")
+                .claim("scope", "openid profile email")
+                .claim("resource_access", Map.of("account", Map.of(
+                        "roles", List.of("manage-account", "manage-account-links", "view-profile"))))
+                .build();
+    }
+
+    /**
+     * Creates a JSON mapper configured like the one auto-configured by Spring Boot.
+     *
+     * @return The ObjectMapper.
+     */
+    public static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    private static User user(String id, String firstName, String lastName) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(firstName.toLowerCase() + "@example.com");
+        return user;
+    }
+
+    private BenchmarkFixtures() {}
+}
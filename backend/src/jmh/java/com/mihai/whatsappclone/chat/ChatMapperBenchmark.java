@@ -0,0 +1,43 @@
+package com.mihai.whatsappclone.chat;
+
+import com.mihai.whatsappclone.BenchmarkFixtures;
+import com.mihai.whatsappclone.presence.PresenceService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the mapping of Chat entities to the DTOs of the chat list.
+ * The number of messages held by the chat must not change the cost, the unread count and the last message
+ * are read from the summary maintained on the chat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatMapperBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int messageCount;
+
+    private ChatMapper mapper;
+    private Chat chat;
+
+    @Setup
+    public void setUp() {
+        mapper = new ChatMapper(new PresenceService(event -> { }, 60000));
+        chat = BenchmarkFixtures.chat(messageCount);
+    }
+
+    @Benchmark
+    public ChatResponse toChatResponse() {
+        return mapper.toChatResponse(chat, BenchmarkFixtures.SENDER_ID);
+    }
+
+    @Benchmark
+    public long getUnreadMessages() {
+        return chat.getUnreadMessages(BenchmarkFixtures.SENDER_ID);
+    }
+}
@@ -0,0 +1,41 @@
+package com.mihai.whatsappclone.message;
+
+import com.mihai.whatsappclone.BenchmarkFixtures;
+import com.mihai.whatsappclone.chat.Chat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the mapping of Message entities to the DTOs returned by the history endpoints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageMapperBenchmark {
+
+    private final MessageMapper mapper = new MessageMapper();
+
+    private Message textMessage;
+    private Message mediaMessage;
+
+    @Setup
+    public void setUp() {
+        Chat chat = BenchmarkFixtures.chat(0);
+        textMessage = BenchmarkFixtures.message(chat, 1, BenchmarkFixtures.SENDER_ID, false);
+        mediaMessage = BenchmarkFixtures.message(chat, 2, BenchmarkFixtures.SENDER_ID, true);
+    }
+
+    @Benchmark
+    public MessageResponse textMessage() {
+        return mapper.toMessageResponse(textMessage);
+    }
+
+    @Benchmark
+    public MessageResponse mediaMessage() {
+        return mapper.toMessageResponse(mediaMessage);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mihai.whatsappclone.message;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihai.whatsappclone.BenchmarkFixtures;
+import com.mihai.whatsappclone.chat.Chat;
+import com.mihai.whatsappclone.notification.Notification;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Benchmarks the JSON serialization of the payloads returned by the REST endpoints and pushed over STOMP,
+ * with and without media. Media content is never inlined, a media message carries URLs and a small placeholder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    // Number of messages of a history page.
+    private static final int PAGE_SIZE = MessageConstants.DEFAULT_PAGE_SIZE;
+
+    @Param({"false", "true"})
+    private boolean media;
+
+    private final ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+
+    private MessageResponse messageResponse;
+    private List<MessageResponse> page;
+    private Notification notification;
+
+    @Setup
+    public void setUp() {
+        MessageMapper mapper = new MessageMapper();
+        Chat chat = BenchmarkFixtures.chat(0);
+        messageResponse = mapper.toMessageResponse(BenchmarkFixtures.message(chat, 1, BenchmarkFixtures.SENDER_ID, media));
+        page = LongStream.rangeClosed(1, PAGE_SIZE)
+                .mapToObj(id -> mapper.toMessageResponse(BenchmarkFixtures.message(chat, id, BenchmarkFixtures.SENDER_ID, media)))
+                .toList();
+        notification = BenchmarkFixtures.notification(media);
+    }
+
+    @Benchmark
+    public byte[] messageResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(messageResponse);
+    }
+
+    @Benchmark
+    public byte[] messagePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] notification() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(notification);
+    }
+}
@@ -0,0 +1,34 @@
+package com.mihai.whatsappclone.security;
+
+import com.mihai.whatsappclone.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion of a decoded token to an authentication, done on every HTTP request and STOMP CONNECT.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeycloakJwtAuthenticationConverterBenchmark {
+
+    private final KeycloakJwtAuthenticationConverter converter = new KeycloakJwtAuthenticationConverter();
+
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() {
+        jwt = BenchmarkFixtures.jwt();
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return converter.convert(jwt);
+    }
+}
@@ -0,0 +1,57 @@
+package com.mihai.whatsappclone.websocket;
+
+import com.mihai.whatsappclone.BenchmarkFixtures;
+import com.mihai.whatsappclone.notification.Notification;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the message converters registered by {@link WebSocketConfig}, which turn the notifications
+ * into frame payloads in each of the codecs a session can negotiate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebSocketConverterBenchmark {
+
+    @Param({"false", "true"})
+    private boolean media;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private PayloadCodec codec;
+
+    private MessageConverter converter;
+    private Notification notification;
+
+    @Setup
+    public void setUp() {
+        // The interceptors and the channel executors are not involved in the conversion.
+        List<MessageConverter> converters = new ArrayList<>();
+        new WebSocketConfig(null, null, BenchmarkFixtures.objectMapper(), null, null).configureMessageConverters(converters);
+        // Negotiated payloads are passed through unserialized, select the converter writing the codec itself.
+        converter = converters.stream()
+                .filter(c -> c instanceof AbstractMessageConverter a
+                        && a.getSupportedMimeTypes().stream().anyMatch(codec.getMimeType()::equalsTypeAndSubtype))
+                .findFirst()
+                .orElseThrow();
+        notification = BenchmarkFixtures.notification(media);
+    }
+
+    @Benchmark
+    public Message<?> toMessage() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setContentType(codec.getMimeType());
+        accessor.setLeaveMutable(true);
+        return converter.toMessage(notification, accessor.getMessageHeaders());
+    }
+}
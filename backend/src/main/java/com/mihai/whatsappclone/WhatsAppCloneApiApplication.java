@@ -8,6 +8,7 @@ import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the WhatsApp Clone API application.
@@ -15,6 +16,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
  */
 @SpringBootApplication // Marks this as a Spring Boot application.
 @EnableJpaAuditing // Enables JPA auditing for tracking entity changes (e.g., createdDate, lastModifiedDate).
+@EnableScheduling // Enables scheduled background tasks (e.g., flushing buffered user activity).
 @SecurityScheme( // Defines the OpenAPI security scheme for OAuth2 integration with Keycloak.
 		name = "keycloak", // Name of the security scheme (referenced in OpenAPI configurations).
 		type = SecuritySchemeType.OAUTH2, // Specifies OAuth2 as the security scheme type.
@@ -0,0 +1,16 @@
+package com.mihai.whatsappclone.changefeed;
+
+/**
+ * Constants used by the change feed.
+ */
+public class ChangeFeedConstants {
+
+    // Number of changes returned by a page when the client does not ask for a limit.
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    // Upper bound for the number of changes of a page.
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // Private constructor to prevent instantiation of the class.
+    private ChangeFeedConstants() {}
+}
@@ -0,0 +1,41 @@
+package com.mihai.whatsappclone.changefeed;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing the change feed of the current user, used to catch up after a reconnection.
+ */
+@RestController
+@RequestMapping("/api/v1/changes") // Base path for the change feed.
+@RequiredArgsConstructor // Automatically generates a constructor for required fields (final fields).
+@Tag(name="Change", description="Endpoints for synchronizing clients incrementally.")
+public class ChangeFeedController {
+
+    private final ChangeFeedService changeFeedService;
+
+    /**
+     * Endpoint for retrieving the changes that followed a sequence number.
+     * A client without a sequence number, or told to resynchronize, reloads its chats and continues from
+     * the returned "lastSeq".
+     *
+     * @param since          The last sequence number seen by the client.
+     * @param limit          The maximum number of changes (bounded by the server).
+     * @param authentication The authentication object for retrieving the current user.
+     * @return The missed changes wrapped in a ResponseEntity.
+     */
+    @GetMapping
+    public ResponseEntity<ChangeFeedResponse> getChanges(
+            @RequestParam(name = "since", required = false) Long since,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            Authentication authentication
+    ) {
+        return ResponseEntity.ok(changeFeedService.findChanges(since, limit, authentication));
+    }
+}
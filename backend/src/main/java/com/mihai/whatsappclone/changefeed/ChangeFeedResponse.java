@@ -0,0 +1,37 @@
+package com.mihai.whatsappclone.changefeed;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A DTO (Data Transfer Object) representing the changes missed by a client since a sequence number.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChangeFeedResponse {
+
+    /**
+     * The changes following the requested sequence number, in order.
+     */
+    private List<ChangeResponse> changes;
+
+    /**
+     * The sequence number to send as "since" on the next request.
+     */
+    private long lastSeq;
+
+    /**
+     * Indicates whether more changes are available after this page.
+     */
+    private boolean hasMore;
+
+    /**
+     * Indicates that the requested changes are no longer available: the client must reload its chats and
+     * messages, then continue from {@link #lastSeq}.
+     */
+    private boolean resyncRequired;
+}
@@ -0,0 +1,310 @@
+package com.mihai.whatsappclone.changefeed;
+
+import com.mihai.whatsappclone.chat.Chat;
+import com.mihai.whatsappclone.chat.ChatDescriptor;
+import com.mihai.whatsappclone.chat.ChatMapper;
+import com.mihai.whatsappclone.chat.ChatRepository;
+import com.mihai.whatsappclone.message.Message;
+import com.mihai.whatsappclone.message.MessageMapper;
+import com.mihai.whatsappclone.message.MessageRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Service maintaining the per-user change feed used by clients to catch up after a reconnection.
+ * Every change is appended to the feed of each participant of the chat in the transaction of the change, without
+ * locking the participants: concurrent changes of the same user never wait for each other. The committed changes
+ * of a user are numbered with the next sequence numbers of the user when their feed is read, under a short lock of
+ * the user, so that the sequence numbers of a user have no gaps and a change committed late is numbered after the
+ * ones already read instead of behind them. A client sends the last sequence number it has seen and receives
+ * only the changes that followed, or is told to resynchronize if they were purged.
+ */
+@Service
+@Slf4j
+public class ChangeFeedService {
+
+    /**
+     * Appends a change to the pending changes of a user, numbered when the feed of the user is read.
+     */
+    private static final String APPEND_CHANGE = """
+            INSERT INTO pending_user_changes (user_id, type, chat_id, message_id, actor_id, created_date)
+            VALUES (?, ?, ?, ?, ?, now())
+            """;
+
+    private static final String HAS_PENDING_CHANGES = "SELECT EXISTS (SELECT 1 FROM pending_user_changes WHERE user_id = ?)";
+
+    private static final String SELECT_CHANGE_SEQ = "SELECT change_seq FROM users WHERE id = ?";
+
+    // Numbering of the pending changes of a user, the lock is held until the end of the numbering transaction.
+    private static final String LOCK_CHANGE_SEQ = "SELECT change_seq FROM users WHERE id = ? FOR NO KEY UPDATE";
+
+    /**
+     * Moves the committed pending changes of a user to their feed, numbered in the order they were appended
+     * after the given sequence number, and returns the new sequence number of the user.
+     * Runs once the user is locked, so its snapshot holds the changes committed by the previous numbering.
+     */
+    private static final String NUMBER_PENDING_CHANGES = """
+            WITH pending AS (DELETE FROM pending_user_changes WHERE user_id = ?
+                             RETURNING id, type, chat_id, message_id, actor_id, created_date),
+                 numbered AS (INSERT INTO user_changes (user_id, seq, type, chat_id, message_id, actor_id, created_date)
+                              SELECT ?, ? + row_number() OVER (ORDER BY id), type, chat_id, message_id, actor_id, created_date
+                              FROM pending
+                              RETURNING seq)
+            UPDATE users SET change_seq = (SELECT coalesce(max(seq), ?) FROM numbered) WHERE id = ?
+            RETURNING change_seq
+            """;
+
+    private static final String FIND_USERS_WITH_STALE_CHANGES =
+            "SELECT DISTINCT user_id FROM pending_user_changes WHERE created_date < now() - ? * interval '1 millisecond'";
+
+    private static final String SELECT_CHANGES = """
+            SELECT seq, type, chat_id, message_id, actor_id FROM user_changes
+            WHERE user_id = ? AND seq > ?
+            ORDER BY seq
+            LIMIT ?
+            """;
+
+    private static final String PURGE_CHANGES =
+            "DELETE FROM user_changes WHERE created_date < now() - ? * interval '1 millisecond'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageRepository messageRepository;
+    private final MessageMapper messageMapper;
+    private final ChatRepository chatRepository;
+    private final ChatMapper chatMapper;
+    private final long retentionMillis; // Age after which changes are purged.
+    private final long maxReplay; // Number of missed changes beyond which a full reload is cheaper.
+
+    public ChangeFeedService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             MessageRepository messageRepository,
+                             MessageMapper messageMapper,
+                             ChatRepository chatRepository,
+                             ChatMapper chatMapper,
+                             @Value("${application.change-feed.retention}") long retentionMillis,
+                             @Value("${application.change-feed.max-replay}") long maxReplay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messageRepository = messageRepository;
+        this.messageMapper = messageMapper;
+        this.chatRepository = chatRepository;
+        this.chatMapper = chatMapper;
+        this.retentionMillis = retentionMillis;
+        this.maxReplay = maxReplay;
+    }
+
+    /**
+     * Records new messages in the feeds of their senders and recipients.
+     *
+     * @param messages The saved messages, in the order they were sent.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordMessages(List<Message> messages) {
+        List<PendingChange> changes = new ArrayList<>(messages.size() * 2);
+        for (Message message : messages) {
+            String chatId = message.getChat().getId();
+            changes.add(new PendingChange(message.getSenderId(), ChangeType.MESSAGE, chatId, message.getId(), message.getSenderId()));
+            changes.add(new PendingChange(message.getRecipientId(), ChangeType.MESSAGE, chatId, message.getId(), message.getSenderId()));
+        }
+        append(changes);
+    }
+
+    /**
+     * Records a moved read watermark in the feeds of both participants.
+     *
+     * @param chat              The descriptor of the chat that was read.
+     * @param readerId          The ID of the participant who read the chat.
+     * @param lastReadMessageId The new read watermark.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSeen(ChatDescriptor chat, String readerId, Long lastReadMessageId) {
+        append(participantChanges(chat.id(), chat.senderId(), chat.recipientId(), ChangeType.SEEN, lastReadMessageId, readerId));
+    }
+
+    /**
+     * Records a new chat in the feeds of both participants.
+     *
+     * @param chat      The created chat.
+     * @param creatorId The ID of the participant who created the chat.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChatCreated(Chat chat, String creatorId) {
+        append(participantChanges(chat.getId(), chat.getSender().getId(), chat.getRecipient().getId(), ChangeType.CHAT_CREATED, null, creatorId));
+    }
+
+    /**
+     * Retrieves the changes of the authenticated user following a sequence number, once their committed pending
+     * changes are numbered.
+     * Without a sequence number, or when the changes are no longer available, the response asks for a full
+     * reload and gives the sequence number to continue from.
+     *
+     * @param since          The last sequence number seen by the client, or null on the first synchronization.
+     * @param limit          The maximum number of changes (bounded by the server).
+     * @param authentication The current authenticated user's details.
+     * @return The missed changes, with their messages and chats.
+     * @throws EntityNotFoundException if the user has not been synchronized yet.
+     */
+    @Transactional
+    public ChangeFeedResponse findChanges(Long since, Integer limit, Authentication authentication) {
+        final String userId = authentication.getName();
+        final int pageSize = limit == null
+                ? ChangeFeedConstants.DEFAULT_PAGE_SIZE
+                : Math.clamp(limit, 1, ChangeFeedConstants.MAX_PAGE_SIZE);
+
+        final long currentSeq = numberPendingChanges(userId);
+
+        // Unknown or too old positions cannot be replayed.
+        if (since == null || since < 0 || since > currentSeq || currentSeq - since > maxReplay) {
+            return resync(currentSeq);
+        }
+        if (since == currentSeq) {
+            return ChangeFeedResponse.builder().changes(List.of()).lastSeq(currentSeq).build();
+        }
+
+        List<UserChange> rows = jdbcTemplate.query(SELECT_CHANGES, (rs, rowNum) -> {
+            UserChange change = new UserChange();
+            change.setSeq(rs.getLong("seq"));
+            change.setType(ChangeType.valueOf(rs.getString("type")));
+            change.setChatId(rs.getString("chat_id"));
+            change.setMessageId((Long) rs.getObject("message_id"));
+            change.setActorId(rs.getString("actor_id"));
+            return change;
+        }, userId, since, pageSize + 1);
+
+        // The change following the client position was purged.
+        if (rows.isEmpty() || rows.getFirst().getSeq() != since + 1) {
+            return resync(currentSeq);
+        }
+        final List<UserChange> page = rows.subList(0, Math.min(rows.size(), pageSize));
+
+        // Load the chats and messages referenced by the page at once.
+        Map<String, Chat> chats = chatRepository.findChatsWithParticipants(page.stream()
+                        .map(UserChange::getChatId)
+                        .collect(toSet()))
+                .stream()
+                .collect(toMap(Chat::getId, Function.identity()));
+        Map<Long, Message> messages = messageRepository.findAllById(page.stream()
+                        .filter(change -> change.getType() == ChangeType.MESSAGE)
+                        .map(UserChange::getMessageId)
+                        .collect(toSet()))
+                .stream()
+                .collect(toMap(Message::getId, Function.identity()));
+
+        List<ChangeResponse> changes = page.stream()
+                .map(change -> toChangeResponse(change, userId, chats, messages))
+                .toList();
+
+        return ChangeFeedResponse.builder()
+                .changes(changes)
+                .lastSeq(page.getLast().getSeq())
+                .hasMore(rows.size() > pageSize)
+                .build();
+    }
+
+    /**
+     * Deletes the changes older than the retention period.
+     * Pending changes older than the retention period are numbered first, so that the clients of users who have
+     * not read their feed since are told to resynchronize instead of silently missing them.
+     */
+    @Scheduled(fixedDelayString = "${application.change-feed.purge-interval}")
+    public void purgeChanges() {
+        for (String userId : jdbcTemplate.queryForList(FIND_USERS_WITH_STALE_CHANGES, String.class, retentionMillis)) {
+            transactionTemplate.executeWithoutResult(status -> numberPendingChanges(userId));
+        }
+        int purged = jdbcTemplate.update(PURGE_CHANGES, retentionMillis);
+        if (purged > 0) {
+            log.info("Purged {} changes older than {} ms", purged, retentionMillis);
+        }
+    }
+
+    /**
+     * Appends changes to the pending changes of their users, in one JDBC batch and in the given order.
+     * No user is locked, the changes are numbered when the feed of each user is read.
+     */
+    private void append(List<PendingChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = changes.stream()
+                .map(change -> new Object[]{
+                        change.userId(), change.type().name(), change.chatId(), change.messageId(), change.actorId()})
+                .toList();
+        jdbcTemplate.batchUpdate(APPEND_CHANGE, rows);
+    }
+
+    /**
+     * Numbers the committed pending changes of a user, in the current transaction.
+     * The user is only locked when they have pending changes, until the end of the transaction.
+     *
+     * @param userId The ID of the user.
+     * @return The sequence number of the last change of the user.
+     * @throws EntityNotFoundException if the user has not been synchronized yet.
+     */
+    private long numberPendingChanges(String userId) {
+        final boolean pending = Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_PENDING_CHANGES, Boolean.class, userId));
+        final long currentSeq;
+        try {
+            currentSeq = jdbcTemplate.queryForObject(pending ? LOCK_CHANGE_SEQ : SELECT_CHANGE_SEQ, Long.class, userId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new EntityNotFoundException("User with id " + userId + " not found");
+        }
+        if (!pending) {
+            return currentSeq;
+        }
+        return jdbcTemplate.queryForObject(NUMBER_PENDING_CHANGES, Long.class, userId, userId, currentSeq, currentSeq, userId);
+    }
+
+    private List<PendingChange> participantChanges(String chatId, String senderId, String recipientId,
+                                                   ChangeType type, Long messageId, String actorId) {
+        return List.of(
+                new PendingChange(senderId, type, chatId, messageId, actorId),
+                new PendingChange(recipientId, type, chatId, messageId, actorId));
+    }
+
+    private ChangeResponse toChangeResponse(UserChange change, String userId, Map<String, Chat> chats, Map<Long, Message> messages) {
+        Chat chat = chats.get(change.getChatId());
+        Message message = change.getType() == ChangeType.MESSAGE ? messages.get(change.getMessageId()) : null;
+        return ChangeResponse.builder()
+                .seq(change.getSeq())
+                .type(change.getType())
+                .chatId(change.getChatId())
+                .messageId(change.getMessageId())
+                .actorId(change.getActorId())
+                .message(message != null ? messageMapper.toMessageResponse(message) : null)
+                .chat(change.getType() == ChangeType.CHAT_CREATED && chat != null ? chatMapper.toChatResponse(chat, userId) : null)
+                .build();
+    }
+
+    private ChangeFeedResponse resync(long currentSeq) {
+        return ChangeFeedResponse.builder()
+                .changes(List.of())
+                .lastSeq(currentSeq)
+                .resyncRequired(true)
+                .build();
+    }
+
+    /**
+     * A change to append to the feed of a user.
+     */
+    private record PendingChange(String userId, ChangeType type, String chatId, Long messageId, String actorId) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.mihai.whatsappclone.changefeed;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mihai.whatsappclone.chat.ChatResponse;
+import com.mihai.whatsappclone.message.MessageResponse;
+import lombok.*;
+
+/**
+ * A DTO (Data Transfer Object) representing one entry of a change feed.
+ * Only the fields relevant to the type of change are set, the others are omitted from the JSON.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeResponse {
+
+    /**
+     * The position of the change in the feed of the user.
+     */
+    private long seq;
+
+    /**
+     * The kind of change.
+     */
+    private ChangeType type;
+
+    /**
+     * The ID of the chat that changed.
+     */
+    private String chatId;
+
+    /**
+     * The ID of the new message, or of the last read message for a SEEN change.
+     */
+    private Long messageId;
+
+    /**
+     * The ID of the user who made the change: the sender of the message, the reader of the chat or its creator.
+     */
+    private String actorId;
+
+    /**
+     * The new message, for a MESSAGE change.
+     */
+    private MessageResponse message;
+
+    /**
+     * The new chat, for a CHAT_CREATED change.
+     */
+    private ChatResponse chat;
+}
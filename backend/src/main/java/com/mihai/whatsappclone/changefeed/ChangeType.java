@@ -0,0 +1,11 @@
+package com.mihai.whatsappclone.changefeed;
+
+/**
+ * Enum representing the kinds of changes recorded in the change feed of a user.
+ */
+public enum ChangeType {
+
+    MESSAGE, // A message was sent or received in one of the user's chats.
+    SEEN, // The read watermark of a participant moved in one of the user's chats.
+    CHAT_CREATED // A chat including the user was created.
+}
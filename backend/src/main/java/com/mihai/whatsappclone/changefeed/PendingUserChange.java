@@ -0,0 +1,73 @@
+package com.mihai.whatsappclone.changefeed;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a change appended to the feed of a user but not numbered yet.
+ * Rows are written in the transaction of the change without locking the user, and moved to {@link UserChange}
+ * with the next sequence numbers of the user when their feed is read or purged.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity // Marks this class as a JPA entity.
+@Table( // Maps the entity to the "pending_user_changes" table in the database.
+        name = "pending_user_changes",
+        indexes = @Index( // Index backing the numbering of the pending changes of a user.
+                name = "idx_pending_user_changes_user_id",
+                columnList = "user_id, id"
+        )
+)
+public class PendingUserChange {
+
+    /**
+     * The position of the change among the pending changes, the changes of a user are numbered in this order.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The ID of the user the change is recorded for.
+     */
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    /**
+     * The kind of change.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ChangeType type;
+
+    /**
+     * The ID of the chat that changed.
+     */
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    /**
+     * The ID of the new message, or of the last read message for a SEEN change.
+     */
+    @Column(name = "message_id")
+    private Long messageId;
+
+    /**
+     * The ID of the user who made the change.
+     */
+    @Column(name = "actor_id", nullable = false)
+    private String actorId;
+
+    /**
+     * The date the change was recorded, kept once the change is numbered.
+     */
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+}
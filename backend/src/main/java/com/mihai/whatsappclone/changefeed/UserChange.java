@@ -0,0 +1,79 @@
+package com.mihai.whatsappclone.changefeed;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Represents one entry of the change feed of a user.
+ * Entries are numbered per user without gaps, from the change_seq counter of the users table, when they are
+ * moved from {@link PendingUserChange} on a read of the feed. They only reference the changed chat and message,
+ * and are purged once older than the retention period.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity // Marks this class as a JPA entity.
+@Table(name = "user_changes") // Maps the entity to the "user_changes" table in the database.
+@IdClass(UserChange.UserChangeId.class)
+public class UserChange {
+
+    /**
+     * The ID of the user the change is recorded for.
+     */
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    /**
+     * The position of the change in the feed of the user, starting at 1.
+     */
+    @Id
+    private long seq;
+
+    /**
+     * The kind of change.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ChangeType type;
+
+    /**
+     * The ID of the chat that changed.
+     */
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    /**
+     * The ID of the new message, or of the last read message for a SEEN change.
+     */
+    @Column(name = "message_id")
+    private Long messageId;
+
+    /**
+     * The ID of the user who made the change: the sender of the message, the reader of the chat or its creator.
+     */
+    @Column(name = "actor_id", nullable = false)
+    private String actorId;
+
+    /**
+     * The date the change was recorded, used for the retention.
+     */
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+
+    /**
+     * The composite primary key of a change: the user and the position in their feed.
+     *
+     * @param userId The ID of the user.
+     * @param seq    The position of the change.
+     */
+    public record UserChangeId(String userId, long seq) implements Serializable {
+    }
+}
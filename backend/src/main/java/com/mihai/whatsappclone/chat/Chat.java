@@ -1,7 +1,6 @@
 package com.mihai.whatsappclone.chat;
 
 import com.mihai.whatsappclone.common.BaseAuditingEntity;
-import com.mihai.whatsappclone.message.MessageState;
 import com.mihai.whatsappclone.message.MessageType;
 import com.mihai.whatsappclone.user.User;
 import jakarta.persistence.*;
@@ -10,6 +9,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import com.mihai.whatsappclone.message.Message;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,13 +20,64 @@ import java.util.List;
 @NoArgsConstructor
 @Entity // Marks this class as a JPA entity, mapped to a database table.
 @Table(name = "chat") // Specifies the table name in the database.
-@NamedQuery( // Predefined JPA query to find chats by sender ID.
-        name = ChatConstants.FIND_CHAT_BY_SENDER_ID,
-        query = "SELECT DISTINCT c FROM Chat c WHERE c.sender.id = :senderId OR c.recipient.id = :senderId ORDER BY createdDate DESC"
+@NamedQuery( // Predefined JPA query projecting the chats of a user, as seen by that user, in a single statement.
+        name = ChatConstants.FIND_CHAT_SUMMARIES,
+        query = "SELECT new com.mihai.whatsappclone.chat.ChatSummary(c.id, " +
+                // The name of the chat is the name of the other participant.
+                "CASE WHEN r.id = :userId THEN s.firstName ELSE r.firstName END, " +
+                "CASE WHEN r.id = :userId THEN s.lastName ELSE r.lastName END, " +
+                "CASE WHEN s.id = :userId THEN c.senderUnreadCount ELSE c.recipientUnreadCount END, " +
+                "CASE WHEN c.lastMessageType IS NOT NULL AND c.lastMessageType <> com.mihai.whatsappclone.message.MessageType.TEXT " +
+                "THEN 'Attachment' ELSE c.lastMessagePreview END, " +
+                "c.lastMessageDate, s.id, r.id) " +
+                "FROM Chat c JOIN c.sender s JOIN c.recipient r " +
+                "WHERE s.id = :userId OR r.id = :userId ORDER BY c.createdDate DESC"
 )
-@NamedQuery( // Predefined JPA query to find chats by sender and recipient IDs.
-        name = ChatConstants.FIND_CHAT_BY_SENDER_ID_AND_RECEIVER_ID,
-        query = "SELECT DISTINCT c FROM Chat c WHERE (c.sender.id = :senderId AND c.recipient.id = :recipientId) OR (c.sender.id = :recipientId AND c.recipient.id = :senderId)"
+@NamedQuery( // Predefined JPA query to find the other participant of every chat of a user.
+        name = ChatConstants.FIND_CONTACT_IDS,
+        query = "SELECT CASE WHEN c.sender.id = :userId THEN c.recipient.id ELSE c.sender.id END " +
+                "FROM Chat c WHERE c.sender.id = :userId OR c.recipient.id = :userId"
+)
+@NamedNativeQuery( // Predefined native query locking chats in ID order, before IDs are taken for their new messages.
+        name = ChatConstants.LOCK_CHATS,
+        query = "SELECT id FROM chat WHERE id IN (:chatIds) ORDER BY id FOR NO KEY UPDATE"
+)
+@NamedQuery( // Predefined JPA query to record new messages in the chat summary and count them as unread for their recipient.
+        name = ChatConstants.RECORD_LAST_MESSAGE,
+        query = "UPDATE Chat c SET " +
+                // The last message only moves forward, so concurrent or batched updates can be applied in any order.
+                "c.lastMessagePreview = CASE WHEN c.lastMessageDate IS NULL OR c.lastMessageDate <= :date THEN :preview ELSE c.lastMessagePreview END, " +
+                "c.lastMessageType = CASE WHEN c.lastMessageDate IS NULL OR c.lastMessageDate <= :date THEN :type ELSE c.lastMessageType END, " +
+                "c.lastMessageDate = CASE WHEN c.lastMessageDate IS NULL OR c.lastMessageDate <= :date THEN :date ELSE c.lastMessageDate END, " +
+                "c.lastMessageId = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId THEN :messageId ELSE c.lastMessageId END, " +
+                "c.senderUnreadCount = CASE WHEN c.sender.id = :recipientId THEN c.senderUnreadCount + :count ELSE c.senderUnreadCount END, " +
+                "c.recipientUnreadCount = CASE WHEN c.recipient.id = :recipientId THEN c.recipientUnreadCount + :count ELSE c.recipientUnreadCount END " +
+                "WHERE c.id = :chatId"
+)
+@NamedQuery( // Predefined JPA query to find chats together with both participants.
+        name = ChatConstants.FIND_CHATS_WITH_PARTICIPANTS,
+        query = "SELECT c FROM Chat c JOIN FETCH c.sender JOIN FETCH c.recipient WHERE c.id IN :chatIds"
+)
+@NamedQuery( // Predefined JPA query projecting chats into the IDs and names of their participants.
+        name = ChatConstants.FIND_CHAT_DESCRIPTORS,
+        query = "SELECT new com.mihai.whatsappclone.chat.ChatDescriptor(c.id, s.id, r.id, " +
+                "s.firstName, s.lastName, r.firstName, r.lastName) " +
+                "FROM Chat c JOIN c.sender s JOIN c.recipient r WHERE c.id IN :chatIds"
+)
+@NamedQuery( // Predefined JPA query to read the ID of the last message of a chat.
+        name = ChatConstants.FIND_LAST_MESSAGE_ID,
+        query = "SELECT c.lastMessageId FROM Chat c WHERE c.id = :chatId"
+)
+@NamedQuery( // Predefined JPA query to move the read watermark of a participant, only matches when they have unread messages.
+        name = ChatConstants.MARK_CHAT_AS_READ,
+        query = "UPDATE Chat c SET " +
+                "c.senderLastReadMessageId = CASE WHEN c.sender.id = :userId THEN c.lastMessageId ELSE c.senderLastReadMessageId END, " +
+                "c.senderUnreadCount = CASE WHEN c.sender.id = :userId THEN 0 ELSE c.senderUnreadCount END, " +
+                "c.recipientLastReadMessageId = CASE WHEN c.recipient.id = :userId THEN c.lastMessageId ELSE c.recipientLastReadMessageId END, " +
+                "c.recipientUnreadCount = CASE WHEN c.recipient.id = :userId THEN 0 ELSE c.recipientUnreadCount END " +
+                "WHERE c.id = :chatId AND c.lastMessageId IS NOT NULL AND (" +
+                "(c.sender.id = :userId AND c.senderUnreadCount > 0) OR " +
+                "(c.recipient.id = :userId AND c.recipientUnreadCount > 0))"
 )
 public class Chat extends BaseAuditingEntity {
 
@@ -42,10 +93,93 @@ public class Chat extends BaseAuditingEntity {
     @JoinColumn(name = "recipient_id") // Specifies the foreign key column for the recipient.
     private User recipient;
 
-    @OneToMany(mappedBy = "chat", fetch = FetchType.EAGER) // Defines a one-to-many relationship with the Message entity.
+    /**
+     * The IDs of both participants in a canonical order, whoever created the chat.
+     * Unique, so that two users share at most one chat (index created by schema.sql).
+     */
+    @Column(name = "participant_pair")
+    private String participantPair;
+
+    @OneToMany(mappedBy = "chat") // Defines a lazy one-to-many relationship with the Message entity.
     @OrderBy("createdDate DESC") // Orders the messages by creation date in descending order.
     private List<Message> messages;
 
+    /**
+     * Preview of the content of the last message, maintained on every sent message.
+     */
+    @Column(name = "last_message_preview", length = ChatConstants.LAST_MESSAGE_PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    /**
+     * Type of the last message, maintained on every sent message.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type")
+    private MessageType lastMessageType;
+
+    /**
+     * Creation date of the last message, maintained on every sent message.
+     */
+    @Column(name = "last_message_date")
+    private LocalDateTime lastMessageDate;
+
+    /**
+     * ID of the most recent message, maintained on every sent message.
+     */
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    /**
+     * ID of the last message the sender of the chat has read; messages addressed to the sender
+     * up to this ID are seen.
+     */
+    @Column(name = "sender_last_read_message_id")
+    private Long senderLastReadMessageId;
+
+    /**
+     * ID of the last message the recipient of the chat has read; messages addressed to the recipient
+     * up to this ID are seen.
+     */
+    @Column(name = "recipient_last_read_message_id")
+    private Long recipientLastReadMessageId;
+
+    /**
+     * Number of messages addressed to the sender of the chat that were not seen yet.
+     */
+    @ColumnDefault("0")
+    @Column(name = "sender_unread_count", nullable = false)
+    private long senderUnreadCount;
+
+    /**
+     * Number of messages addressed to the recipient of the chat that were not seen yet.
+     */
+    @ColumnDefault("0")
+    @Column(name = "recipient_unread_count", nullable = false)
+    private long recipientUnreadCount;
+
+    /**
+     * Builds the canonical key of a pair of participants: both IDs, the lowest first.
+     *
+     * @param userId ID of one participant.
+     * @param otherUserId ID of the other participant.
+     * @return The participant pair key, identical for both orders of the arguments.
+     */
+    public static String participantPair(final String userId, final String otherUserId) {
+        return userId.compareTo(otherUserId) <= 0
+                ? userId + ChatConstants.PARTICIPANT_PAIR_SEPARATOR + otherUserId
+                : otherUserId + ChatConstants.PARTICIPANT_PAIR_SEPARATOR + userId;
+    }
+
+    /**
+     * Fills the participant pair of chats saved through the entity manager.
+     */
+    @PrePersist
+    void fillParticipantPair() {
+        if (participantPair == null && sender != null && recipient != null) {
+            participantPair = participantPair(sender.getId(), recipient.getId());
+        }
+    }
+
     /**
      * Calculates and returns the name of the chat based on the sender's ID.
      * If the sender's ID matches the recipient, the chat name is the sender's name.
@@ -71,48 +205,45 @@ public class Chat extends BaseAuditingEntity {
     }
 
     /**
-     * Calculates the number of unread messages for the sender.
-     * Filters messages where the recipient is the sender and the state is 'SENT'.
+     * Returns the number of unread messages for the given participant.
+     * Reads the counter maintained on the chat row instead of loading the messages.
      *
-     * @param senderId ID of the sender.
+     * @param senderId ID of the participant.
      * @return Count of unread messages.
      */
     @Transient
     public long getUnreadMessages(final String senderId) {
-        return messages
-                .stream()
-                .filter(m -> m.getRecipientId().equals(senderId)) // Message is addressed to the sender.
-                .filter(m -> MessageState.SENT == m.getState()) // Message was SENT.
-                .count();
+        if (sender.getId().equals(senderId)) {
+            return senderUnreadCount;
+        }
+        return recipientUnreadCount;
     }
 
     /**
-     * Retrieves the content of the last message in the chat.
-     * If the last message is not text-based, it returns "Attachment".
+     * Returns the read watermark of the given participant: the ID of the last message they have read.
      *
-     * @return Content of the last message or "Attachment" if it's not text-based.
+     * @param userId ID of the participant.
+     * @return The ID of the last read message, or null if the participant has not read the chat yet.
      */
     @Transient
-    public String getLastMessage() {
-        if (messages != null && !messages.isEmpty()) {
-            if (messages.get(0).getType() != MessageType.TEXT) { // Check if the last message is an attachment.
-                return "Attachment";
-            }
-            return messages.getFirst().getContent(); // Return the content of the last message.
+    public Long getLastReadMessageId(final String userId) {
+        if (sender.getId().equals(userId)) {
+            return senderLastReadMessageId;
         }
-        return null; // Return null if there are no messages.
+        return recipientLastReadMessageId;
     }
 
     /**
-     * Retrieves the creation date of the last message in the chat.
+     * Retrieves the preview of the last message in the chat.
+     * If the last message is not text-based, it returns "Attachment".
      *
-     * @return The date of the last message or null if there are no messages.
+     * @return Preview of the last message, "Attachment" if it's not text-based or null if there are no messages.
      */
     @Transient
-    public LocalDateTime getLastMessageDate() {
-        if (messages != null && !messages.isEmpty()) {
-            return messages.getFirst().getCreatedDate(); // Return the creation date of the last message.
+    public String getLastMessage() {
+        if (lastMessageType != null && lastMessageType != MessageType.TEXT) { // Check if the last message is an attachment.
+            return "Attachment";
         }
-        return null; // Return null if there are no messages.
+        return lastMessagePreview;
     }
 }
@@ -0,0 +1,30 @@
+package com.mihai.whatsappclone.chat;
+
+import com.mihai.whatsappclone.message.MessagePageResponse;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DTO (Data Transfer Object) describing the inbox bootstrap of a user.
+ * The response is written as it is read by {@link ChatBootstrapService}, this class documents its shape for the
+ * generated clients.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChatBootstrapResponse {
+
+    /**
+     * The chats of the user, as returned by GET /api/v1/chats.
+     */
+    private List<ChatResponse> chats;
+
+    /**
+     * The newest page of the history of each of the most recently active chats, by chat ID.
+     */
+    private Map<String, MessagePageResponse> messages;
+}
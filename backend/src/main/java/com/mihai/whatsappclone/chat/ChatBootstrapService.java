@@ -0,0 +1,200 @@
+package com.mihai.whatsappclone.chat;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mihai.whatsappclone.common.JsonStreamWriter;
+import com.mihai.whatsappclone.message.Message;
+import com.mihai.whatsappclone.message.MessageConstants;
+import com.mihai.whatsappclone.message.MessageCursor;
+import com.mihai.whatsappclone.message.MessageMapper;
+import com.mihai.whatsappclone.message.MessageResponse;
+import com.mihai.whatsappclone.message.MessageState;
+import com.mihai.whatsappclone.message.MessageType;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Service writing the inbox bootstrap of a user: the chat list followed by the newest messages of the most recently
+ * active chats, so that the client starts with a single request instead of one request per chat.
+ * <p>
+ * The messages of all the chats are read by one statement joining each chat to its newest messages (LATERAL join on
+ * the keyset index of the history) and written to the response as the rows are read, without being gathered first.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatBootstrapService {
+
+    /**
+     * Selects the newest messages of the most recently active chats of a user, one more than requested per chat to
+     * know whether older messages exist. Rows are ordered by chat activity, then chronologically within each chat.
+     */
+    private static final String FIND_LATEST_MESSAGES_OF_TOP_CHATS = """
+            SELECT c.id AS chat_id, m.id, m.content, m.type, m.state, m.sender_id, m.recipient_id, m.created_date,
+                   m.media_file_path, m.media_size, m.media_content_type, m.media_placeholder,
+                   CASE WHEN m.recipient_id = c.sender_id THEN c.sender_last_read_message_id
+                        ELSE c.recipient_last_read_message_id END AS last_read_message_id,
+                   count(*) OVER (PARTITION BY c.id) AS chat_rows
+            FROM (SELECT id, sender_id, sender_last_read_message_id, recipient_last_read_message_id, last_message_date
+                  FROM chat
+                  WHERE (sender_id = ? OR recipient_id = ?) AND last_message_date IS NOT NULL
+                  ORDER BY last_message_date DESC, id
+                  LIMIT ?) c
+            CROSS JOIN LATERAL (SELECT * FROM messages
+                                WHERE chat_id = c.id
+                                ORDER BY created_date DESC, id DESC
+                                LIMIT ?) m
+            ORDER BY c.last_message_date DESC, c.id, m.created_date, m.id
+            """;
+
+    private final ChatRepository chatRepository;
+    private final ChatMapper chatMapper;
+    private final MessageMapper messageMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonStreamWriter jsonStreamWriter;
+
+    /**
+     * Writes the bootstrap of a user as a {@link ChatBootstrapResponse} JSON object:
+     * {"chats": [ChatResponse...], "messages": {"chatId": MessagePageResponse...}}, where each page holds the
+     * newest messages of one of the most recently active chats, with the cursors to continue reading its history.
+     *
+     * @param userId       The ID of the authenticated user.
+     * @param chats        The number of chats whose messages are included, bounded by the server.
+     * @param messages     The number of messages included for each chat, bounded by the server.
+     * @param outputStream The response body.
+     */
+    @Transactional(readOnly = true) // Lets PostgreSQL return the rows in batches of the fetch size.
+    @Timed(value = "chats.bootstrap", description = "Time spent writing the inbox bootstrap of a user")
+    public void writeBootstrap(String userId, Integer chats, Integer messages, OutputStream outputStream) {
+        final int chatCount = chats == null
+                ? ChatConstants.DEFAULT_BOOTSTRAP_CHATS
+                : Math.clamp(chats, 0, ChatConstants.MAX_BOOTSTRAP_CHATS);
+        final int messageCount = messages == null
+                ? ChatConstants.DEFAULT_BOOTSTRAP_MESSAGES
+                : Math.clamp(messages, 1, MessageConstants.MAX_PAGE_SIZE);
+
+        try (JsonGenerator generator = jsonStreamWriter.createGenerator(outputStream)) {
+            generator.writeStartObject();
+
+            // The chat list, as returned by GET /api/v1/chats.
+            generator.writeFieldName("chats");
+            try (Stream<ChatSummary> summaries = chatRepository.streamChatSummaries(userId)) {
+                jsonStreamWriter.writeArray(generator, summaries, chatMapper::toChatResponse);
+            }
+
+            // The newest page of each of the top chats, written row by row.
+            generator.writeObjectFieldStart("messages");
+            if (chatCount > 0) {
+                PageWriter pageWriter = new PageWriter(generator, messageCount);
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(FIND_LATEST_MESSAGES_OF_TOP_CHATS);
+                    statement.setFetchSize(JsonStreamWriter.FETCH_SIZE);
+                    statement.setString(1, userId);
+                    statement.setString(2, userId);
+                    statement.setInt(3, chatCount);
+                    statement.setInt(4, messageCount + 1);
+                    return statement;
+                }, pageWriter);
+                pageWriter.finish();
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bootstrap of user " + userId + " could not be written", e);
+        }
+    }
+
+    /**
+     * Writes the rows of the messages query as one history page per chat.
+     */
+    @RequiredArgsConstructor
+    private class PageWriter implements RowCallbackHandler {
+
+        private final JsonGenerator generator;
+        private final int messageCount;
+
+        private String chatId; // The chat whose page is being written.
+        private MessageResponse oldest; // The first message written for the chat.
+        private MessageResponse newest; // The last message written for the chat.
+        private boolean hasOlder; // Whether the extra row of the chat was read.
+
+        @Override
+        public void processRow(@NonNull ResultSet rs) throws SQLException {
+            try {
+                final String rowChatId = rs.getString("chat_id");
+                if (!rowChatId.equals(chatId)) {
+                    finish();
+                    chatId = rowChatId;
+                    hasOlder = rs.getLong("chat_rows") > messageCount;
+                    generator.writeObjectFieldStart(chatId);
+                    generator.writeArrayFieldStart("messages");
+                    if (hasOlder) {
+                        return; // The oldest row only tells that older messages exist.
+                    }
+                }
+
+                MessageResponse message = toMessageResponse(rs);
+                jsonStreamWriter.writeValue(generator, message);
+                if (oldest == null) {
+                    oldest = message;
+                }
+                newest = message;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Closes the page of the current chat, with its cursors.
+         */
+        private void finish() throws IOException {
+            if (chatId == null) {
+                return;
+            }
+            generator.writeEndArray();
+            generator.writeStringField("olderCursor", oldest == null ? null : MessageCursor.of(oldest).encode());
+            generator.writeStringField("newerCursor", newest == null ? null : MessageCursor.of(newest).encode());
+            generator.writeBooleanField("hasOlder", hasOlder);
+            generator.writeBooleanField("hasNewer", false);
+            generator.writeEndObject();
+            chatId = null;
+            oldest = null;
+            newest = null;
+        }
+
+        /**
+         * Maps a row to a message response, with the state derived from the read watermark of its recipient.
+         */
+        private MessageResponse toMessageResponse(ResultSet rs) throws SQLException {
+            Message message = new Message();
+            message.setId(rs.getLong("id"));
+            message.setContent(rs.getString("content"));
+            message.setType(MessageType.valueOf(rs.getString("type")));
+            message.setState(MessageState.valueOf(rs.getString("state")));
+            message.setSenderId(rs.getString("sender_id"));
+            message.setRecipientId(rs.getString("recipient_id"));
+            message.setCreatedDate(rs.getObject("created_date", LocalDateTime.class));
+            message.setMediaFilePath(rs.getString("media_file_path"));
+            message.setMediaSize(rs.getObject("media_size", Long.class));
+            message.setMediaContentType(rs.getString("media_content_type"));
+            message.setMediaPlaceholder(rs.getBytes("media_placeholder"));
+
+            final Long lastReadMessageId = rs.getObject("last_read_message_id", Long.class);
+            return messageMapper.toMessageResponse(message,
+                    MessageMapper.toState(message.getId(), message.getState(), lastReadMessageId));
+        }
+    }
+}
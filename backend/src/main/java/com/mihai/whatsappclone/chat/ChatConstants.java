@@ -5,11 +5,44 @@ package com.mihai.whatsappclone.chat;
  */
 public class ChatConstants {
 
-    // Named query for finding chats by sender ID.
-    public static final String FIND_CHAT_BY_SENDER_ID = "Chat.findChatBySenderId";
+    // Named query for projecting the chats of a user into summaries.
+    public static final String FIND_CHAT_SUMMARIES = "Chat.findChatSummaries";
 
-    // Named query for finding chats by sender ID and receiver ID.
-    public static final String FIND_CHAT_BY_SENDER_ID_AND_RECEIVER_ID = "Chat.findChatBySenderIdAndReceiverId";
+    // Separator of the two user IDs in the participant pair key, the same as in the schema.sql backfill.
+    public static final String PARTICIPANT_PAIR_SEPARATOR = ":";
+
+    // Named query for finding the IDs of the users sharing a chat with a user.
+    public static final String FIND_CONTACT_IDS = "Chat.findContactIds";
+
+    // Named native query for locking chats before messages are added to them.
+    public static final String LOCK_CHATS = "Chat.lockChats";
+
+    // Named query for recording a new message in the chat summary.
+    public static final String RECORD_LAST_MESSAGE = "Chat.recordLastMessage";
+
+    // Named query for finding chats together with both participants.
+    public static final String FIND_CHATS_WITH_PARTICIPANTS = "Chat.findChatsWithParticipants";
+
+    // Named query for projecting chats into the descriptors of their participants.
+    public static final String FIND_CHAT_DESCRIPTORS = "Chat.findChatDescriptors";
+
+    // Named query for reading the ID of the last message of a chat.
+    public static final String FIND_LAST_MESSAGE_ID = "Chat.findLastMessageId";
+
+    // Named query for moving the read watermark of a participant to the last message.
+    public static final String MARK_CHAT_AS_READ = "Chat.markChatAsRead";
+
+    // Maximum length of the last message preview stored on the chat.
+    public static final int LAST_MESSAGE_PREVIEW_LENGTH = 100;
+
+    // Number of most recently active chats whose messages are included in the bootstrap by default.
+    public static final int DEFAULT_BOOTSTRAP_CHATS = 10;
+
+    // Upper bound for the number of chats whose messages are included in the bootstrap.
+    public static final int MAX_BOOTSTRAP_CHATS = 50;
+
+    // Number of messages included for each chat of the bootstrap by default.
+    public static final int DEFAULT_BOOTSTRAP_MESSAGES = 20;
 
     // Private constructor to prevent instantiation of the class.
     private ChatConstants() {}
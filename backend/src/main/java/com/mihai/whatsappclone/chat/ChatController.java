@@ -1,13 +1,17 @@
 package com.mihai.whatsappclone.chat;
 
 import com.mihai.whatsappclone.common.StringResponse;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for managing chat-related operations.
@@ -20,6 +24,7 @@ import java.util.List;
 public class ChatController {
 
     private final ChatService chatService;
+    private final ChatBootstrapService chatBootstrapService;
 
     /**
      * Endpoint to create a new chat between a sender and a recipient.
@@ -44,11 +49,45 @@ public class ChatController {
     /**
      * Endpoint to retrieve all chats for the currently authenticated user.
      *
+     * The list is streamed while the chats are read.
+     *
      * @param authentication The authentication object representing the currently logged-in user.
-     * @return A ResponseEntity containing a list of ChatResponse objects for the user.
+     * @return A ResponseEntity streaming the list of ChatResponse objects for the user.
      */
     @GetMapping
-    public ResponseEntity<List<ChatResponse>> getChatsByReceiver(Authentication authentication) {
-        return ResponseEntity.ok(chatService.getChatsByReceiverId(authentication)); // Retrieves and returns the user's chats.
+    @ApiResponse(responseCode = "200", content = @Content( // Declares the streamed list for the generated clients.
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = ChatResponse.class))))
+    public ResponseEntity<StreamingResponseBody> getChatsByReceiver(Authentication authentication) {
+        final String userId = authentication.getName(); // Read before the body is written on another thread.
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> chatService.writeChatsByReceiverId(userId, outputStream)); // Writes the user's chats.
+    }
+
+    /**
+     * Endpoint to retrieve everything the client shows on start in one round trip: the chats of the currently
+     * authenticated user and the newest messages of the most recently active ones.
+     * The response is streamed while it is generated, as a {@link ChatBootstrapResponse}:
+     * {"chats": [ChatResponse...], "messages": {"chatId": MessagePageResponse...}}.
+     *
+     * @param chats The number of most recently active chats whose messages are included (optional).
+     * @param messages The number of messages included for each of these chats (optional).
+     * @param authentication The authentication object representing the currently logged-in user.
+     * @return A ResponseEntity streaming the bootstrap of the user.
+     */
+    @GetMapping("/bootstrap")
+    @ApiResponse(responseCode = "200", content = @Content( // Declares the streamed object for the generated clients.
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = ChatBootstrapResponse.class)))
+    public ResponseEntity<StreamingResponseBody> getBootstrap(
+            @RequestParam(name = "chats", required = false) Integer chats,
+            @RequestParam(name = "messages", required = false) Integer messages,
+            Authentication authentication
+    ) {
+        final String userId = authentication.getName(); // Read before the body is written on another thread.
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> chatBootstrapService.writeBootstrap(userId, chats, messages, outputStream));
     }
 }
@@ -0,0 +1,64 @@
+package com.mihai.whatsappclone.chat;
+
+/**
+ * Immutable view of the participants of a chat, enough to route and label its notifications.
+ * Descriptors are read by {@link ChatRepository#findChatDescriptors} and kept by the {@link ChatDescriptorCache},
+ * so that sending a message does not load the Chat entity and its participants.
+ *
+ * @param id            The ID of the chat.
+ * @param senderId      The ID of the user who created the chat.
+ * @param recipientId   The ID of the other user of the chat.
+ * @param senderName    The full name of the sender.
+ * @param recipientName The full name of the recipient.
+ */
+public record ChatDescriptor(String id,
+                             String senderId,
+                             String recipientId,
+                             String senderName,
+                             String recipientName) {
+
+    /**
+     * Constructor used by the JPQL projection, the names are built the same way as {@link Chat#getChatName(String)}.
+     */
+    public ChatDescriptor(String id,
+                          String senderId,
+                          String recipientId,
+                          String senderFirstName,
+                          String senderLastName,
+                          String recipientFirstName,
+                          String recipientLastName) {
+        this(id, senderId, recipientId,
+                senderFirstName + " " + senderLastName,
+                recipientFirstName + " " + recipientLastName);
+    }
+
+    /**
+     * Checks whether a user is one of the two participants of the chat.
+     *
+     * @param userId The ID of the user.
+     * @return true if the user is the sender or the recipient of the chat.
+     */
+    public boolean isParticipant(String userId) {
+        return senderId.equals(userId) || recipientId.equals(userId);
+    }
+
+    /**
+     * Returns the other participant of the chat.
+     *
+     * @param userId The ID of the current user.
+     * @return The recipient ID if the user is the sender, the sender ID otherwise.
+     */
+    public String getOtherParticipantId(String userId) {
+        return senderId.equals(userId) ? recipientId : senderId;
+    }
+
+    /**
+     * Returns the name under which the chat appears to the recipient of a message, as {@link Chat#getTargetChatName(String)}.
+     *
+     * @param messageSenderId The ID of the sender of the message.
+     * @return The full name of the sender of the message.
+     */
+    public String getTargetChatName(String messageSenderId) {
+        return senderId.equals(messageSenderId) ? senderName : recipientName;
+    }
+}
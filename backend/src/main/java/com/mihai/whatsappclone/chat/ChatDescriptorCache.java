@@ -0,0 +1,92 @@
+package com.mihai.whatsappclone.chat;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Bounded in-memory cache of the {@link ChatDescriptor}s of the chats, so that sending a message reads neither the
+ * chat nor its participants.
+ * <p>
+ * Descriptors are loaded on first use and evicted by size. The participants of a chat never change, only their names
+ * can: the descriptors of a user are dropped whenever that user is synchronized again with the identity provider.
+ * Hits, misses, loads and evictions are exposed as the "cache.*" meters tagged with cache="chat.descriptors".
+ */
+@Component
+public class ChatDescriptorCache {
+
+    private static final String CACHE_NAME = "chat.descriptors";
+
+    private final LoadingCache<String, ChatDescriptor> descriptors;
+
+    public ChatDescriptorCache(ChatRepository chatRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${application.chat.descriptor-cache.max-size}") long maxSize) {
+        this.descriptors = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ChatDescriptor load(@NonNull String chatId) {
+                        return chatRepository.findChatDescriptors(Set.of(chatId)).stream().findFirst().orElse(null);
+                    }
+
+                    @Override
+                    public Map<String, ChatDescriptor> loadAll(@NonNull Set<? extends String> chatIds) {
+                        // The missing chats are left out, and are not cached.
+                        return chatRepository.findChatDescriptors(Set.copyOf(chatIds)).stream()
+                                .collect(toMap(ChatDescriptor::id, Function.identity()));
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, descriptors, CACHE_NAME);
+    }
+
+    /**
+     * Returns the descriptor of a chat, loading it on a miss.
+     *
+     * @param chatId The ID of the chat.
+     * @return The descriptor of the chat.
+     * @throws EntityNotFoundException if the chat with the given ID does not exist.
+     */
+    public ChatDescriptor get(String chatId) {
+        ChatDescriptor descriptor = chatId == null ? null : descriptors.get(chatId);
+        if (descriptor == null) {
+            throw new EntityNotFoundException("Chat with id " + chatId + " not found");
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the descriptors of several chats, loading all the missing ones in a single query.
+     *
+     * @param chatIds The IDs of the chats, null IDs are ignored.
+     * @return The descriptors of the chats that exist, by chat ID.
+     */
+    public Map<String, ChatDescriptor> getAll(Collection<String> chatIds) {
+        return descriptors.getAll(chatIds.stream().filter(Objects::nonNull).collect(toSet()));
+    }
+
+    /**
+     * Drops the descriptors of the chats of a user, so that they are read again with the current names.
+     *
+     * @param userId The ID of the user.
+     */
+    public void invalidateUser(String userId) {
+        descriptors.asMap().values().removeIf(descriptor -> descriptor.isParticipant(userId));
+    }
+}
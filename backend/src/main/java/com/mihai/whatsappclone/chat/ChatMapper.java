@@ -1,5 +1,7 @@
 package com.mihai.whatsappclone.chat;
 
+import com.mihai.whatsappclone.presence.PresenceService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 /**
@@ -7,8 +9,11 @@ import org.springframework.stereotype.Service;
  * This helps to decouple the entity model from the response structure used in the API.
  */
 @Service
+@RequiredArgsConstructor
 public class ChatMapper {
 
+    private final PresenceService presenceService; // Source of the online status of the participants.
+
     /**
      * Maps a Chat entity to a ChatResponse DTO.
      *
@@ -22,10 +27,29 @@ public class ChatMapper {
                 .name(c.getChatName(senderId)) // The name of the chat, determined by the sender's context.
                 .unreadCount(c.getUnreadMessages(senderId)) // The number of unread messages for the sender.
                 .lastMessage(c.getLastMessage()) // The content of the last message in the chat.
-                .isRecipientOnline(c.getRecipient().isOnline()) // Whether the recipient is currently online.
+                .isRecipientOnline(presenceService.isOnline(c.getRecipient().getId())) // Whether the recipient currently has an active session.
                 .senderId(c.getSender().getId()) // The ID of the sender.
                 .recipientId(c.getRecipient().getId()) // The ID of the recipient.
                 .lastMessageTime(c.getLastMessageDate()) //The date of last message
                 .build();
     }
+
+    /**
+     * Maps a ChatSummary projection to a ChatResponse DTO.
+     *
+     * @param c The ChatSummary projection, already resolved for the viewing participant.
+     * @return A ChatResponse object containing the mapped data.
+     */
+    public ChatResponse toChatResponse(ChatSummary c) {
+        return ChatResponse.builder()
+                .id(c.id()) // The unique ID of the chat.
+                .name(c.name()) // The name of the other participant.
+                .unreadCount(c.unreadCount()) // The number of unread messages for the viewing participant.
+                .lastMessage(c.lastMessage()) // The content of the last message in the chat.
+                .isRecipientOnline(presenceService.isOnline(c.recipientId())) // Whether the recipient currently has an active session.
+                .senderId(c.senderId()) // The ID of the sender.
+                .recipientId(c.recipientId()) // The ID of the recipient.
+                .lastMessageTime(c.lastMessageTime()) //The date of last message
+                .build();
+    }
 }
@@ -1,11 +1,19 @@
 package com.mihai.whatsappclone.chat;
 
+import com.mihai.whatsappclone.common.JsonStreamWriter;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import com.mihai.whatsappclone.message.MessageType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Chat entities.
@@ -15,21 +23,100 @@ import java.util.Optional;
 public interface ChatRepository extends JpaRepository<Chat, String> {
 
     /**
-     * Retrieves a list of chats where the given user is the sender.
+     * Retrieves the chats of the given user, newest first, projected as seen by that user.
+     * Participants and the last message summary are read in a single statement, whatever the number of chats,
+     * and the rows are fetched in batches. The stream must be consumed and closed within a transaction.
      *
-     * @param userId The ID of the sender whose chats are to be retrieved.
-     * @return A list of Chat entities where the user is the sender.
+     * @param userId The ID of the participant whose chats are to be retrieved.
+     * @return The summaries of the chats where the user is the sender or the recipient.
      */
-    @Query(name = ChatConstants.FIND_CHAT_BY_SENDER_ID)
-    List<Chat> findChatsBySenderId(@Param("senderId") String userId);
+    @Query(name = ChatConstants.FIND_CHAT_SUMMARIES)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamWriter.FETCH_SIZE_HINT))
+    Stream<ChatSummary> streamChatSummaries(@Param("userId") String userId);
 
     /**
-     * Finds a chat between a specific sender and recipient, if it exists.
+     * Retrieves the IDs of the users sharing a chat with the given user.
      *
-     * @param senderId The ID of the sender.
-     * @param recipientId The ID of the recipient.
-     * @return An Optional containing the Chat entity if found, or empty if no such chat exists.
+     * @param userId The ID of the user.
+     * @return The IDs of the other participant of each chat of the user.
      */
-    @Query(name = ChatConstants.FIND_CHAT_BY_SENDER_ID_AND_RECEIVER_ID)
-    Optional<Chat> findChatByReceiverAndSender(@Param("senderId") String senderId, @Param("recipientId") String recipientId);
+    @Query(name = ChatConstants.FIND_CONTACT_IDS)
+    List<String> findContactIds(@Param("userId") String userId);
+
+    /**
+     * Retrieves chats by their IDs, with both participants loaded in the same query.
+     *
+     * @param chatIds The IDs of the chats.
+     * @return The Chat entities found.
+     */
+    @Query(name = ChatConstants.FIND_CHATS_WITH_PARTICIPANTS)
+    List<Chat> findChatsWithParticipants(@Param("chatIds") Collection<String> chatIds);
+
+    /**
+     * Retrieves the participants of chats by their IDs, without loading the Chat entities.
+     *
+     * @param chatIds The IDs of the chats.
+     * @return The descriptors of the chats found.
+     */
+    @Query(name = ChatConstants.FIND_CHAT_DESCRIPTORS)
+    List<ChatDescriptor> findChatDescriptors(@Param("chatIds") Collection<String> chatIds);
+
+    /**
+     * Retrieves the ID of the last message of a chat.
+     *
+     * @param chatId The ID of the chat.
+     * @return The ID of the last message, or null if the chat has no message.
+     */
+    @Query(name = ChatConstants.FIND_LAST_MESSAGE_ID)
+    Long findLastMessageId(@Param("chatId") String chatId);
+
+    /**
+     * Locks chats until the end of the transaction, in ID order so that concurrent transactions cannot deadlock.
+     * Messages take their IDs only once their chat is locked: the IDs of the messages of a chat then follow the order
+     * in which they are committed, and the last message ID of a chat is never above the ID of an uncommitted message.
+     * A read watermark moved to the last message ID therefore never covers a message committed after it.
+     *
+     * @param chatIds The IDs of the chats.
+     * @return The IDs of the chats found, in the order they were locked.
+     */
+    @Query(name = ChatConstants.LOCK_CHATS, nativeQuery = true)
+    List<String> lockChats(@Param("chatIds") Collection<String> chatIds);
+
+    /**
+     * Records new messages in the summary of a chat: stores the preview, type and date of the latest one
+     * (unless a later message is already recorded), its ID and increments the unread counter of the participant
+     * they are addressed to.
+     *
+     * @param chatId The ID of the chat.
+     * @param messageId The ID of the latest message.
+     * @param preview The preview of the latest message content.
+     * @param type The type of the latest message.
+     * @param date The creation date of the latest message.
+     * @param recipientId The ID of the participant receiving the messages.
+     * @param count The number of messages addressed to the participant.
+     */
+    @Query(name = ChatConstants.RECORD_LAST_MESSAGE)
+    @Modifying // Indicates this query modifies the database.
+    void recordLastMessage(@Param("chatId") String chatId,
+                           @Param("messageId") Long messageId,
+                           @Param("preview") String preview,
+                           @Param("type") MessageType type,
+                           @Param("date") LocalDateTime date,
+                           @Param("recipientId") String recipientId,
+                           @Param("count") long count);
+
+    /**
+     * Moves the read watermark of a participant to the last message of the chat and resets their unread counter.
+     * A single row is written, whatever the number of messages in the chat. Since messages take their IDs while
+     * the chat is locked (see {@link #lockChats(Collection)}), every message up to the watermark is committed.
+     * Nothing is written while the participant has no unread message, such as when the last messages are their own,
+     * so that no SEEN notification is sent for messages the other participant has already been told about.
+     *
+     * @param chatId The ID of the chat.
+     * @param userId The ID of the participant who has seen the chat.
+     * @return 1 if the watermark moved, 0 if the participant had no unread message.
+     */
+    @Query(name = ChatConstants.MARK_CHAT_AS_READ)
+    @Modifying // Indicates this query modifies the database.
+    int markChatAsRead(@Param("chatId") String chatId, @Param("userId") String userId);
 }
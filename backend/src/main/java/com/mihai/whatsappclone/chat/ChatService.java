@@ -1,15 +1,19 @@
 package com.mihai.whatsappclone.chat;
 
-import com.mihai.whatsappclone.user.User;
+import com.mihai.whatsappclone.changefeed.ChangeFeedService;
+import com.mihai.whatsappclone.common.JsonStreamWriter;
 import com.mihai.whatsappclone.user.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Service class responsible for handling chat-related operations such as retrieving and creating chats.
@@ -18,6 +22,18 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ChatService {
 
+    /**
+     * Creates the chat of a pair of participants, or returns the existing one, in a single statement.
+     * Both participants must exist; the no-op update on conflict makes RETURNING give the ID of the existing chat,
+     * and "xmax = 0" only holds for a row inserted by this statement.
+     */
+    private static final String CREATE_CHAT = """
+            INSERT INTO chat (id, sender_id, recipient_id, participant_pair, sender_unread_count, recipient_unread_count, created_date)
+            SELECT ?, s.id, r.id, ?, 0, 0, ? FROM users s, users r WHERE s.id = ? AND r.id = ?
+            ON CONFLICT (participant_pair) DO UPDATE SET participant_pair = EXCLUDED.participant_pair
+            RETURNING id, xmax = 0 AS created
+            """;
+
     /**
      * Repository for interacting with the Chat data in the database.
      */
@@ -34,53 +50,74 @@ public class ChatService {
     private final UserRepository userRepository;
 
     /**
-     * Retrieves a list of chats for the currently authenticated user by their user ID.
-     *
-     * @param currentUser The authentication object of the currently logged-in user.
-     * @return A list of ChatResponse DTOs representing the chats.
+     * Service recording the new chats in the change feeds of their participants.
      */
-    @Transactional(readOnly = true)
-    public List<ChatResponse> getChatsByReceiverId(Authentication currentUser) {
-        final String userId = currentUser.getName();
+    private final ChangeFeedService changeFeedService;
 
-        // Fetch chats where the current user is the sender and map them to response objects
-        return chatRepository.findChatsBySenderId(userId)
-                .stream()
-                .map(c -> mapper.toChatResponse(c, userId))
-                .toList();
+    /**
+     * Template running the chat creation statement.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes the chat list to the response while it is read.
+     */
+    private final JsonStreamWriter jsonStreamWriter;
+
+    /**
+     * Writes the chats of a user as a JSON array of ChatResponse DTOs, mapping and writing them as they are read.
+     *
+     * @param userId The ID of the currently logged-in user.
+     * @param outputStream The response body.
+     */
+    @Transactional(readOnly = true) // The chats are streamed from an open cursor.
+    @Timed(value = "chats.list", description = "Time spent listing the chats of a user")
+    public void writeChatsByReceiverId(String userId, OutputStream outputStream) {
+        // Project the chats of the current user in a single query and map them to response objects
+        try (Stream<ChatSummary> summaries = chatRepository.streamChatSummaries(userId)) {
+            jsonStreamWriter.writeArray(outputStream, summaries, mapper::toChatResponse);
+        }
     }
 
     /**
      * Creates a new chat between a sender and a recipient. If a chat already exists between them,
      * it returns the existing chat's ID.
+     * The chat is found or created in one statement, keyed by the participant pair, so concurrent requests of both
+     * participants end up with the same chat.
      *
      * @param senderId The public ID of the sender.
      * @param recipientId The public ID of the recipient.
      * @return The ID of the created or existing chat.
+     * @throws EntityNotFoundException if the sender or the recipient does not exist.
      */
+    @Transactional // The chat and the change feed entries are saved together.
     public String createChat(String senderId, String recipientId) {
-        // Check if a chat already exists between the sender and recipient
-        Optional<Chat> existingChat = chatRepository.findChatByReceiverAndSender(senderId, recipientId);
+        CreatedChat createdChat = jdbcTemplate.query(CREATE_CHAT,
+                rs -> rs.next() ? new CreatedChat(rs.getString("id"), rs.getBoolean("created")) : null,
+                UUID.randomUUID().toString(), Chat.participantPair(senderId, recipientId), LocalDateTime.now(), senderId, recipientId);
 
-        if (existingChat.isPresent()) {
-            return existingChat.get().getId(); // Return the existing chat ID
+        // No row is returned when a participant is missing, the chat can neither exist nor be created.
+        if (createdChat == null) {
+            throw new EntityNotFoundException("User with id " + senderId + " or " + recipientId + " not found");
         }
 
-        // Retrieve the sender from the repository, or throw an exception if not found
-        User sender = userRepository.findByPublicId(senderId)
-                .orElseThrow(() -> new EntityNotFoundException("User with id " + senderId + " not found"));
-
-        // Retrieve the recipient from the repository, or throw an exception if not found
-        User recipient = userRepository.findByPublicId(recipientId)
-                .orElseThrow(() -> new EntityNotFoundException("User with id " + recipientId + " not found"));
-
-        // Create a new chat entity
-        Chat chat = new Chat();
-        chat.setSender(sender);
-        chat.setRecipient(recipient);
+        if (createdChat.created()) {
+            // Only the IDs of the participants are recorded, references are enough.
+            Chat chat = new Chat();
+            chat.setId(createdChat.id());
+            chat.setSender(userRepository.getReferenceById(senderId));
+            chat.setRecipient(userRepository.getReferenceById(recipientId));
+            changeFeedService.recordChatCreated(chat, senderId);
+        }
+        return createdChat.id();
+    }
 
-        // Save the new chat to the repository and return its ID
-        Chat savedChat = chatRepository.save(chat);
-        return savedChat.getId();
+    /**
+     * The result of the chat creation statement.
+     *
+     * @param id The ID of the chat.
+     * @param created Whether the chat was created by the statement, rather than found.
+     */
+    private record CreatedChat(String id, boolean created) {
     }
 }
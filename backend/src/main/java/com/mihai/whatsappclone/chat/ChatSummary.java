@@ -0,0 +1,35 @@
+package com.mihai.whatsappclone.chat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a chat as seen by one of its participants, read in a single query by
+ * {@link ChatRepository#streamChatSummaries(String)} without loading the Chat entity or its participants.
+ *
+ * @param id              The ID of the chat.
+ * @param firstName       The first name of the other participant.
+ * @param lastName        The last name of the other participant.
+ * @param unreadCount     The number of messages the viewing participant has not seen yet.
+ * @param lastMessage     The preview of the last message, or "Attachment" for media messages.
+ * @param lastMessageTime The creation date of the last message.
+ * @param senderId        The ID of the user who created the chat.
+ * @param recipientId     The ID of the other user of the chat.
+ */
+public record ChatSummary(String id,
+                          String firstName,
+                          String lastName,
+                          long unreadCount,
+                          String lastMessage,
+                          LocalDateTime lastMessageTime,
+                          String senderId,
+                          String recipientId) {
+
+    /**
+     * Returns the name of the chat, built the same way as {@link Chat#getChatName(String)}.
+     *
+     * @return The full name of the other participant.
+     */
+    public String name() {
+        return firstName + " " + lastName;
+    }
+}
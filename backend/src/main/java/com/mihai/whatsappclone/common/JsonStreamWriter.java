@@ -0,0 +1,110 @@
+package com.mihai.whatsappclone.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes JSON responses while their content is read, so the memory used by a request does not grow with the size
+ * of its response.
+ * <p>
+ * Rows are mapped and written one at a time: entities are detached once written, so the persistence context does
+ * not retain them, and values are buffered by the generator and sent to the client in chunks.
+ * The streamed queries are run in a read-only transaction, with a fetch size that lets PostgreSQL return their rows
+ * in batches instead of all at once.
+ */
+@Component
+public class JsonStreamWriter {
+
+    /**
+     * Number of rows fetched at once by the streamed queries.
+     */
+    public static final int FETCH_SIZE = 200;
+
+    /**
+     * The fetch size as a query hint value.
+     */
+    public static final String FETCH_SIZE_HINT = "" + FETCH_SIZE;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final EntityManager entityManager;
+
+    public JsonStreamWriter(ObjectMapper objectMapper, EntityManager entityManager) {
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Writes the rows of a stream as a JSON array, mapping them one by one.
+     * The stream is consumed but not closed, its caller owns it.
+     *
+     * @param outputStream The response body.
+     * @param rows         The rows to write, in order.
+     * @param mapper       Maps a row to the value written for it.
+     * @param <T>          The type of the rows.
+     */
+    public <T> void writeArray(OutputStream outputStream, Stream<T> rows, Function<? super T, ?> mapper) {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            writeArray(generator, rows, mapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Response could not be written", e);
+        }
+    }
+
+    /**
+     * Writes the rows of a stream as a JSON array into a document being generated.
+     *
+     * @param generator The generator of the document.
+     * @param rows      The rows to write, in order.
+     * @param mapper    Maps a row to the value written for it.
+     * @param <T>       The type of the rows.
+     * @throws IOException if the response cannot be written.
+     */
+    public <T> void writeArray(JsonGenerator generator, Stream<T> rows, Function<? super T, ?> mapper) throws IOException {
+        generator.writeStartArray();
+        for (Iterator<T> iterator = rows.iterator(); iterator.hasNext(); ) {
+            T row = iterator.next();
+            writeValue(generator, mapper.apply(row));
+            if (row.getClass().isAnnotationPresent(Entity.class)) {
+                entityManager.detach(row); // Written, no longer needed by the persistence context.
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes one value into a document being generated, without flushing the response.
+     *
+     * @param generator The generator of the document.
+     * @param value     The value to write.
+     * @throws IOException if the response cannot be written.
+     */
+    public void writeValue(JsonGenerator generator, Object value) throws IOException {
+        writer.writeValue(generator, value);
+    }
+
+    /**
+     * Creates a generator writing to a response body, which is left open for the servlet container to close.
+     *
+     * @param outputStream The response body.
+     * @return The generator.
+     * @throws IOException if the generator cannot be created.
+     */
+    public JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        return objectMapper.getFactory().createGenerator(outputStream)
+                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mihai.whatsappclone.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates the exceptions raised by the REST controllers into error responses.
+ * Invalid request parameters, such as a malformed cursor or conflicting anchors, are client errors answered with
+ * 400 Bad Request instead of 500 Internal Server Error.
+ */
+@RestControllerAdvice
+@Slf4j
+public class RestExceptionHandler {
+
+    /**
+     * Answers a request rejected by a controller or a service because of its parameters.
+     *
+     * @param e The exception describing the invalid parameter.
+     * @return A problem detail with status 400 and the reason of the rejection.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail handleIllegalArgument(IllegalArgumentException e) {
+        log.debug("Rejected request: {}", e.getMessage());
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+}
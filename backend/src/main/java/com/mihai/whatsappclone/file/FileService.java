@@ -1,32 +1,90 @@
 package com.mihai.whatsappclone.file;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 
-import static java.io.File.separator;
-import static java.lang.System.currentTimeMillis;
-
+/**
+ * Content-addressed media store.
+ * Uploaded files are streamed to disk while their SHA-256 hash is computed, then stored under a path derived
+ * from that hash ({@code media/ab/cd/abcd...}), so identical content is only stored once.
+ * Each content counts the messages referencing it, and is deleted once it has been unreferenced for a while.
+ */
 @Service // Marks the class as a Spring service.
 @Slf4j // Enables logging with SLF4J.
 @RequiredArgsConstructor // Generates a constructor with required arguments (in this case, for final fields).
 public class FileService {
 
+    private static final int BUFFER_SIZE = 64 * 1024; // Size of the buffer used to stream uploads to disk.
+
+    private static final int PURGE_BATCH_SIZE = 1000; // Most unreferenced contents deleted by one purge.
+
+    // Records a content on its first upload, unreferenced; later uploads of the same content refresh its date,
+    // which keeps it from being purged until their message is saved.
+    private static final String RECORD_BLOB = """
+            INSERT INTO media_blob (hash, size, ref_count, created_date) VALUES (?, ?, 0, now())
+            ON CONFLICT (hash) DO UPDATE SET last_modified_date = now()
+            """;
+
+    // Counts a new message referencing a content.
+    private static final String RETAIN_BLOB = "UPDATE media_blob SET ref_count = ref_count + 1 WHERE hash = ?";
+
+    // Deletes the contents left unreferenced for longer than the retention period, such as the uploads whose
+    // message was not saved. The rows stay locked until their files are deleted, so an upload of the same content
+    // waits for the purge, then stores it again.
+    private static final String PURGE_UNREFERENCED_BLOBS = """
+            DELETE FROM media_blob WHERE hash IN (
+                SELECT hash FROM media_blob
+                WHERE ref_count = 0 AND coalesce(last_modified_date, created_date) < now() - ? * interval '1 millisecond'
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING hash
+            """;
+
+    private final JdbcTemplate jdbcTemplate; // Records the stored content and its references.
+    private final TransactionTemplate transactionTemplate; // Deletes the purged rows once their files are deleted.
+    private final MeterRegistry meterRegistry; // Counts the bytes written to the store.
+
     // Injects the file upload path from application properties.
     @Value("${application.file.uploads.media-output-path}")
     private String fileUploadPath;
 
+    // Age after which a content that no message references is deleted.
+    @Value("${application.file.uploads.unreferenced-retention}")
+    private long unreferencedRetentionMillis;
+
     /**
      * Saves a file uploaded by the user.
+     * The file is streamed through a fixed-size buffer, never loaded in memory as a whole. Its content is recorded
+     * without reference: the message using it must be saved with {@link #retain(String)}, or the content is purged.
      *
      * @param sourceFile The file to be uploaded.
      * @param userId The user ID associated with the file.
@@ -36,79 +94,172 @@ public class FileService {
             @NonNull MultipartFile sourceFile, // Ensures the file is not null.
             @NonNull String userId) { // Ensures the user ID is not null.
 
-        // Creates a subdirectory path based on the user ID.
-        final String fileUploadSubPath = "users" + separator + userId;
+        Path tempFile = null;
+        try {
+            // Streams the upload to a temporary file of the store, hashing it on the way.
+            Path tempFolder = Files.createDirectories(Paths.get(fileUploadPath, "tmp"));
+            tempFile = Files.createTempFile(tempFolder, "upload-", ".part");
+            final String hash = copyAndHash(sourceFile, tempFile);
+
+            // Records the content before looking for it, so that it cannot be purged once found.
+            jdbcTemplate.update(RECORD_BLOB, hash, sourceFile.getSize());
+
+            // Moves the content to its hash-derived path, unless the same content is already stored.
+            Path targetPath = contentPath(hash);
+            if (Files.notExists(targetPath)) {
+                Files.createDirectories(targetPath.getParent());
+                try {
+                    Files.move(tempFile, targetPath, StandardCopyOption.ATOMIC_MOVE);
+                    writtenBytes(meterRegistry, MediaVariant.ORIGINAL).increment(sourceFile.getSize());
+                    log.info("File saved at: {}", targetPath);
+                } catch (FileAlreadyExistsException e) {
+                    log.debug("File {} was stored concurrently", targetPath);
+                }
+            } else {
+                log.info("File uploaded by {} already stored at: {}", userId, targetPath);
+            }
+            return targetPath.toString();
+        } catch (IOException e) {
+            // Logs an error if the file couldn't be saved.
+            log.error("File was not saved", e);
+        } finally {
+            deleteQuietly(tempFile);
+        }
 
-        // Calls the helper method to upload the file.
-        return uploadFile(sourceFile, fileUploadSubPath);
+        // Returns null if the file couldn't be saved.
+        return null;
     }
 
     /**
-     * Uploads the file to the specified directory.
+     * Counts a new message referencing a stored file, in the transaction saving the message.
      *
-     * @param sourceFile The file to be uploaded.
-     * @param fileUploadSubPath The subpath where the file will be saved.
-     * @return The full path of the uploaded file, or null if it couldn't be saved.
+     * @param filePath The path of the file, as returned by {@link #saveFile(MultipartFile, String)}, may be null.
+     * @throws IllegalStateException if the content was purged since it was saved, the message is then not saved.
      */
-    private String uploadFile(
-            @NonNull MultipartFile sourceFile, // Ensures the file is not null.
-            @NonNull String fileUploadSubPath) { // Ensures the subpath is not null.
-
-        // Combines the base upload path with the user's subpath.
-        final String finalUploadPath = fileUploadPath + separator + fileUploadSubPath;
-        File targetFolder = new File(finalUploadPath);
-
-        // Creates the target folder if it doesn't exist.
-        if(!targetFolder.exists()){
-            boolean folderCreated = targetFolder.mkdirs();
+    public void retain(String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        final String hash = Paths.get(filePath).getFileName().toString();
+        if (jdbcTemplate.update(RETAIN_BLOB, hash) == 0) {
+            throw new IllegalStateException("Content " + hash + " was purged before its message was saved");
+        }
+    }
 
-            if(!folderCreated){
-                // Logs a warning if folder creation fails.
-                log.warn("Failed to create the target folder, {}", targetFolder);
-                return null;
+    /**
+     * Deletes the contents, and their renditions, that no message references since the retention period.
+     */
+    @Scheduled(fixedDelayString = "${application.file.uploads.purge-interval}")
+    public void purgeUnreferencedFiles() {
+        List<String> purged = transactionTemplate.execute(status -> {
+            List<String> hashes = jdbcTemplate.queryForList(
+                    PURGE_UNREFERENCED_BLOBS, String.class, unreferencedRetentionMillis, PURGE_BATCH_SIZE);
+            for (String hash : hashes) {
+                Path content = contentPath(hash);
+                for (MediaVariant variant : MediaVariant.values()) {
+                    deleteQuietly(variant.resolve(content));
+                }
             }
+            return hashes;
+        });
+        if (purged != null && !purged.isEmpty()) {
+            log.info("Purged {} contents unreferenced for {} ms", purged.size(), unreferencedRetentionMillis);
         }
+    }
 
-        // Extracts the file extension.
-        final String fileExtension = getFileExtension(sourceFile.getOriginalFilename());
-        // Generates a unique file name by appending the current timestamp.
-        String targetFilePath = finalUploadPath + separator + currentTimeMillis() + fileExtension;
-        Path targetPath = Paths.get(targetFilePath);
-
-        try{
-            // Writes the file bytes to the target path.
-            Files.write(targetPath, sourceFile.getBytes());
-            log.info("File saved at: {}", targetFilePath);
-            return targetFilePath;
-        }catch (IOException e) {
-            // Logs an error if the file couldn't be saved.
-            log.error("File was not saved", e);
-        }
+    /**
+     * Returns the counter of the bytes written to the store, for new content only: deduplicated uploads are not counted.
+     *
+     * @param meterRegistry The registry of the counter.
+     * @param variant       The rendition written.
+     * @return the counter of the rendition.
+     */
+    static Counter writtenBytes(MeterRegistry meterRegistry, MediaVariant variant) {
+        return Counter.builder("media.store.written")
+                .description("Bytes written to the media store")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("variant", variant.name().toLowerCase())
+                .register(meterRegistry);
+    }
 
-        // Returns null if the file couldn't be saved.
-        return null;
+    /**
+     * Resolves a stored file as a resource that can be streamed from disk.
+     *
+     * @param filePath The path of the file, as returned by {@link #saveFile(MultipartFile, String)}.
+     * @return The file as a Resource.
+     * @throws EntityNotFoundException if the file does not exist anymore.
+     */
+    public Resource loadFile(@NonNull String filePath) {
+        Resource resource = new FileSystemResource(filePath);
+        if (!resource.isReadable()) {
+            log.warn("No file found in the path {}", filePath);
+            throw new EntityNotFoundException("File " + filePath + " not found");
+        }
+        return resource;
     }
 
     /**
-     * Extracts the file extension from the file name.
+     * Copies the content of an uploaded file to the target file through NIO channels and computes its SHA-256 hash.
      *
-     * @param fileName The name of the file.
-     * @return The file extension (e.g., ".jpg"), or an empty string if no extension is found.
+     * @param sourceFile The uploaded file.
+     * @param targetFile The file to write.
+     * @return The hex-encoded SHA-256 hash of the content.
+     * @throws IOException if the file cannot be read or written.
      */
-    private String getFileExtension(String fileName) {
+    private String copyAndHash(MultipartFile sourceFile, Path targetFile) throws IOException {
+        final MessageDigest digest = sha256();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
-        // Checks if the file name is empty or null.
-        if(fileName == null || fileName.isEmpty()){
-            return "";
+        try (ReadableByteChannel source = Channels.newChannel(sourceFile.getInputStream());
+             FileChannel target = FileChannel.open(targetFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate()); // Hashes the chunk without consuming it.
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
         }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-        // Finds the position of the last dot in the file name.
-        int lastDotIndex = fileName.lastIndexOf('.');
-        if(lastDotIndex == -1){
-            return "";
+    /**
+     * Resolves the path of a content in the store, sharded by the first bytes of its hash.
+     *
+     * @param hash The hex-encoded SHA-256 hash of the content.
+     * @return The path of the original file.
+     */
+    private Path contentPath(String hash) {
+        return Paths.get(fileUploadPath, "media", hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return A new SHA-256 MessageDigest.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e); // Every JVM must provide SHA-256.
         }
+    }
 
-        // Extracts and returns the file extension in lowercase.
-        return fileName.substring(lastDotIndex + 1).toLowerCase();
+    /**
+     * Deletes a file, if it still exists.
+     *
+     * @param file The file to delete, may be null.
+     */
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete the file {}", file, e);
+        }
     }
 }
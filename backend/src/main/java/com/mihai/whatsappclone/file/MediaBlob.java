@@ -0,0 +1,47 @@
+package com.mihai.whatsappclone.file;
+
+import com.mihai.whatsappclone.common.BaseAuditingEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * Represents a media file stored once in the content-addressed media store.
+ * The file is identified by the SHA-256 hash of its content, and counts the messages referencing it.
+ * A content is recorded unreferenced when it is uploaded, then referenced by the transaction saving its message:
+ * contents whose message was never saved stay unreferenced, and are purged by {@link FileService}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity // Marks this class as a JPA entity.
+@Table(name = "media_blob") // Maps the entity to the "media_blob" table in the database.
+public class MediaBlob extends BaseAuditingEntity {
+
+    /**
+     * The hex-encoded SHA-256 hash of the content.
+     */
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    /**
+     * The size of the content in bytes.
+     */
+    @Column(nullable = false)
+    private long size;
+
+    /**
+     * The number of messages referencing the content.
+     */
+    @ColumnDefault("0")
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+}
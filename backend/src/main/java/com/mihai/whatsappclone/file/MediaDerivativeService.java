@@ -0,0 +1,272 @@
+package com.mihai.whatsappclone.file;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service generating the derived renditions of uploaded images in the background.
+ * For each stored image it writes a display size and a preview as JPEG next to the original content,
+ * and a tiny blurred placeholder meant to be inlined in the message.
+ * Since the media store is content-addressed, the renditions of a content are only generated once.
+ */
+@Service // Marks the class as a Spring service.
+@Slf4j // Enables logging with SLF4J.
+public class MediaDerivativeService {
+
+    private static final float DERIVATIVE_QUALITY = 0.8f; // JPEG quality of the display and preview renditions.
+    private static final float PLACEHOLDER_QUALITY = 0.5f; // JPEG quality of the placeholder.
+
+    /**
+     * Executor decoding a bounded number of images at once, each decoded raster takes megabytes of heap.
+     * Images uploaded in a burst wait in its queue, which only holds their paths.
+     */
+    private final ExecutorService executor;
+
+    private final MeterRegistry meterRegistry; // Counts the bytes written to the store.
+
+    // Bounds of the longest side of the renditions, in pixels.
+    private final int displaySize;
+    private final int previewSize;
+    private final int placeholderSize;
+
+    public MediaDerivativeService(MeterRegistry meterRegistry,
+                                  @Value("${application.file.derivatives.display-size}") int displaySize,
+                                  @Value("${application.file.derivatives.preview-size}") int previewSize,
+                                  @Value("${application.file.derivatives.placeholder-size}") int placeholderSize,
+                                  @Value("${application.file.derivatives.threads}") int threads) {
+        this.meterRegistry = meterRegistry;
+        this.displaySize = displaySize;
+        this.previewSize = previewSize;
+        this.placeholderSize = placeholderSize;
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Generates the renditions of a stored image asynchronously.
+     *
+     * @param filePath    The path of the stored file, as returned by {@link FileService#saveFile}.
+     * @param contentType The MIME type of the file.
+     * @return A future completed with the placeholder bytes, or with null if the file is not a supported image.
+     */
+    public CompletableFuture<byte[]> generateDerivatives(String filePath, String contentType) {
+        if (filePath == null || contentType == null || !contentType.startsWith("image/")) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> generate(Paths.get(filePath)), executor);
+    }
+
+    /**
+     * Finds a derived rendition of a stored file.
+     *
+     * @param filePath The path of the stored file.
+     * @param variant  The requested rendition.
+     * @return The path of the rendition, or null if it is the original or has not been generated.
+     */
+    public String findDerivative(String filePath, MediaVariant variant) {
+        if (variant == MediaVariant.ORIGINAL) {
+            return null;
+        }
+        Path derivative = variant.resolve(Paths.get(filePath));
+        return Files.isReadable(derivative) ? derivative.toString() : null;
+    }
+
+    /**
+     * Waits for the running generations before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+
+    /**
+     * Generates the renditions of an image, unless they already exist.
+     *
+     * @param original The path of the stored file.
+     * @return The placeholder bytes, or null if the file could not be decoded.
+     */
+    private byte[] generate(Path original) {
+        try {
+            // The placeholder is written last, its presence means the content was already processed.
+            Path placeholderPath = MediaVariant.PLACEHOLDER.resolve(original);
+            if (Files.exists(placeholderPath)) {
+                return Files.readAllBytes(placeholderPath);
+            }
+
+            BufferedImage image = readImage(original, displaySize);
+            if (image == null) {
+                log.debug("No image reader for {}, skipping derivatives", original);
+                return null;
+            }
+
+            writeDerivative(original, MediaVariant.DISPLAY, toJpeg(scale(image, displaySize), DERIVATIVE_QUALITY));
+            BufferedImage preview = scale(image, previewSize);
+            writeDerivative(original, MediaVariant.PREVIEW, toJpeg(preview, DERIVATIVE_QUALITY));
+
+            byte[] placeholder = toJpeg(blur(scale(preview, placeholderSize)), PLACEHOLDER_QUALITY);
+            writeDerivative(original, MediaVariant.PLACEHOLDER, placeholder);
+            log.info("Derivatives generated for {}", original);
+            return placeholder;
+        } catch (IOException | RuntimeException e) {
+            // Logs an error, the original file is still served.
+            log.error("Derivatives were not generated for {}", original, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes an image, subsampling large images so that the decoded raster stays close to the largest rendition.
+     * The longest side decides, so that a very tall image is not decoded at full size either.
+     *
+     * @param file    The image file.
+     * @param maxSize The bound of the longest side of the largest rendition.
+     * @return The decoded image, or null if no reader supports the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private BufferedImage readImage(Path file, int maxSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+
+                // Keeps at least twice the target size, so that the final downscale stays smooth.
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (maxSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Downscales an image so that its longest side fits the given size, keeping its aspect ratio, onto an opaque
+     * RGB image. Large reductions are done in successive halvings to avoid aliasing.
+     *
+     * @param source The image to scale.
+     * @param size   The bound of the longest side; smaller images keep their size.
+     * @return The scaled image.
+     */
+    private BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        do {
+            int stepWidth = Math.max(targetWidth, current.getWidth() / 2);
+            int stepHeight = Math.max(targetHeight, current.getHeight() / 2);
+            current = draw(current, stepWidth, stepHeight);
+        } while (current.getWidth() > targetWidth || current.getHeight() > targetHeight);
+        return current;
+    }
+
+    /**
+     * Draws an image onto a new opaque RGB image of the given size, transparent areas become white.
+     *
+     * @param source The image to draw.
+     * @param width  The width of the new image.
+     * @param height The height of the new image.
+     * @return The new image.
+     */
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Applies a box blur to an image.
+     *
+     * @param source The image to blur.
+     * @return The blurred image.
+     */
+    private BufferedImage blur(BufferedImage source) {
+        float[] kernel = new float[9];
+        Arrays.fill(kernel, 1f / kernel.length);
+        return new ConvolveOp(new Kernel(3, 3, kernel), ConvolveOp.EDGE_NO_OP, null).filter(source, null);
+    }
+
+    /**
+     * Encodes an image as JPEG.
+     *
+     * @param image   The image to encode.
+     * @param quality The compression quality, between 0 and 1.
+     * @return The JPEG bytes.
+     * @throws IOException if the image cannot be encoded.
+     */
+    private byte[] toJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a rendition next to the original file, through a temporary file so readers never see a partial file.
+     *
+     * @param original The path of the original file.
+     * @param variant  The rendition being written.
+     * @param content  The encoded rendition.
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeDerivative(Path original, MediaVariant variant, byte[] content) throws IOException {
+        Path target = variant.resolve(original);
+        Path tempFile = Files.createTempFile(target.getParent(), "derivative-", ".part");
+        try {
+            Files.write(tempFile, content);
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileService.writtenBytes(meterRegistry, variant).increment(content.length);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mihai.whatsappclone.file;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Enum representing the renditions in which a stored media file can be served.
+ * Derived renditions are JPEG files stored next to the original content.
+ */
+public enum MediaVariant {
+
+    ORIGINAL(null), // The uploaded file as is.
+    DISPLAY(".display.jpg"), // A downscaled copy for full screen viewing.
+    PREVIEW(".preview.jpg"), // A small copy for chat lists and notifications.
+    PLACEHOLDER(".placeholder.jpg"); // A tiny blurred copy inlined in the message.
+
+    /**
+     * The suffix appended to the original file name for this rendition.
+     */
+    private final String suffix;
+
+    MediaVariant(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Resolves the path of this rendition of a stored file.
+     *
+     * @param original The path of the original file.
+     * @return The path of the rendition, which may not exist yet.
+     */
+    public Path resolve(Path original) {
+        if (suffix == null) {
+            return original;
+        }
+        return original.resolveSibling(original.getFileName() + suffix);
+    }
+
+    /**
+     * Parses a rendition from a request parameter, ignoring the case.
+     *
+     * @param value The parameter value (e.g. "preview").
+     * @return The matching MediaVariant.
+     * @throws IllegalArgumentException if the value is not a known rendition, answered with 400 Bad Request.
+     */
+    public static MediaVariant fromParameter(String value) {
+        for (MediaVariant variant : values()) {
+            if (variant.name().equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown media size '" + value + "', expected one of "
+                + Arrays.stream(values()).map(variant -> variant.name().toLowerCase(Locale.ROOT)).toList());
+    }
+}
@@ -17,14 +17,52 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity // Marks this class as a JPA entity.
-@Table(name = "messages") // Maps the entity to the "messages" table in the database.
+@Table( // Maps the entity to the "messages" table in the database.
+        name = "messages",
+        indexes = @Index( // Composite index backing the keyset (createdDate, id) pagination of a chat's history.
+                name = "idx_messages_chat_created_id",
+                columnList = "chat_id, created_date, id"
+        )
+)
 @NamedQuery( // Predefined JPA query to fetch messages by chat ID.
         name = MessageConstants.FIND_MESSAGES_BY_CHAT_ID,
         query = "SELECT m FROM Message m WHERE m.chat.id = :chatId ORDER BY m.createdDate"
 )
-@NamedQuery( // Predefined JPA query to update the state of messages in a specific chat.
-        name = MessageConstants.SET_MESSAGES_TO_SEEN_BY_CHAT,
-        query = "UPDATE Message SET state = :newState WHERE chat.id = :chatId"
+@NamedQuery( // Predefined JPA query to fetch the newest messages of a chat, newest first.
+        name = MessageConstants.FIND_LATEST_MESSAGES_BY_CHAT_ID,
+        query = "SELECT m FROM Message m WHERE m.chat.id = :chatId ORDER BY m.createdDate DESC, m.id DESC"
+)
+@NamedQuery( // Predefined JPA query to fetch the messages strictly older than a (createdDate, id) cursor, newest first.
+        name = MessageConstants.FIND_MESSAGES_BEFORE_CURSOR,
+        query = "SELECT m FROM Message m WHERE m.chat.id = :chatId " +
+                "AND (m.createdDate < :createdDate OR (m.createdDate = :createdDate AND m.id < :id)) " +
+                "ORDER BY m.createdDate DESC, m.id DESC"
+)
+@NamedQuery( // Predefined JPA query to fetch the messages strictly newer than a (createdDate, id) cursor, oldest first.
+        name = MessageConstants.FIND_MESSAGES_AFTER_CURSOR,
+        query = "SELECT m FROM Message m WHERE m.chat.id = :chatId " +
+                "AND (m.createdDate > :createdDate OR (m.createdDate = :createdDate AND m.id > :id)) " +
+                "ORDER BY m.createdDate ASC, m.id ASC"
+)
+@NamedQuery( // Predefined JPA query to store the placeholder generated for the media of a message.
+        name = MessageConstants.SET_MEDIA_PLACEHOLDER,
+        query = "UPDATE Message SET mediaPlaceholder = :placeholder WHERE id = :messageId"
+)
+@NamedNativeQuery( // Full-text search over the messages sent or received by a user, best matches first.
+        name = MessageConstants.SEARCH_MESSAGES,
+        query = "SELECT m.* FROM messages m, websearch_to_tsquery('simple', :query) q " +
+                "WHERE m.content_tsv @@ q AND (m.sender_id = :userId OR m.recipient_id = :userId) " +
+                "ORDER BY ts_rank_cd(m.content_tsv, q) DESC, m.created_date DESC, m.id DESC " +
+                "LIMIT :limit OFFSET :offset",
+        resultClass = Message.class
+)
+@NamedNativeQuery( // Full-text search over the messages of one chat of a user, best matches first.
+        name = MessageConstants.SEARCH_MESSAGES_IN_CHAT,
+        query = "SELECT m.* FROM messages m, websearch_to_tsquery('simple', :query) q " +
+                "WHERE m.content_tsv @@ q AND m.chat_id = :chatId AND (m.sender_id = :userId OR m.recipient_id = :userId) " +
+                "ORDER BY ts_rank_cd(m.content_tsv, q) DESC, m.created_date DESC, m.id DESC " +
+                "LIMIT :limit OFFSET :offset",
+        resultClass = Message.class
 )
 public class Message extends BaseAuditingEntity {
 
@@ -61,7 +99,7 @@ public class Message extends BaseAuditingEntity {
     /**
      * The chat to which the message belongs.
      */
-    @ManyToOne // Defines a many-to-one relationship with the Chat entity.
+    @ManyToOne(fetch = FetchType.LAZY) // Lazy, so reading a page of messages does not load the chat (and its history) again.
     @JoinColumn(name = "chat_id") // Specifies the foreign key column for the related chat.
     private Chat chat;
 
@@ -83,4 +121,21 @@ public class Message extends BaseAuditingEntity {
      * The file path of the media associated with the message, if any.
      */
     private String mediaFilePath;
+
+    /**
+     * The MIME type of the media associated with the message, if any.
+     */
+    private String mediaContentType;
+
+    /**
+     * The size in bytes of the media associated with the message, if any.
+     */
+    private Long mediaSize;
+
+    /**
+     * A tiny blurred JPEG of the media, inlined in responses while the preview is loading.
+     * Generated in the background, so it is null until the derivatives of the media are ready.
+     */
+    @Column(name = "media_placeholder")
+    private byte[] mediaPlaceholder;
 }
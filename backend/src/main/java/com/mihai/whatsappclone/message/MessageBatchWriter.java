@@ -0,0 +1,82 @@
+package com.mihai.whatsappclone.message;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts messages in multi-row JDBC statements.
+ * The IDs of a whole batch are taken from the message sequence in a single round trip,
+ * instead of one sequence call per message. Larger batches are split into several statements, as PostgreSQL
+ * accepts at most 65535 bind parameters in one statement.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageBatchWriter {
+
+    private static final String ALLOCATE_IDS = "SELECT nextval('msg_seq') FROM generate_series(1, ?)";
+
+    private static final String INSERT_MESSAGES =
+            "INSERT INTO messages (id, chat_id, sender_id, recipient_id, content, type, state, created_date) VALUES ";
+
+    private static final String VALUES_ROW = "(?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int COLUMN_COUNT = 8;
+
+    /**
+     * The most rows a single statement can insert within the bind parameter limit of PostgreSQL.
+     */
+    public static final int MAX_ROWS_PER_STATEMENT = 65535 / COLUMN_COUNT;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the messages and assigns them their IDs.
+     * The messages must have their chat, participants, type, state and creation date set.
+     *
+     * @param messages The messages to insert.
+     */
+    public void insert(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // Allocate the IDs of the whole batch at once.
+        List<Long> ids = jdbcTemplate.queryForList(ALLOCATE_IDS, Long.class, messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setId(ids.get(i));
+        }
+
+        for (int from = 0; from < messages.size(); from += MAX_ROWS_PER_STATEMENT) {
+            insertRows(messages.subList(from, Math.min(messages.size(), from + MAX_ROWS_PER_STATEMENT)));
+        }
+    }
+
+    /**
+     * Inserts messages, whose IDs are assigned, with one statement.
+     *
+     * @param messages At most {@link #MAX_ROWS_PER_STATEMENT} messages.
+     */
+    private void insertRows(List<Message> messages) {
+        Object[] args = new Object[messages.size() * COLUMN_COUNT];
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+
+            int offset = i * COLUMN_COUNT;
+            args[offset] = message.getId();
+            args[offset + 1] = message.getChat().getId();
+            args[offset + 2] = message.getSenderId();
+            args[offset + 3] = message.getRecipientId();
+            args[offset + 4] = message.getContent();
+            args[offset + 5] = message.getType().name();
+            args[offset + 6] = message.getState().name();
+            args[offset + 7] = message.getCreatedDate();
+        }
+
+        jdbcTemplate.update(INSERT_MESSAGES + String.join(", ", Collections.nCopies(messages.size(), VALUES_ROW)), args);
+    }
+}
@@ -8,8 +8,38 @@ public class MessageConstants {
     // Named query for finding messages by chat ID.
     public static final String FIND_MESSAGES_BY_CHAT_ID = "Messages.findMessagesByChatId";
 
-    // Named query for updating the state of messages in a specific chat.
-    public static final String SET_MESSAGES_TO_SEEN_BY_CHAT = "Messages.setMessagesToSeenByChat";
+    // Named query for finding the newest messages of a chat.
+    public static final String FIND_LATEST_MESSAGES_BY_CHAT_ID = "Messages.findLatestMessagesByChatId";
+
+    // Named query for finding the messages older than a keyset cursor.
+    public static final String FIND_MESSAGES_BEFORE_CURSOR = "Messages.findMessagesBeforeCursor";
+
+    // Named query for finding the messages newer than a keyset cursor.
+    public static final String FIND_MESSAGES_AFTER_CURSOR = "Messages.findMessagesAfterCursor";
+
+    // Named native query for the full-text search of messages in the chats of a user.
+    public static final String SEARCH_MESSAGES = "Messages.searchMessages";
+
+    // Named native query for the full-text search of messages in one chat of a user.
+    public static final String SEARCH_MESSAGES_IN_CHAT = "Messages.searchMessagesInChat";
+
+    // Named query for storing the placeholder of a media message once it is generated.
+    public static final String SET_MEDIA_PLACEHOLDER = "Messages.setMediaPlaceholder";
+
+    // URL from which the media of a message is downloaded, formatted with the message ID.
+    public static final String MEDIA_URL_TEMPLATE = "/api/v1/messages/%d/media";
+
+    // URL from which the preview of an image message is downloaded, formatted with the message ID.
+    public static final String MEDIA_PREVIEW_URL_TEMPLATE = MEDIA_URL_TEMPLATE + "?size=preview";
+
+    // Number of messages returned by a history page when the client does not ask for a size.
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    // Upper bound for the size of a history page.
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Number of results returned by a search page when the client does not ask for a size.
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
 
     // Private constructor to prevent instantiation.
     private MessageConstants() {}
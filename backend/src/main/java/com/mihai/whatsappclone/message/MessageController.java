@@ -1,15 +1,30 @@
 package com.mihai.whatsappclone.message;
 
+import com.mihai.whatsappclone.file.FileService;
+import com.mihai.whatsappclone.file.MediaDerivativeService;
+import com.mihai.whatsappclone.file.MediaVariant;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 /**
  * REST controller for handling message-related operations.
@@ -22,6 +37,8 @@ import java.util.List;
 public class MessageController {
 
     private final MessageService messageService;
+    private final FileService fileService;
+    private final MediaDerivativeService mediaDerivativeService;
 
     /**
      * Endpoint for saving a new message.
@@ -67,13 +84,116 @@ public class MessageController {
     /**
      * Endpoint for retrieving all messages in a specific chat.
      *
+     * The list is streamed while the messages are read, whatever the length of the history.
+     *
      * @param chatId The ID of the chat whose messages are being retrieved.
-     * @return A list of messages in the specified chat wrapped in a ResponseEntity.
+     * @return A ResponseEntity streaming the list of messages in the specified chat.
      */
     @GetMapping("/chat/{chat-id}")
-    public ResponseEntity<List<MessageResponse>> getMessages(
+    @ApiResponse(responseCode = "200", content = @Content( // Declares the streamed list for the generated clients.
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = MessageResponse.class))))
+    public ResponseEntity<StreamingResponseBody> getMessages(
             @PathVariable("chat-id") String chatId
     ) {
-        return ResponseEntity.ok(messageService.findChatMessages(chatId));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> messageService.writeChatMessages(chatId, outputStream));
+    }
+
+    /**
+     * Endpoint for retrieving one page of a chat's history using keyset pagination.
+     * Without an anchor the newest messages are returned; at most one anchor can be used.
+     *
+     * @param chatId The ID of the chat whose messages are being retrieved.
+     * @param before Cursor returned as "olderCursor" by a previous page, to read older messages.
+     * @param after  Cursor returned as "newerCursor" by a previous page, to read newer messages.
+     * @param around ISO date-time around which the page is centered.
+     * @param size   The number of messages of the page (bounded by the server).
+     * @return The page of messages in chronological order wrapped in a ResponseEntity.
+     */
+    @GetMapping("/chat/{chat-id}/history")
+    public ResponseEntity<MessagePageResponse> getMessagesPage(
+            @PathVariable("chat-id") String chatId,
+            @RequestParam(name = "before", required = false) String before,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "around", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime around,
+            @RequestParam(name = "size", required = false) Integer size
+    ) {
+        return ResponseEntity.ok(messageService.findChatMessagesPage(chatId, before, after, around, size));
+    }
+
+    /**
+     * Endpoint for searching the content of the messages of the current user.
+     *
+     * @param query          The search terms, in web search syntax ("quoted phrases", -excluded, or).
+     * @param chatId         Optional ID of a chat to restrict the search to.
+     * @param page           The index of the page, starting at 0.
+     * @param size           The number of results of the page (bounded by the server).
+     * @param authentication The authentication object for retrieving the current user.
+     * @return One page of matching messages, best matches first, wrapped in a ResponseEntity.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<MessageSearchResponse> searchMessages(
+            @RequestParam("q") String query,
+            @RequestParam(name = "chat-id", required = false) String chatId,
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "size", required = false) Integer size,
+            Authentication authentication
+    ) {
+        return ResponseEntity.ok(messageService.searchMessages(query, chatId, page, size, authentication));
+    }
+
+    /**
+     * Endpoint for downloading the media of a message.
+     * The file is streamed from disk instead of being loaded into memory; HTTP Range requests are served
+     * as partial content and a matching If-None-Match returns 304 Not Modified.
+     * A smaller rendition of an image can be requested; the original is served until it has been generated.
+     *
+     * @param messageId      The ID of the message whose media is downloaded.
+     * @param size           The rendition to download: original (default), display, preview or placeholder;
+     *                       any other value is answered with 400 Bad Request.
+     * @param authentication The authentication object for retrieving the current user.
+     * @return The media file wrapped in a ResponseEntity.
+     * @throws IOException if the media file cannot be read.
+     */
+    @GetMapping("/{message-id}/media")
+    public ResponseEntity<Resource> getMedia(
+            @PathVariable("message-id") Long messageId,
+            @RequestParam(name = "size", defaultValue = "original") String size,
+            Authentication authentication
+    ) throws IOException {
+        final MediaVariant variant = MediaVariant.fromParameter(size);
+        final Message message = messageService.findMediaMessage(messageId, authentication);
+
+        // Serves the requested rendition if it is ready, the original file otherwise.
+        final String derivativePath = mediaDerivativeService.findDerivative(message.getMediaFilePath(), variant);
+        final Resource media = fileService.loadFile(derivativePath != null ? derivativePath : message.getMediaFilePath());
+
+        // Media files are never modified once written, so their ID, size and date identify the content.
+        final long lastModified = media.lastModified();
+        final String eTag = "\"" + messageId + "-" + media.contentLength() + "-" + lastModified + "\"";
+
+        final MediaType contentType;
+        if (derivativePath != null) {
+            contentType = MediaType.IMAGE_JPEG; // Derived renditions are always encoded as JPEG.
+        } else if (message.getMediaContentType() != null) {
+            contentType = MediaType.parseMediaType(message.getMediaContentType());
+        } else {
+            contentType = MediaTypeFactory.getMediaType(media).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        }
+
+        // A fallback to the original must not be cached in place of the rendition being generated.
+        final CacheControl cacheControl = variant != MediaVariant.ORIGINAL && derivativePath == null
+                ? CacheControl.noCache()
+                : CacheControl.maxAge(Duration.ofDays(30)).cachePrivate();
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .body(media); // Resource bodies are written as ResourceRegions when a Range header is present.
     }
 }
@@ -0,0 +1,69 @@
+package com.mihai.whatsappclone.message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position of a message inside a chat's history.
+ * Messages are ordered by (createdDate, id), so this pair identifies a unique position
+ * that can be used to continue reading the history in either direction.
+ *
+ * @param createdDate The creation date of the message.
+ * @param id          The ID of the message, used to break ties on equal creation dates.
+ */
+public record MessageCursor(LocalDateTime createdDate, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Creates the cursor pointing at the given message.
+     *
+     * @param message The message the cursor points at.
+     * @return The cursor of the message.
+     */
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getCreatedDate(), message.getId());
+    }
+
+    /**
+     * Creates the cursor pointing at a message already mapped to its response.
+     *
+     * @param message The message the cursor points at.
+     * @return The cursor of the message.
+     */
+    public static MessageCursor of(MessageResponse message) {
+        return new MessageCursor(message.getCreatedAt(), message.getId());
+    }
+
+    /**
+     * Encodes the cursor as an opaque, URL-safe token.
+     *
+     * @return The encoded cursor.
+     */
+    public String encode() {
+        final String raw = createdDate + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}.
+     *
+     * @param token The encoded cursor.
+     * @return The decoded cursor.
+     * @throws IllegalArgumentException if the token is not a valid cursor.
+     */
+    public static MessageCursor decode(String token) {
+        try {
+            final String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            final int separatorIndex = raw.lastIndexOf(SEPARATOR);
+            return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, separatorIndex)),
+                    Long.parseLong(raw.substring(separatorIndex + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid message cursor " + token, e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mihai.whatsappclone.message;
+
+import com.mihai.whatsappclone.notification.NotificationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded ingest queue for messages sent over WebSocket.
+ * A background thread drains the queue and persists the pending messages in batches,
+ * so that the cost of a transaction and of a round trip is shared by every message of a batch.
+ */
+@Service
+@Slf4j
+public class MessageIngestService {
+
+    private final MessageService messageService; // Persists the batches and notifies the participants.
+    private final NotificationService notificationService; // Tells senders when their messages are rejected.
+    private final BlockingQueue<MessageRequest> queue; // Messages waiting to be persisted.
+    private final int batchSize; // Maximum number of messages persisted in one batch.
+    private Thread worker;
+
+    public MessageIngestService(MessageService messageService,
+                                NotificationService notificationService,
+                                @Value("${application.messages.ingest.queue-capacity}") int queueCapacity,
+                                @Value("${application.messages.ingest.batch-size}") int batchSize) {
+        this.messageService = messageService;
+        this.notificationService = notificationService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // A batch is inserted with a single statement, within the bind parameter limit of PostgreSQL.
+        if (batchSize > MessageBatchWriter.MAX_ROWS_PER_STATEMENT) {
+            log.warn("Ingest batch size {} exceeds the {} rows of one statement, using {}",
+                    batchSize, MessageBatchWriter.MAX_ROWS_PER_STATEMENT, MessageBatchWriter.MAX_ROWS_PER_STATEMENT);
+        }
+        this.batchSize = Math.clamp(batchSize, 1, MessageBatchWriter.MAX_ROWS_PER_STATEMENT);
+    }
+
+    /**
+     * Starts the thread persisting the queued messages.
+     */
+    @PostConstruct
+    public void start() {
+        worker = Thread.ofPlatform()
+                .name("message-ingest")
+                .daemon()
+                .start(this::drain);
+    }
+
+    /**
+     * Stops accepting work and persists what is left in the queue.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        worker.interrupt();
+        worker.join();
+    }
+
+    /**
+     * Queues a message sent by an authenticated user.
+     *
+     * @param request The message request, with its sender ID set to the authenticated user.
+     * @return true if the message was queued, false if the queue is full.
+     */
+    public boolean submit(MessageRequest request) {
+        return queue.offer(request);
+    }
+
+    /**
+     * Persists the queued messages in batches until the thread is interrupted, then flushes the rest of the queue.
+     */
+    private void drain() {
+        List<MessageRequest> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Wait for a first message, then take whatever else is already queued.
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Persist the messages queued before the shutdown.
+        while (queue.drainTo(batch, batchSize) > 0) {
+            persist(batch);
+        }
+    }
+
+    /**
+     * Persists a batch of messages and clears it; if the batch fails, every sender is told its message was rejected.
+     *
+     * @param batch The messages to persist.
+     */
+    private void persist(List<MessageRequest> batch) {
+        try {
+            messageService.saveMessageBatch(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to save a batch of {} messages", batch.size(), e);
+            batch.forEach(request -> notificationService.sendNotification(
+                    request.getSenderId(), messageService.toRejectedNotification(request)));
+        } finally {
+            batch.clear();
+        }
+    }
+}
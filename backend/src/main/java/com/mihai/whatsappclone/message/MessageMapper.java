@@ -1,6 +1,5 @@
 package com.mihai.whatsappclone.message;
 
-import com.mihai.whatsappclone.file.FileUtils;
 import org.springframework.stereotype.Service;
 
 /**
@@ -17,15 +16,83 @@ public class MessageMapper {
      * @return A MessageResponse object containing the mapped data.
      */
     public MessageResponse toMessageResponse(Message message) {
+        return toMessageResponse(message, toState(message));
+    }
+
+    /**
+     * Maps a Message entity whose state is already known to a MessageResponse DTO, without reading the chat.
+     *
+     * @param message The Message entity to be mapped.
+     * @param state The state of the message.
+     * @return A MessageResponse object containing the mapped data.
+     */
+    public MessageResponse toMessageResponse(Message message, MessageState state) {
         return MessageResponse.builder()
                 .id(message.getId()) // Maps the ID of the message.
                 .content(message.getContent()) // Maps the content of the message.
                 .senderId(message.getSenderId()) // Maps the sender's ID.
                 .recipientId(message.getRecipientId()) // Maps the recipient's ID.
                 .type(message.getType()) // Maps the type of the message (e.g., text, media).
-                .state(message.getState()) // Maps the state of the message (e.g., sent, seen).
+                .state(state) // The state of the message, derived from the read watermark of its recipient.
                 .createdAt(message.getCreatedDate()) // Maps the creation timestamp.
-                .media(FileUtils.readFileFromLocation(message.getMediaFilePath())) // Reads and maps the media file content associated with the message using `FileUtils`.
+                .mediaUrl(toMediaUrl(message)) // Maps the download URL of the media, the content itself is streamed separately.
+                .mediaSize(message.getMediaSize()) // Maps the size of the media.
+                .mediaContentType(message.getMediaContentType()) // Maps the MIME type of the media.
+                .previewUrl(toPreviewUrl(message)) // Maps the URL of the preview, so lists only load small images.
+                .mediaPlaceholder(message.getMediaPlaceholder()) // Maps the inlined placeholder of the media.
                 .build(); // Constructs the MessageResponse object.
     }
+
+    /**
+     * Derives the state of a message: it is seen once the read watermark of its recipient reaches its ID.
+     * Message IDs are taken while their chat is locked, so a message below the watermark was committed before it.
+     *
+     * @param message The Message entity.
+     * @return SEEN if the recipient has read the message, its stored state otherwise.
+     */
+    public MessageState toState(Message message) {
+        return toState(message.getId(), message.getState(), message.getChat().getLastReadMessageId(message.getRecipientId()));
+    }
+
+    /**
+     * Derives the state of a message from the read watermark of its recipient, wherever the watermark was read from.
+     *
+     * @param messageId                  The ID of the message.
+     * @param state                      The stored state of the message.
+     * @param recipientLastReadMessageId The read watermark of the recipient of the message, or null if they read nothing.
+     * @return SEEN if the watermark reaches the message, the stored state otherwise.
+     */
+    public static MessageState toState(Long messageId, MessageState state, Long recipientLastReadMessageId) {
+        if (recipientLastReadMessageId != null && messageId <= recipientLastReadMessageId) {
+            return MessageState.SEEN;
+        }
+        return state;
+    }
+
+    /**
+     * Builds the URL from which the media of a message can be downloaded.
+     *
+     * @param message The Message entity.
+     * @return The media download URL, or null if the message has no media.
+     */
+    public String toMediaUrl(Message message) {
+        if (message.getMediaFilePath() == null) {
+            return null;
+        }
+        return MessageConstants.MEDIA_URL_TEMPLATE.formatted(message.getId());
+    }
+
+    /**
+     * Builds the URL from which the preview of an image message can be downloaded.
+     * The endpoint falls back to the original media while the preview is being generated.
+     *
+     * @param message The Message entity.
+     * @return The preview URL, or null if the message has no image.
+     */
+    public String toPreviewUrl(Message message) {
+        if (message.getMediaFilePath() == null || message.getType() != MessageType.IMAGE) {
+            return null;
+        }
+        return MessageConstants.MEDIA_PREVIEW_URL_TEMPLATE.formatted(message.getId());
+    }
 }
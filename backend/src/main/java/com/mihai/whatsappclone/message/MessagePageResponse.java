@@ -0,0 +1,43 @@
+package com.mihai.whatsappclone.message;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A DTO (Data Transfer Object) representing one page of a chat's message history.
+ * Messages are always returned in chronological order; the cursors can be passed back
+ * as "before"/"after" anchors to continue reading older or newer messages.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MessagePageResponse {
+
+    /**
+     * The messages of the page, oldest first.
+     */
+    private List<MessageResponse> messages;
+
+    /**
+     * Cursor of the oldest message of the page, to be used as the "before" anchor of the previous page.
+     */
+    private String olderCursor;
+
+    /**
+     * Cursor of the newest message of the page, to be used as the "after" anchor of the next page.
+     */
+    private String newerCursor;
+
+    /**
+     * Indicates whether older messages exist before this page.
+     */
+    private boolean hasOlder;
+
+    /**
+     * Indicates whether newer messages exist after this page.
+     */
+    private boolean hasNewer;
+}
@@ -1,11 +1,20 @@
 package com.mihai.whatsappclone.message;
 
+import com.mihai.whatsappclone.common.JsonStreamWriter;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Message entities.
@@ -15,24 +24,103 @@ import java.util.List;
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     /**
-     * Retrieves all messages associated with a specific chat ID.
+     * Streams all messages associated with a specific chat ID, reading them from the database in batches.
      * Messages are sorted by their creation date as defined in the named query.
+     * The stream must be consumed and closed within a transaction.
      *
      * @param chatId The ID of the chat.
-     * @return A list of Message entities belonging to the specified chat.
+     * @return A stream of the Message entities belonging to the specified chat.
      */
     @Query(name = MessageConstants.FIND_MESSAGES_BY_CHAT_ID)
-    List<Message> findMessagesByChatId(@Param("chatId") String chatId);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamWriter.FETCH_SIZE_HINT),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") // No snapshots, the messages are only written out.
+    })
+    Stream<Message> streamMessagesByChatId(@Param("chatId") String chatId);
 
     /**
-     * Updates the state of all messages within a specific chat to the provided new state.
-     * This operation modifies the database directly.
+     * Retrieves the newest messages of a chat, newest first.
+     * Only the number of rows requested by the pageable is read from the index.
      *
-     * @param chatId The ID of the chat whose messages are to be updated.
-     * @param state  The new state to set for the messages.
+     * @param chatId   The ID of the chat.
+     * @param pageable The page limiting the number of returned messages.
+     * @return A list of Message entities ordered by (createdDate, id) descending.
      */
-    @Query(name = MessageConstants.SET_MESSAGES_TO_SEEN_BY_CHAT)
+    @Query(name = MessageConstants.FIND_LATEST_MESSAGES_BY_CHAT_ID)
+    List<Message> findLatestMessagesByChatId(@Param("chatId") String chatId, Pageable pageable);
+
+    /**
+     * Retrieves the messages of a chat that are strictly older than the given (createdDate, id) cursor, newest first.
+     *
+     * @param chatId      The ID of the chat.
+     * @param createdDate The creation date of the cursor message.
+     * @param id          The ID of the cursor message, used to break ties on equal creation dates.
+     * @param pageable    The page limiting the number of returned messages.
+     * @return A list of Message entities ordered by (createdDate, id) descending.
+     */
+    @Query(name = MessageConstants.FIND_MESSAGES_BEFORE_CURSOR)
+    List<Message> findMessagesBeforeCursor(@Param("chatId") String chatId,
+                                           @Param("createdDate") LocalDateTime createdDate,
+                                           @Param("id") Long id,
+                                           Pageable pageable);
+
+    /**
+     * Retrieves the messages of a chat that are strictly newer than the given (createdDate, id) cursor, oldest first.
+     *
+     * @param chatId      The ID of the chat.
+     * @param createdDate The creation date of the cursor message.
+     * @param id          The ID of the cursor message, used to break ties on equal creation dates.
+     * @param pageable    The page limiting the number of returned messages.
+     * @return A list of Message entities ordered by (createdDate, id) ascending.
+     */
+    @Query(name = MessageConstants.FIND_MESSAGES_AFTER_CURSOR)
+    List<Message> findMessagesAfterCursor(@Param("chatId") String chatId,
+                                          @Param("createdDate") LocalDateTime createdDate,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+
+    /**
+     * Searches the content of the messages sent or received by a user, using the full-text index of the messages.
+     *
+     * @param query  The search terms, in web search syntax ("quoted phrases", -excluded, or).
+     * @param userId The ID of the user.
+     * @param limit  The maximum number of results.
+     * @param offset The number of best results to skip.
+     * @return The matching messages, best ranked first.
+     */
+    @Query(name = MessageConstants.SEARCH_MESSAGES, nativeQuery = true)
+    List<Message> searchMessages(@Param("query") String query,
+                                 @Param("userId") String userId,
+                                 @Param("limit") int limit,
+                                 @Param("offset") long offset);
+
+    /**
+     * Searches the content of the messages of one chat of a user, using the full-text index of the messages.
+     *
+     * @param query  The search terms, in web search syntax ("quoted phrases", -excluded, or).
+     * @param chatId The ID of the chat.
+     * @param userId The ID of the user.
+     * @param limit  The maximum number of results.
+     * @param offset The number of best results to skip.
+     * @return The matching messages, best ranked first.
+     */
+    @Query(name = MessageConstants.SEARCH_MESSAGES_IN_CHAT, nativeQuery = true)
+    List<Message> searchMessagesInChat(@Param("query") String query,
+                                       @Param("chatId") String chatId,
+                                       @Param("userId") String userId,
+                                       @Param("limit") int limit,
+                                       @Param("offset") long offset);
+
+    /**
+     * Stores the placeholder generated for the media of a message.
+     * Called from the background derivative pipeline, so it runs in its own transaction.
+     *
+     * @param messageId   The ID of the media message.
+     * @param placeholder The placeholder JPEG bytes.
+     */
+    @Query(name = MessageConstants.SET_MEDIA_PLACEHOLDER)
     @Modifying // Indicates this query modifies the database.
-    void setMessagesToSeenByChatId(@Param("chatId") String chatId, @Param("newState") MessageState state);
+    @Transactional(propagation = Propagation.REQUIRES_NEW) // Also called after the commit of the sending transaction.
+    void setMediaPlaceholder(@Param("messageId") Long messageId, @Param("placeholder") byte[] placeholder);
 
 }
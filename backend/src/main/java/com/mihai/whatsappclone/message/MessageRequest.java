@@ -37,4 +37,9 @@ public class MessageRequest {
      * The ID of the chat to which the message belongs.
      */
     private String chatId;
+
+    /**
+     * An optional ID chosen by the sender, echoed back in the acknowledgement of the message.
+     */
+    private String clientMessageId;
 }
@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true) // Cached responses are copied, never modified.
 public class MessageResponse {
 
     /**
@@ -51,7 +51,27 @@ public class MessageResponse {
     private LocalDateTime createdAt;
 
     /**
-     * The media content of the message (if any), stored as a byte array.
+     * The URL from which the media of the message (if any) can be downloaded.
      */
-    private byte[] media;
+    private String mediaUrl;
+
+    /**
+     * The size in bytes of the media of the message (if any).
+     */
+    private Long mediaSize;
+
+    /**
+     * The MIME type of the media of the message (if any).
+     */
+    private String mediaContentType;
+
+    /**
+     * The URL from which a small preview of an image message can be downloaded.
+     */
+    private String previewUrl;
+
+    /**
+     * A tiny blurred JPEG of the media, shown until the preview is loaded (null while it is generated).
+     */
+    private byte[] mediaPlaceholder;
 }
@@ -0,0 +1,37 @@
+package com.mihai.whatsappclone.message;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A DTO (Data Transfer Object) representing one page of message search results.
+ * Results are ordered by relevance, then from the newest to the oldest message.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MessageSearchResponse {
+
+    /**
+     * The matching messages of the page, best matches first.
+     */
+    private List<MessageResponse> messages;
+
+    /**
+     * The index of the page, starting at 0.
+     */
+    private int page;
+
+    /**
+     * The maximum number of results of the page.
+     */
+    private int size;
+
+    /**
+     * Indicates whether more results exist after this page.
+     */
+    private boolean hasMore;
+}
@@ -1,34 +1,68 @@
 package com.mihai.whatsappclone.message;
 
+import com.mihai.whatsappclone.changefeed.ChangeFeedService;
 import com.mihai.whatsappclone.chat.Chat;
+import com.mihai.whatsappclone.chat.ChatConstants;
+import com.mihai.whatsappclone.chat.ChatDescriptor;
+import com.mihai.whatsappclone.chat.ChatDescriptorCache;
 import com.mihai.whatsappclone.chat.ChatRepository;
+import com.mihai.whatsappclone.common.JsonStreamWriter;
 import com.mihai.whatsappclone.file.FileService;
-import com.mihai.whatsappclone.file.FileUtils;
+import com.mihai.whatsappclone.file.MediaDerivativeService;
 import com.mihai.whatsappclone.notification.Notification;
 import com.mihai.whatsappclone.notification.NotificationService;
 import com.mihai.whatsappclone.notification.NotificationType;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Service class for managing messages in the application.
  * Handles operations such as saving messages, retrieving messages, updating message states, and uploading media messages.
  */
 @Service
+@Slf4j
 @RequiredArgsConstructor // Lombok annotation to generate a constructor for all final fields.
 public class MessageService {
 
     private final MessageRepository messageRepository; // Repository for database operations on messages.
+    private final MessageBatchWriter batchWriter; // Multi-row JDBC writer for batches of messages.
     private final ChatRepository chatRepository; // Repository for database operations on chats.
+    private final ChatDescriptorCache chatDescriptorCache; // Participants of the chats, without reading them on every message.
     private final MessageMapper mapper; // Utility to map Message entities to DTOs.
+    private final MessageTailCache tailCache; // Newest messages of the recently read chats.
     private final FileService fileService; // Service for handling file-related operations (e.g., saving and reading files).
+    private final MediaDerivativeService mediaDerivativeService; // Service generating the previews of uploaded images.
     private final NotificationService notificationService; // Service for sending notifications to users.
+    private final ChangeFeedService changeFeedService; // Records changes for clients catching up after a reconnection.
+    private final JsonStreamWriter jsonStreamWriter; // Writes long histories to the response while they are read.
+    private final TransactionTemplate transactionTemplate; // Saves media messages once their file is received.
 
     /**
      * Saves a message in the specified chat.
@@ -36,50 +70,274 @@ public class MessageService {
      * @param messageRequest Object containing the details of the message to be saved.
      * @throws EntityNotFoundException if the chat with the given ID does not exist.
      */
+    @Transactional // The message and the chat summary are saved together.
+    @Timed(value = "messages.save", description = "Time spent saving a message sent through the REST API")
     public void saveMessage(MessageRequest messageRequest) {
-        // Find the chat by its ID or throw an exception if not found.
-        Chat chat = chatRepository.findById(messageRequest.getChatId())
-                .orElseThrow(() -> new EntityNotFoundException("Chat with id " + messageRequest.getChatId() + " not found"));
+        // Find the participants of the chat or throw an exception if it does not exist.
+        ChatDescriptor chat = chatDescriptorCache.get(messageRequest.getChatId());
 
         // Create a new Message entity and populate its fields with data from the request.
         Message message = new Message();
         message.setContent(messageRequest.getContent());
-        message.setChat(chat);
+        message.setChat(chatRepository.getReferenceById(chat.id())); // Only the foreign key is written, the chat is not read.
         message.setSenderId(messageRequest.getSenderId());
         message.setRecipientId(messageRequest.getRecipientId());
         message.setType(messageRequest.getType());
         message.setState(MessageState.SENT);
 
-        // Save the message to the database.
+        // Save the message to the database, its ID is taken once the chat is locked.
+        chatRepository.lockChats(List.of(chat.id()));
         messageRepository.save(message);
+        updateChatSummary(message, 1);
+        addToTailsAfterCommit(List.of(message));
 
-        // Create a notification for the recipient about the new message.
-        Notification notification = Notification.builder()
-                .chatId(chat.getId())
-                .messageType(messageRequest.getType())
-                .content(messageRequest.getContent())
-                .senderId(messageRequest.getSenderId())
-                .recipientId(messageRequest.getRecipientId())
-                .type(NotificationType.MESSAGE)
-                .chatName(chat.getTargetChatName(message.getSenderId()))
+        // Notify the recipient about the new message once it is committed.
+        changeFeedService.recordMessages(List.of(message));
+        notificationService.enqueueNotification(toMessageNotification(chat, message));
+    }
+
+    /**
+     * Saves a batch of messages received over WebSocket in a single transaction.
+     * Messages are inserted with one multi-row statement, the chat summaries are updated once per chat and recipient,
+     * and, once the transaction is committed, each recipient is notified and each sender receives an acknowledgement
+     * (or a rejection if the sender is not a participant of the chat).
+     *
+     * @param requests The message requests, each with its sender ID set to the authenticated user.
+     * @return The saved message for each request, or null for the requests that were rejected.
+     */
+    @Transactional
+    @Timed(value = "messages.save-batch", description = "Time spent saving a batch of messages sent over STOMP")
+    public List<Message> saveMessageBatch(List<MessageRequest> requests) {
+        // Find the participants of all the chats of the batch, the chats missing from the cache are read in one query.
+        Map<String, ChatDescriptor> chats = chatDescriptorCache.getAll(requests.stream()
+                .map(MessageRequest::getChatId)
+                .collect(toSet()));
+
+        List<Message> savedMessages = new ArrayList<>(requests.size());
+        for (MessageRequest request : requests) {
+            ChatDescriptor chat = chats.get(request.getChatId());
+            if (chat == null || request.getType() == null || !chat.isParticipant(request.getSenderId())) {
+                savedMessages.add(null);
+                continue;
+            }
+
+            // The recipient is the other participant of the chat, whatever the client sent.
+            Message message = new Message();
+            message.setContent(request.getContent());
+            message.setChat(chatRepository.getReferenceById(chat.id()));
+            message.setSenderId(request.getSenderId());
+            message.setRecipientId(chat.getOtherParticipantId(request.getSenderId()));
+            message.setType(request.getType());
+            message.setState(MessageState.SENT);
+            message.setCreatedDate(LocalDateTime.now());
+            savedMessages.add(message);
+        }
+
+        // Lock the chats of the batch before the IDs of its messages are taken.
+        List<Message> messages = savedMessages.stream().filter(Objects::nonNull).toList();
+        if (!messages.isEmpty()) {
+            chatRepository.lockChats(messages.stream().map(m -> m.getChat().getId()).collect(toSet()));
+        }
+        batchWriter.insert(messages);
+        addToTailsAfterCommit(messages);
+
+        // Update each chat summary once per recipient, with the latest of their messages, in chat ID order.
+        messages.stream()
+                .collect(groupingBy(m -> m.getChat().getId(), TreeMap::new, groupingBy(Message::getRecipientId)))
+                .values()
+                .forEach(byRecipient -> byRecipient.values()
+                        .forEach(group -> updateChatSummary(group.getLast(), group.size())));
+
+        // Notify the recipients through the outbox, in the order of the batch.
+        changeFeedService.recordMessages(messages);
+        notificationService.enqueueNotifications(messages.stream()
+                .map(message -> toMessageNotification(chats.get(message.getChat().getId()), message))
+                .toList());
+
+        // Acknowledge or reject each request once the messages are committed, senders retry on a missing ACK.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (int i = 0; i < requests.size(); i++) {
+                    MessageRequest request = requests.get(i);
+                    Message message = savedMessages.get(i);
+                    if (message == null) {
+                        notificationService.sendNotification(request.getSenderId(), toRejectedNotification(request));
+                        continue;
+                    }
+                    notificationService.sendNotification(message.getSenderId(), toAckNotification(request, message));
+                }
+            }
+        });
+        return savedMessages;
+    }
+
+    /**
+     * Builds the notification telling a sender that a message could not be saved.
+     *
+     * @param request The rejected message request.
+     * @return The REJECTED notification.
+     */
+    public Notification toRejectedNotification(MessageRequest request) {
+        return Notification.builder()
+                .chatId(request.getChatId())
+                .clientMessageId(request.getClientMessageId())
+                .senderId(request.getSenderId())
+                .recipientId(request.getSenderId())
+                .type(NotificationType.REJECTED)
                 .build();
+    }
+
+    /**
+     * Writes all messages in a chat as a JSON array of MessageResponse DTOs.
+     * Messages are read in batches and written one by one, so the memory used does not depend on the length of the history.
+     *
+     * @param chatId The ID of the chat whose messages are to be retrieved.
+     * @param outputStream The response body.
+     */
+    @Transactional(readOnly = true) // The messages are streamed from an open cursor.
+    @Timed(value = "messages.export", description = "Time spent writing the full history of a chat")
+    public void writeChatMessages(String chatId, OutputStream outputStream) {
+        // A chat with fewer messages than its cached tail is served from memory.
+        MessageTail tail = tailCache.getIfPresent(chatId);
+        if (tail != null && tail.complete()) {
+            jsonStreamWriter.writeArray(outputStream, tail.messages().stream(), Function.identity());
+            return;
+        }
 
-        // Send the notification to the recipient.
-        notificationService.sendNotification(message.getRecipientId(), notification);
+        // Stream the messages by chat ID, converting each entity to its DTO as it is written.
+        try (Stream<Message> messages = messageRepository.streamMessagesByChatId(chatId)) {
+            jsonStreamWriter.writeArray(outputStream, messages, mapper::toMessageResponse);
+        }
     }
 
     /**
-     * Retrieves all messages in a chat by chat ID.
+     * Retrieves one page of a chat's history using keyset pagination on (createdDate, id).
+     * At most one anchor may be given: without an anchor the newest messages are returned,
+     * "before"/"after" continue from a cursor of a previous page and "around" centers the page on a timestamp.
      *
      * @param chatId The ID of the chat whose messages are to be retrieved.
-     * @return A list of MessageResponse DTOs containing the messages.
+     * @param before Cursor of the message before which older messages are read, or null.
+     * @param after  Cursor of the message after which newer messages are read, or null.
+     * @param around Timestamp around which the page is centered, or null.
+     * @param size   The requested number of messages, bounded by {@link MessageConstants#MAX_PAGE_SIZE}.
+     * @return The page of messages in chronological order with the cursors to continue from.
+     * @throws IllegalArgumentException if more than one anchor is given or a cursor is invalid.
      */
-    public List<MessageResponse> findChatMessages(String chatId) {
-        // Fetch messages by chat ID, map them to DTOs, and return as a list.
-        return messageRepository.findMessagesByChatId(chatId)
-                .stream()
-                .map(mapper::toMessageResponse) // Use the mapper to convert entities to DTOs.
-                .toList();
+    @Transactional(readOnly = true)
+    public MessagePageResponse findChatMessagesPage(String chatId, String before, String after, LocalDateTime around, Integer size) {
+        final int pageSize = size == null
+                ? MessageConstants.DEFAULT_PAGE_SIZE
+                : Math.clamp(size, 1, MessageConstants.MAX_PAGE_SIZE);
+
+        int anchors = (before != null ? 1 : 0) + (after != null ? 1 : 0) + (around != null ? 1 : 0);
+        if (anchors > 1) {
+            throw new IllegalArgumentException("Only one of before, after or around can be used");
+        }
+
+        if (anchors == 0 && pageSize <= tailCache.getMessagesPerChat()) {
+            // The newest page is served from the tail of the chat, read once and then kept current by every write.
+            MessageTail tail = tailCache.get(chatId, this::loadTail);
+            List<MessageResponse> page = tail.latest(pageSize);
+            return MessagePageResponse.builder()
+                    .messages(page)
+                    .olderCursor(page.isEmpty() ? null : MessageCursor.of(page.getFirst()).encode())
+                    .newerCursor(page.isEmpty() ? null : MessageCursor.of(page.getLast()).encode())
+                    .hasOlder(tail.hasOlder(pageSize))
+                    .hasNewer(false)
+                    .build();
+        }
+
+        final int olderLimit; // Number of messages read before the anchor.
+        final int newerLimit; // Number of messages read after the anchor.
+        final List<Message> older; // Messages before the anchor, newest first, with one look-ahead row.
+        final List<Message> newer; // Messages after the anchor, oldest first, with one look-ahead row.
+
+        if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            olderLimit = pageSize;
+            newerLimit = 0;
+            older = messageRepository.findMessagesBeforeCursor(chatId, cursor.createdDate(), cursor.id(), PageRequest.of(0, olderLimit + 1));
+            newer = List.of();
+        } else if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            olderLimit = 0;
+            newerLimit = pageSize;
+            older = List.of();
+            newer = messageRepository.findMessagesAfterCursor(chatId, cursor.createdDate(), cursor.id(), PageRequest.of(0, newerLimit + 1));
+        } else if (around != null) {
+            // Half of the page at or before the timestamp, the other half after it.
+            newerLimit = pageSize / 2;
+            olderLimit = pageSize - newerLimit;
+            older = messageRepository.findMessagesBeforeCursor(chatId, around, Long.MAX_VALUE, PageRequest.of(0, olderLimit + 1));
+            newer = newerLimit == 0
+                    ? List.of()
+                    : messageRepository.findMessagesAfterCursor(chatId, around, Long.MAX_VALUE, PageRequest.of(0, newerLimit + 1));
+        } else {
+            olderLimit = pageSize;
+            newerLimit = 0;
+            older = messageRepository.findLatestMessagesByChatId(chatId, PageRequest.of(0, olderLimit + 1));
+            newer = List.of();
+        }
+
+        // A "before" page always has the cursor message after it, an "after" page always has one before it.
+        final boolean hasOlder = older.size() > olderLimit || after != null;
+        final boolean hasNewer = newer.size() > newerLimit || before != null;
+
+        // Drop the look-ahead rows and assemble the page in chronological order.
+        List<Message> page = new ArrayList<>(older.subList(0, Math.min(older.size(), olderLimit)).reversed());
+        page.addAll(newer.subList(0, Math.min(newer.size(), newerLimit)));
+
+        return MessagePageResponse.builder()
+                .messages(page.stream().map(mapper::toMessageResponse).toList())
+                .olderCursor(page.isEmpty() ? null : MessageCursor.of(page.getFirst()).encode())
+                .newerCursor(page.isEmpty() ? null : MessageCursor.of(page.getLast()).encode())
+                .hasOlder(hasOlder)
+                .hasNewer(hasNewer)
+                .build();
+    }
+
+    /**
+     * Searches the content of the messages of the authenticated user, optionally within one chat.
+     * Matches come from the full-text index of the messages, ranked by relevance and then by date.
+     *
+     * @param query          The search terms, in web search syntax ("quoted phrases", -excluded, or).
+     * @param chatId         The ID of the chat to search in, or null to search in all the chats of the user.
+     * @param page           The index of the page, starting at 0.
+     * @param size           The number of results of the page (bounded by the server).
+     * @param authentication The current authenticated user's details.
+     * @return One page of matching messages.
+     */
+    @Transactional(readOnly = true)
+    public MessageSearchResponse searchMessages(String query, String chatId, Integer page, Integer size, Authentication authentication) {
+        final int pageSize = size == null
+                ? MessageConstants.DEFAULT_SEARCH_PAGE_SIZE
+                : Math.clamp(size, 1, MessageConstants.MAX_PAGE_SIZE);
+        final int pageIndex = page == null ? 0 : Math.max(page, 0);
+
+        if (query == null || query.isBlank()) {
+            return MessageSearchResponse.builder().messages(List.of()).page(pageIndex).size(pageSize).build();
+        }
+
+        // Read one more result to know whether a next page exists, instead of counting every match.
+        final String userId = authentication.getName();
+        final long offset = (long) pageIndex * pageSize;
+        final List<Message> results = chatId == null
+                ? messageRepository.searchMessages(query, userId, pageSize + 1, offset)
+                : messageRepository.searchMessagesInChat(query, chatId, userId, pageSize + 1, offset);
+        final List<Message> pageResults = results.subList(0, Math.min(results.size(), pageSize));
+
+        // Load the chats of the results at once, the mapper reads the read watermarks of their participants.
+        chatRepository.findChatsWithParticipants(pageResults.stream()
+                .map(message -> message.getChat().getId())
+                .collect(toSet()));
+
+        return MessageSearchResponse.builder()
+                .messages(pageResults.stream().map(mapper::toMessageResponse).toList())
+                .page(pageIndex)
+                .size(pageSize)
+                .hasMore(results.size() > pageSize)
+                .build();
     }
 
     /**
@@ -90,27 +348,43 @@ public class MessageService {
      * @throws EntityNotFoundException if the chat with the given ID does not exist.
      */
     @Transactional // Ensures this operation is performed within a database transaction.
+    @Timed(value = "messages.mark-seen", description = "Time spent marking the messages of a chat as seen")
     public void setMessagesToSeen(String chatId, Authentication authentication) {
-        // Find the chat by its ID or throw an exception if not found.
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new EntityNotFoundException("Chat with id " + chatId + " not found"));
+        // Find the participants of the chat or throw an exception if it does not exist.
+        ChatDescriptor chat = chatDescriptorCache.get(chatId);
 
         // Determine the recipient ID based on the authenticated user.
-        final String recipientId = getRecipientId(chat, authentication);
+        final String recipientId = chat.getOtherParticipantId(authentication.getName());
 
-        // Update the state of messages in the chat to be SEEN.
-        messageRepository.setMessagesToSeenByChatId(chatId, MessageState.SEEN);
+        // Move the read watermark of the user instead of updating the state of every message.
+        final int moved = chatRepository.markChatAsRead(chatId, authentication.getName());
+        if (moved == 0) {
+            return; // Nothing was unread, the sender has already been notified.
+        }
+
+        // The chat row stays locked by the update, so this is the message the watermark was moved to.
+        final Long lastMessageId = chatRepository.findLastMessageId(chatId);
 
         // Create a notification for the sender about the messages being seen.
         Notification notification = Notification.builder()
-                .chatId(chat.getId())
+                .chatId(chat.id())
                 .type(NotificationType.SEEN)
+                .messageId(lastMessageId) // Messages up to this ID are seen.
                 .recipientId(recipientId)
-                .senderId(getSenderId(chat, authentication))
+                .senderId(getSenderId(chat, authentication.getName()))
                 .build();
 
-        // Send the notification to the sender.
-        notificationService.sendNotification(recipientId, notification);
+        // Notify the sender once the watermark is committed.
+        changeFeedService.recordSeen(chat, authentication.getName(), lastMessageId);
+        notificationService.enqueueNotification(notification);
+
+        // Mark the cached messages as seen once the watermark is committed.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                tailCache.markSeen(chatId, authentication.getName(), lastMessageId);
+            }
+        });
     }
 
     /**
@@ -121,71 +395,231 @@ public class MessageService {
      * @param authentication The current authenticated user's details.
      * @throws EntityNotFoundException if the chat with the given ID does not exist.
      */
+    @Timed(value = "messages.upload-media", description = "Time spent storing a media message")
     public void uploadMediaMessage(String chatId, MultipartFile file, Authentication authentication) {
-        // Find the chat by its ID or throw an exception if not found.
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new EntityNotFoundException("Chat with id " + chatId + " not found"));
+        // Find the participants of the chat or throw an exception if it does not exist.
+        ChatDescriptor chat = chatDescriptorCache.get(chatId);
 
         // Determine the sender and recipient IDs based on the authenticated user.
-        final String senderId = getSenderId(chat, authentication);
-        final String recipientId = getRecipientId(chat, authentication);
+        final String senderId = getSenderId(chat, authentication.getName());
+        final String recipientId = chat.getOtherParticipantId(authentication.getName());
 
-        // Save the uploaded file and get its file path.
+        // Save the uploaded file before the transaction, so that no connection is held while it is received.
+        // Its content stays recorded if the message is not saved, unreferenced until it is purged.
         final String filePath = fileService.saveFile(file, senderId);
 
+        // The message, the reference to its content and the chat summary are saved together.
+        transactionTemplate.executeWithoutResult(status -> saveMediaMessage(chat, senderId, recipientId, filePath, file));
+    }
+
+    /**
+     * Saves the message of an uploaded media file, within the current transaction.
+     *
+     * @param chat        The participants of the chat.
+     * @param senderId    The ID of the participant who uploaded the file.
+     * @param recipientId The ID of the other participant.
+     * @param filePath    The path of the stored file, or null if it could not be saved.
+     * @param file        The uploaded file.
+     */
+    private void saveMediaMessage(ChatDescriptor chat, String senderId, String recipientId, String filePath, MultipartFile file) {
+        final String chatId = chat.id();
+
         // Create a new Message entity for the uploaded media.
         Message message = new Message();
-        message.setChat(chat);
+        message.setChat(chatRepository.getReferenceById(chat.id())); // Only the foreign key is written, the chat is not read.
         message.setSenderId(senderId);
         message.setRecipientId(recipientId);
         message.setType(MessageType.IMAGE); // Message type is set to IMAGE for media files.
         message.setState(MessageState.SENT); // Initial state of the message is SENT.
         message.setMediaFilePath(filePath); // Path to the uploaded media file.
+        message.setMediaContentType(file.getContentType()); // MIME type reported by the client.
+        message.setMediaSize(file.getSize()); // Size of the uploaded media file.
 
-        // Save the media message to the database.
+        // Save the media message to the database, as a reference to its content, once the chat is locked.
+        chatRepository.lockChats(List.of(chat.id()));
         messageRepository.save(message);
+        fileService.retain(filePath);
+        updateChatSummary(message, 1);
+        addToTailsAfterCommit(List.of(message));
 
         // Create a notification for the recipient about the new media message.
         Notification notification = Notification.builder()
-                .chatId(chat.getId())
+                .chatId(chat.id())
                 .type(NotificationType.IMAGE)
                 .messageType(MessageType.IMAGE)
                 .recipientId(recipientId)
                 .senderId(senderId)
-                .media(FileUtils.readFileFromLocation(filePath))
+                .mediaUrl(mapper.toMediaUrl(message)) // Only the URL is pushed, the media is streamed on demand.
+                .previewUrl(mapper.toPreviewUrl(message)) // Lets the recipient show a small preview first.
                 .build();
 
-        // Send the notification to the recipient.
-        notificationService.sendNotification(recipientId, notification);
+        // Notify the recipient once the message is committed.
+        changeFeedService.recordMessages(List.of(message));
+        notificationService.enqueueNotification(notification);
+
+        // Generate the preview and display sizes once the message is committed, then inline its placeholder.
+        final Long messageId = message.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mediaDerivativeService.generateDerivatives(filePath, file.getContentType())
+                        .thenAccept(placeholder -> {
+                            if (placeholder != null) {
+                                messageRepository.setMediaPlaceholder(messageId, placeholder);
+                                tailCache.setMediaPlaceholder(chatId, messageId, placeholder);
+                            }
+                        })
+                        .exceptionally(e -> {
+                            log.error("Placeholder was not stored for message {}", messageId, e);
+                            return null;
+                        });
+            }
+        });
     }
 
     /**
-     * Determines the sender ID for a chat based on the authenticated user.
+     * Retrieves a media message so that its media file can be streamed to the authenticated user.
      *
-     * @param chat The chat entity.
+     * @param messageId The ID of the message whose media is requested.
      * @param authentication The current authenticated user's details.
-     * @return The sender ID.
+     * @return The Message entity holding the media file path, size and MIME type.
+     * @throws EntityNotFoundException if the message does not exist or has no media.
+     * @throws AccessDeniedException if the authenticated user is not a participant of the message.
      */
-    private String getSenderId(Chat chat, Authentication authentication) {
-        // Return the sender's ID if it matches the authenticated user; otherwise, return the recipient's ID.
-        if (chat.getSender().getId().equals(authentication.getName())) {
-            return chat.getSender().getId();
+    @Transactional(readOnly = true)
+    public Message findMediaMessage(Long messageId, Authentication authentication) {
+        // Find the message by its ID, it must carry a media file.
+        Message message = messageRepository.findById(messageId)
+                .filter(m -> m.getMediaFilePath() != null)
+                .orElseThrow(() -> new EntityNotFoundException("Media for message with id " + messageId + " not found"));
+
+        // Only the sender and the recipient of the message can download its media.
+        final String userId = authentication.getName();
+        if (!userId.equals(message.getSenderId()) && !userId.equals(message.getRecipientId())) {
+            throw new AccessDeniedException("User " + userId + " cannot access the media of message " + messageId);
         }
-        return chat.getRecipient().getId();
+        return message;
     }
 
     /**
-     * Determines the recipient ID for a chat based on the authenticated user.
+     * Records saved messages in the summary of their chat, so the inbox does not need to read the messages.
      *
-     * @param chat The chat entity.
-     * @param authentication The current authenticated user's details.
-     * @return The recipient ID.
+     * @param lastMessage The latest of the saved messages.
+     * @param count The number of saved messages, all addressed to the recipient of the latest one.
+     */
+    private void updateChatSummary(Message lastMessage, long count) {
+        final String content = lastMessage.getContent();
+        final String preview = content != null && content.length() > ChatConstants.LAST_MESSAGE_PREVIEW_LENGTH
+                ? content.substring(0, ChatConstants.LAST_MESSAGE_PREVIEW_LENGTH)
+                : content;
+        chatRepository.recordLastMessage(
+                lastMessage.getChat().getId(),
+                lastMessage.getId(),
+                preview,
+                lastMessage.getType(),
+                lastMessage.getCreatedDate(),
+                lastMessage.getRecipientId(),
+                count
+        );
+    }
+
+    /**
+     * Reads the tail of a chat from the database, on a miss of the tail cache.
+     *
+     * @param chatId The ID of the chat.
+     * @return The newest messages of the chat with the read watermarks of its participants.
+     */
+    private MessageTail loadTail(String chatId) {
+        final int capacity = tailCache.getMessagesPerChat();
+        final List<Message> latest = messageRepository.findLatestMessagesByChatId(chatId, PageRequest.of(0, capacity + 1));
+
+        // The states of later messages are derived from the watermarks, as the mapper does.
+        Map<String, Long> lastReadMessageIds = new HashMap<>();
+        if (!latest.isEmpty()) {
+            Chat chat = latest.getFirst().getChat();
+            if (chat.getSenderLastReadMessageId() != null) {
+                lastReadMessageIds.put(chat.getSender().getId(), chat.getSenderLastReadMessageId());
+            }
+            if (chat.getRecipientLastReadMessageId() != null) {
+                lastReadMessageIds.put(chat.getRecipient().getId(), chat.getRecipientLastReadMessageId());
+            }
+        }
+
+        return MessageTail.of(
+                latest.subList(0, Math.min(latest.size(), capacity)).reversed().stream().map(mapper::toMessageResponse).toList(),
+                latest.size() <= capacity,
+                lastReadMessageIds);
+    }
+
+    /**
+     * Adds saved messages to the cached tails of their chats once they are committed.
+     * Their state is the one they were saved with, so the chat is not read to derive it.
+     *
+     * @param messages The saved messages.
+     */
+    private void addToTailsAfterCommit(List<Message> messages) {
+        final Map<String, List<MessageResponse>> byChat = messages.stream()
+                .collect(groupingBy(m -> m.getChat().getId(), mapping(m -> mapper.toMessageResponse(m, m.getState()), toList())));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                byChat.forEach(tailCache::addMessages);
+            }
+        });
+    }
+
+    /**
+     * Builds the notification telling a recipient about a new message.
+     *
+     * @param chat The descriptor of the chat of the message.
+     * @param message The saved message.
+     * @return The MESSAGE notification.
+     */
+    private Notification toMessageNotification(ChatDescriptor chat, Message message) {
+        return Notification.builder()
+                .chatId(chat.id())
+                .messageId(message.getId())
+                .messageType(message.getType())
+                .content(message.getContent())
+                .senderId(message.getSenderId())
+                .recipientId(message.getRecipientId())
+                .type(NotificationType.MESSAGE)
+                .chatName(chat.getTargetChatName(message.getSenderId()))
+                .createdAt(message.getCreatedDate())
+                .build();
+    }
+
+    /**
+     * Builds the notification acknowledging to its sender that a message was saved.
+     *
+     * @param request The message request, carrying the sender's own message ID.
+     * @param message The saved message.
+     * @return The ACK notification.
+     */
+    private Notification toAckNotification(MessageRequest request, Message message) {
+        return Notification.builder()
+                .chatId(message.getChat().getId())
+                .messageId(message.getId())
+                .clientMessageId(request.getClientMessageId())
+                .senderId(message.getSenderId())
+                .recipientId(message.getSenderId())
+                .type(NotificationType.ACK)
+                .createdAt(message.getCreatedDate())
+                .build();
+    }
+
+    /**
+     * Determines the sender ID for a chat based on the given user.
+     *
+     * @param chat The descriptor of the chat.
+     * @param userId The ID of the current user.
+     * @return The sender ID.
      */
-    private String getRecipientId(Chat chat, Authentication authentication) {
-        // Return the recipient's ID if the sender matches the authenticated user; otherwise, return the sender's ID.
-        if (chat.getSender().getId().equals(authentication.getName())) {
-            return chat.getRecipient().getId();
+    private String getSenderId(ChatDescriptor chat, String userId) {
+        // Return the sender's ID if it matches the user; otherwise, return the recipient's ID.
+        if (chat.senderId().equals(userId)) {
+            return chat.senderId();
         }
-        return chat.getSender().getId();
+        return chat.recipientId();
     }
 }
@@ -0,0 +1,158 @@
+package com.mihai.whatsappclone.message;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The newest messages of a chat, as kept in memory by the {@link MessageTailCache}.
+ * A tail is never modified: every change produces a new tail, so responses being serialized are never touched.
+ *
+ * @param messages           The newest messages of the chat in chronological order, at most the capacity of the cache.
+ * @param complete           Whether the tail holds every message of the chat, so nothing older exists.
+ * @param lastReadMessageIds The read watermark of each participant known by the tail, by user ID.
+ */
+public record MessageTail(List<MessageResponse> messages,
+                          boolean complete,
+                          Map<String, Long> lastReadMessageIds) {
+
+    /**
+     * Estimated heap size of a message response without its variable-length fields, in bytes.
+     */
+    private static final int MESSAGE_OVERHEAD = 256;
+
+    /**
+     * Order of the messages in the history of a chat.
+     */
+    private static final Comparator<MessageResponse> HISTORY_ORDER =
+            Comparator.comparing(MessageResponse::getCreatedAt).thenComparing(MessageResponse::getId);
+
+    /**
+     * Creates a tail from the newest messages read from the database.
+     *
+     * @param messages           The messages in chronological order.
+     * @param complete           Whether these are all the messages of the chat.
+     * @param lastReadMessageIds The read watermarks of the participants, by user ID.
+     * @return The tail.
+     */
+    public static MessageTail of(List<MessageResponse> messages, boolean complete, Map<String, Long> lastReadMessageIds) {
+        return new MessageTail(List.copyOf(messages), complete, Map.copyOf(lastReadMessageIds));
+    }
+
+    /**
+     * Returns the newest messages of the tail.
+     *
+     * @param size The maximum number of messages.
+     * @return The newest messages in chronological order.
+     */
+    public List<MessageResponse> latest(int size) {
+        return messages.subList(Math.max(0, messages.size() - size), messages.size());
+    }
+
+    /**
+     * Indicates whether messages older than the newest ones exist.
+     *
+     * @param size The number of newest messages returned by {@link #latest(int)}.
+     * @return true if the chat has older messages, in the tail or in the database only.
+     */
+    public boolean hasOlder(int size) {
+        return messages.size() > size || !complete;
+    }
+
+    /**
+     * Adds newly saved messages, marked as seen if the read watermark of their recipient already covers them.
+     * Messages already in the tail are ignored and the oldest ones are dropped beyond the capacity.
+     *
+     * @param added    The saved messages.
+     * @param capacity The maximum number of messages of the tail.
+     * @return The new tail.
+     */
+    public MessageTail withMessages(List<MessageResponse> added, int capacity) {
+        List<MessageResponse> merged = new ArrayList<>(messages);
+        for (MessageResponse message : added) {
+            if (merged.stream().noneMatch(m -> m.getId().equals(message.getId()))) {
+                merged.add(message.toBuilder()
+                        .createdAt(toStoredPrecision(message.getCreatedAt()))
+                        .state(toState(message, lastReadMessageIds))
+                        .build());
+            }
+        }
+        merged.sort(HISTORY_ORDER);
+
+        final int dropped = Math.max(0, merged.size() - capacity);
+        return new MessageTail(List.copyOf(merged.subList(dropped, merged.size())), complete && dropped == 0, lastReadMessageIds);
+    }
+
+    /**
+     * Moves the read watermark of a participant and marks the messages it now covers as seen.
+     *
+     * @param readerId          The ID of the participant who read the chat.
+     * @param lastReadMessageId The new read watermark.
+     * @return The new tail.
+     */
+    public MessageTail withSeen(String readerId, Long lastReadMessageId) {
+        Map<String, Long> watermarks = new HashMap<>(lastReadMessageIds);
+        watermarks.merge(readerId, lastReadMessageId, Math::max);
+
+        return new MessageTail(messages.stream()
+                .map(m -> {
+                    final MessageState state = toState(m, watermarks);
+                    return state == m.getState() ? m : m.toBuilder().state(state).build();
+                })
+                .toList(), complete, Map.copyOf(watermarks));
+    }
+
+    /**
+     * Stores the placeholder of a media message once it has been generated.
+     *
+     * @param messageId   The ID of the message.
+     * @param placeholder The placeholder of its media.
+     * @return The new tail.
+     */
+    public MessageTail withMediaPlaceholder(Long messageId, byte[] placeholder) {
+        return new MessageTail(messages.stream()
+                .map(m -> m.getId().equals(messageId) ? m.toBuilder().mediaPlaceholder(placeholder).build() : m)
+                .toList(), complete, lastReadMessageIds);
+    }
+
+    /**
+     * Estimates the heap retained by the tail, used to bound the total size of the cache.
+     *
+     * @return The estimated size in bytes.
+     */
+    public int weight() {
+        long weight = 0;
+        for (MessageResponse message : messages) {
+            weight += MESSAGE_OVERHEAD + length(message.getContent()) * 2L + length(message.getMediaUrl()) * 2L
+                    + length(message.getPreviewUrl()) * 2L + length(message.getMediaContentType()) * 2L
+                    + (message.getMediaPlaceholder() == null ? 0 : message.getMediaPlaceholder().length);
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Rounds a timestamp to the microsecond precision of PostgreSQL, so that the dates of the messages added on write
+     * are the ones read back from the database, and the cursors built from them continue at the same position.
+     *
+     * @param date A creation date.
+     * @return The date as stored.
+     */
+    private static LocalDateTime toStoredPrecision(LocalDateTime date) {
+        return date == null ? null : date.plusNanos(500).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Derives the state of a message from the read watermark of its recipient, as the {@link MessageMapper} does.
+     */
+    private static MessageState toState(MessageResponse message, Map<String, Long> lastReadMessageIds) {
+        return MessageMapper.toState(message.getId(), message.getState(), lastReadMessageIds.get(message.getRecipientId()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
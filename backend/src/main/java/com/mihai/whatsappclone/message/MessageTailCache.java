@@ -0,0 +1,170 @@
+package com.mihai.whatsappclone.message;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * In-memory tails of the recently read chats: the newest messages of each chat, from which the first page of its
+ * history is served without a query.
+ * <p>
+ * A tail is read from the database the first time the newest page of a chat is requested, and then kept current by
+ * the committed writes of this node: new messages, moved read watermarks and generated media placeholders. The tail is
+ * read outside the cache, which only stores it if no write of its chat was applied meanwhile: a write committed while
+ * the tail is being read either prevents it from being stored, or is applied to it once stored. Tails expire a fixed
+ * time after being read, which bounds how long a write made by another node is missed. The tails are bounded by an
+ * estimate of their total heap size, the least recently used chats being evicted whole. Hits, misses and evictions are
+ * exposed as the "cache.*" meters tagged with cache="messages.tail".
+ */
+@Component
+public class MessageTailCache {
+
+    private static final String CACHE_NAME = "messages.tail";
+
+    private static final int WRITE_VERSION_STRIPES = 1024; // Write counters shared by the chats, a chat always maps to the same one.
+
+    private final Cache<String, MessageTail> tails;
+
+    /**
+     * Number of writes applied to the chats of each stripe, compared before and after reading a tail.
+     */
+    private final AtomicLongArray writeVersions = new AtomicLongArray(WRITE_VERSION_STRIPES);
+
+    /**
+     * The maximum number of messages kept for each chat.
+     */
+    @Getter
+    private final int messagesPerChat;
+
+    public MessageTailCache(MeterRegistry meterRegistry,
+                            @Value("${application.messages.tail-cache.messages-per-chat}") int messagesPerChat,
+                            @Value("${application.messages.tail-cache.memory-budget}") long memoryBudget,
+                            @Value("${application.messages.tail-cache.time-to-live}") long timeToLive) {
+        this.messagesPerChat = messagesPerChat;
+        this.tails = Caffeine.newBuilder()
+                .maximumWeight(memoryBudget)
+                .weigher((String chatId, MessageTail tail) -> tail.weight())
+                // Counted from the read of the tail, the writes applied to it do not extend its life.
+                .expireAfter(new TimeToLive(Duration.ofMillis(timeToLive)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tails, CACHE_NAME);
+    }
+
+    /**
+     * Returns the tail of a chat, reading it on a miss.
+     * The loader runs outside the cache, so a slow read does not block the other chats; concurrent misses of the
+     * same chat may read it more than once.
+     *
+     * @param chatId The ID of the chat.
+     * @param loader Reads the newest {@link #getMessagesPerChat()} messages of the chat from the database.
+     * @return The tail of the chat.
+     */
+    public MessageTail get(String chatId, Function<String, MessageTail> loader) {
+        final MessageTail cached = tails.getIfPresent(chatId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int stripe = stripe(chatId);
+        final long version = writeVersions.get(stripe);
+        final MessageTail loaded = loader.apply(chatId);
+
+        // Stored only if no write was applied to the chat while it was read, atomically with the writes of the chat.
+        final MessageTail stored = tails.asMap().compute(chatId, (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return writeVersions.get(stripe) == version ? loaded : null;
+        });
+        return stored != null ? stored : loaded;
+    }
+
+    /**
+     * Returns the tail of a chat if it is cached, without reading it.
+     *
+     * @param chatId The ID of the chat.
+     * @return The tail of the chat, or null.
+     */
+    public MessageTail getIfPresent(String chatId) {
+        return tails.getIfPresent(chatId);
+    }
+
+    /**
+     * Adds committed messages to the tail of their chat, if it is cached.
+     *
+     * @param chatId   The ID of the chat.
+     * @param messages The saved messages of the chat.
+     */
+    public void addMessages(String chatId, List<MessageResponse> messages) {
+        writeVersions.incrementAndGet(stripe(chatId));
+        tails.asMap().computeIfPresent(chatId, (id, tail) -> tail.withMessages(messages, messagesPerChat));
+    }
+
+    /**
+     * Applies a committed read watermark to the tail of its chat, if it is cached.
+     *
+     * @param chatId            The ID of the chat.
+     * @param readerId          The ID of the participant who read the chat.
+     * @param lastReadMessageId The new read watermark.
+     */
+    public void markSeen(String chatId, String readerId, Long lastReadMessageId) {
+        writeVersions.incrementAndGet(stripe(chatId));
+        tails.asMap().computeIfPresent(chatId, (id, tail) -> tail.withSeen(readerId, lastReadMessageId));
+    }
+
+    /**
+     * Adds the placeholder generated for a media message to the tail of its chat, if it is cached.
+     *
+     * @param chatId      The ID of the chat.
+     * @param messageId   The ID of the message.
+     * @param placeholder The placeholder of its media.
+     */
+    public void setMediaPlaceholder(String chatId, Long messageId, byte[] placeholder) {
+        writeVersions.incrementAndGet(stripe(chatId));
+        tails.asMap().computeIfPresent(chatId, (id, tail) -> tail.withMediaPlaceholder(messageId, placeholder));
+    }
+
+    /**
+     * Returns the stripe of the write counter of a chat.
+     *
+     * @param chatId The ID of the chat.
+     * @return The index of the counter in {@link #writeVersions}.
+     */
+    private static int stripe(String chatId) {
+        return Math.floorMod(chatId.hashCode(), WRITE_VERSION_STRIPES);
+    }
+
+    /**
+     * Expires a tail a fixed time after it was read, whatever the writes applied to it since.
+     *
+     * @param timeToLive The time a tail is kept after being read.
+     */
+    private record TimeToLive(Duration timeToLive) implements Expiry<String, MessageTail> {
+
+        @Override
+        public long expireAfterCreate(String chatId, MessageTail tail, long currentTime) {
+            return timeToLive.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String chatId, MessageTail tail, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String chatId, MessageTail tail, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
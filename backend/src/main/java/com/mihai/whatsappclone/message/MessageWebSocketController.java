@@ -0,0 +1,43 @@
+package com.mihai.whatsappclone.message;
+
+import com.mihai.whatsappclone.notification.NotificationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+/**
+ * STOMP controller for handling messages sent over WebSocket.
+ * Messages sent to "/app/chat.send" are queued and persisted in batches; the sender receives an ACK
+ * notification carrying the server ID and timestamp of the message once it is saved.
+ */
+@Controller
+@RequiredArgsConstructor // Automatically generates a constructor for required fields (final fields).
+public class MessageWebSocketController {
+
+    private final MessageIngestService ingestService;
+    private final MessageService messageService;
+    private final NotificationService notificationService;
+
+    /**
+     * Receives a message from an authenticated STOMP session.
+     *
+     * @param messageRequest The message details; the sender is always the authenticated user.
+     * @param principal      The user of the STOMP session.
+     */
+    @MessageMapping("/chat.send")
+    public void sendMessage(@Payload MessageRequest messageRequest, Principal principal) {
+        if (principal == null) {
+            throw new AccessDeniedException("Messages can only be sent from an authenticated session");
+        }
+        messageRequest.setSenderId(principal.getName());
+
+        // Tell the sender right away when the node is saturated instead of blocking the inbound channel.
+        if (!ingestService.submit(messageRequest)) {
+            notificationService.sendNotification(principal.getName(), messageService.toRejectedNotification(messageRequest));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mihai.whatsappclone.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration of the application metrics, exposed in the Prometheus format on "/actuator/prometheus" of the
+ * management port.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    /**
+     * Records the methods annotated with {@link io.micrometer.core.annotation.Timed} as timers.
+     *
+     * @param meterRegistry The registry the timers are published to.
+     * @return the aspect applying the annotation.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Lets Hibernate report every SQL statement it prepares, so they can be counted per request.
+     *
+     * @return the customizer registering the {@link StatementCountingInspector}.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer statementCountingCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCountingInspector());
+    }
+
+    /**
+     * Counts the statements of the streamed response bodies, which run after the request thread was released.
+     *
+     * @param configurer The configuration of the asynchronous request processing.
+     */
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new StatementCountCallableInterceptor());
+    }
+}
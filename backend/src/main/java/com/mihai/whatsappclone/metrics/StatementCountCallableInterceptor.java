@@ -0,0 +1,27 @@
+package com.mihai.whatsappclone.metrics;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Counts the Hibernate statements of the asynchronous part of a request, such as the body of a
+ * {@link org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody}, which runs on a task
+ * executor thread after the {@link StatementCountFilter} has left the request thread.
+ * <p>
+ * The count is added to the request, and recorded by the filter on the dispatch completing the request.
+ */
+public class StatementCountCallableInterceptor implements CallableProcessingInterceptor {
+
+    @Override
+    public <T> void preProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task) {
+        StatementCountingInspector.start();
+    }
+
+    @Override
+    public <T> void postProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task, Object concurrentResult) {
+        StatementCountFilter.addStatements(request, StatementCountingInspector.stop());
+    }
+}
@@ -0,0 +1,88 @@
+package com.mihai.whatsappclone.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the number of Hibernate statements of every HTTP request, tagged like the "http.server.requests"
+ * timer, so an N+1 regression shows up as a growing count on its endpoint.
+ * <p>
+ * An asynchronous request, such as a streamed response, is recorded once, on the dispatch completing it, with
+ * the statements its body ran on another thread (see {@link StatementCountCallableInterceptor}).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // Wraps the other filters, which also run statements (user synchronization).
+@RequiredArgsConstructor
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final String METRIC_NAME = "http.server.requests.statements";
+
+    /**
+     * The request attribute holding the statements counted so far across the dispatches of a request.
+     */
+    private static final String STATEMENTS_ATTRIBUTE = StatementCountFilter.class.getName() + ".statements";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Adds statements run outside of the filter to the count of a request.
+     *
+     * @param request    The request the statements belong to.
+     * @param statements The number of statements.
+     */
+    static void addStatements(RequestAttributes request, int statements) {
+        if (request.getAttribute(STATEMENTS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof AtomicInteger count) {
+            count.addAndGet(statements);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false; // The async dispatch completes the request, once its body has run.
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        AtomicInteger count = (AtomicInteger) request.getAttribute(STATEMENTS_ATTRIBUTE);
+        if (count == null) {
+            count = new AtomicInteger();
+            request.setAttribute(STATEMENTS_ATTRIBUTE, count);
+        }
+
+        StatementCountingInspector.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            count.addAndGet(StatementCountingInspector.stop());
+
+            // An asynchronous request is recorded by the dispatch that completes it.
+            if (!isAsyncStarted(request)) {
+                // The URI template is only known once the request was mapped to a handler.
+                Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                DistributionSummary.builder(METRIC_NAME)
+                        .description("Hibernate statements prepared by an HTTP request")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri != null ? uri.toString() : "UNKNOWN")
+                        .register(meterRegistry)
+                        .record(count.get());
+            }
+        }
+    }
+}
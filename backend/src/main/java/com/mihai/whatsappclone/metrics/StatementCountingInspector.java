@@ -0,0 +1,45 @@
+package com.mihai.whatsappclone.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, without changing them.
+ * <p>
+ * Counting only happens between {@link #start()} and {@link #stop()}, which the {@link StatementCountFilter}
+ * calls around every HTTP request, and the {@link StatementCountCallableInterceptor} around its asynchronous body.
+ * Statements issued through the JdbcTemplate are not seen by Hibernate.
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+    /**
+     * The statement count of the request being processed by the thread, null outside of requests.
+     */
+    private static final ThreadLocal<int[]> STATEMENT_COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = STATEMENT_COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    /**
+     * Starts counting the statements of the current thread.
+     */
+    public static void start() {
+        STATEMENT_COUNT.set(new int[1]);
+    }
+
+    /**
+     * Stops counting the statements of the current thread.
+     *
+     * @return the number of statements prepared since {@link #start()}.
+     */
+    public static int stop() {
+        int[] count = STATEMENT_COUNT.get();
+        STATEMENT_COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+}
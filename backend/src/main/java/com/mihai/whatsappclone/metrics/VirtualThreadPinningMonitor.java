@@ -0,0 +1,101 @@
+package com.mihai.whatsappclone.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Watches, while the application runs on virtual threads, for virtual threads blocking while pinned to their
+ * carrier thread (e.g. inside a synchronized block or a native frame), which holds a carrier for the whole wait.
+ * <p>
+ * The "jdk.VirtualThreadPinned" JFR events longer than the configured threshold are streamed in-process:
+ * each one is recorded in the "jvm.threads.virtual.pinned" timer and logged with the top of its stack trace.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int LOGGED_FRAMES = 15; // Frames of the pinned stack written to the log.
+
+    private final RecordingStream recording = new RecordingStream();
+    private final Duration threshold;
+    private final Timer pinnedTimer;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${application.virtual-threads.pinning-threshold}") long thresholdMillis) {
+        this.threshold = Duration.ofMillis(thresholdMillis);
+        this.pinnedTimer = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Time virtual threads spent blocked while pinned to their carrier thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts streaming the pinning events in the background.
+     */
+    @PostConstruct
+    public void start() {
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        log.info("Watching virtual threads pinned for more than {} ms", threshold.toMillis());
+    }
+
+    /**
+     * Stops the event stream.
+     */
+    @PreDestroy
+    public void stop() {
+        recording.close();
+    }
+
+    /**
+     * Records a pinning event and logs where the virtual thread was blocked.
+     *
+     * @param event The "jdk.VirtualThreadPinned" event.
+     */
+    private void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+
+        RecordedThread thread = event.getThread();
+        log.warn("Virtual thread {} blocked for {} ms while pinned to its carrier\n{}",
+                thread == null ? "?" : thread.getJavaName(), event.getDuration().toMillis(), format(event.getStackTrace()));
+    }
+
+    /**
+     * Formats the top frames of a recorded stack trace the way exceptions are printed.
+     *
+     * @param stackTrace The recorded stack trace, null when it was not captured.
+     * @return The formatted frames.
+     */
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        return stackTrace.getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(VirtualThreadPinningMonitor::format)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String format(RecordedFrame frame) {
+        return "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + "(line " + frame.getLineNumber() + ")";
+    }
+}
@@ -0,0 +1,33 @@
+package com.mihai.whatsappclone.metrics;
+
+import com.mihai.whatsappclone.presence.PresenceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the connected STOMP sessions and users.
+ * <p>
+ * The executors of the client channels are already bound by Spring Boot, tagged with their bean name:
+ * "executor.queued{name=clientInboundChannelExecutor}" is the queue depth of the inbound channel, and
+ * "executor.active" against "executor.pool.max" its saturation.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketMetrics implements MeterBinder {
+
+    private final PresenceService presenceService;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("websocket.sessions", presenceService, PresenceService::getSessionCount)
+                .description("Connected STOMP sessions")
+                .register(registry);
+        Gauge.builder("websocket.users", presenceService, PresenceService::getOnlineUserCount)
+                .description("Users with at least one connected STOMP session")
+                .register(registry);
+    }
+}
@@ -3,6 +3,8 @@ package com.mihai.whatsappclone.notification;
 import com.mihai.whatsappclone.message.MessageType;
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 /**
  * Represents a notification in the application.
  * Notifications are used to inform users about new messages, message states, or other events.
@@ -21,5 +23,9 @@ public class Notification {
     private String chatName; // The name of the chat associated with the notification.
     private MessageType messageType; // The type of the message (e.g., TEXT, IMAGE) triggering the notification.
     private NotificationType type; // The type of notification (e.g., MESSAGE, SEEN, TYPING).
-    private byte[] media; // Optional media data included with the notification (e.g., images or files).
+    private String mediaUrl; // Optional URL from which the media of the message can be downloaded.
+    private String previewUrl; // Optional URL from which a small preview of an image message can be downloaded.
+    private Long messageId; // The ID assigned by the server to the message related to the notification.
+    private String clientMessageId; // The ID the sender gave to the message, echoed back in acknowledgements.
+    private LocalDateTime createdAt; // The creation date of the message related to the notification.
 }
@@ -0,0 +1,229 @@
+package com.mihai.whatsappclone.notification;
+
+import com.mihai.whatsappclone.websocket.NegotiatedPayload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the notifications of each user over a short window and sends them to the STOMP broker as one frame.
+ * <p>
+ * The first notification of a user opens a batch, which is sent when the window elapses or as soon as it holds the
+ * maximum number of notifications. A batch of a single notification is sent as that notification, larger batches as
+ * an array of notifications in their original order. A SEEN notification supersedes the earlier SEEN notifications of
+ * the same chat in the batch, which are dropped. With a window of 0, every notification is sent immediately.
+ * <p>
+ * A batch is detached from the map of open batches and sent in the same computation of the entry of its user: the
+ * notification filling a batch sends it before any later notification can be added, so a frame never holds more than
+ * the maximum, and the frames of a user leave in the order of their batches although the windows elapse on several
+ * threads. Sending to the broker only queues the frame, so the entry is not locked for long.
+ */
+@Component
+@Slf4j
+public class NotificationCoalescer {
+
+    private static final String DESTINATION = "/chat"; // The user destination the clients subscribe to.
+
+    private final SimpMessagingTemplate messagingTemplate; // Template for sending WebSocket messages.
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final Map<String, PendingBatch> batches = new ConcurrentHashMap<>(); // The open batch of each user, by user ID.
+    private final ScheduledExecutorService scheduler; // Sends the batches whose window elapsed.
+
+    private final Map<NotificationType, Timer> sendTimers = new EnumMap<>(NotificationType.class); // Send latency by type.
+    private final DistributionSummary batchSizes;
+    private final Counter supersededSeen;
+
+    public NotificationCoalescer(SimpMessagingTemplate messagingTemplate,
+                                 Environment environment,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${application.notifications.coalescing.window}") long windowMillis,
+                                 @Value("${application.notifications.coalescing.max-batch-size}") int maxBatchSize,
+                                 @Value("${application.notifications.coalescing.flush-threads}") int flushThreads) {
+        this.messagingTemplate = messagingTemplate;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newScheduledThreadPool(flushThreads, Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("notification-coalescer-", 0).factory()
+                : Thread.ofPlatform().name("notification-coalescer-", 0).daemon(true).factory());
+        for (NotificationType type : NotificationType.values()) {
+            sendTimers.put(type, Timer.builder("notifications.send")
+                    .description("Time from the sending of a notification to its hand-off to the STOMP broker, coalescing window included")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.batchSizes = DistributionSummary.builder("notifications.batch.size")
+                .description("Notifications sent in one STOMP frame")
+                .register(meterRegistry);
+        this.supersededSeen = Counter.builder("notifications.superseded")
+                .description("SEEN notifications dropped because a later one of the same chat was in the same frame")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a notification to the open batch of a user, opening one if needed.
+     *
+     * @param userId       The ID of the user to receive the notification.
+     * @param notification The notification payload to be sent.
+     * @return Completed once the frame holding the notification was handed to the broker, or with the failure
+     * of its sending.
+     */
+    public CompletableFuture<Void> add(String userId, Notification notification) {
+        PendingNotification pending = new PendingNotification(notification, Timer.start(), new CompletableFuture<>());
+        if (windowMillis <= 0) {
+            // Sent while the entry of the user is locked, so the frames of a user keep their order.
+            batches.compute(userId, (id, current) -> {
+                send(id, List.of(pending));
+                return current;
+            });
+            return pending.delivery();
+        }
+
+        // The batch is sent and detached as soon as it is full, before the entry is released.
+        batches.compute(userId, (id, current) -> {
+            if (current == null) {
+                current = new PendingBatch();
+                final PendingBatch opened = current;
+                scheduler.schedule(() -> flush(id, opened), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            current.notifications.add(pending);
+            if (current.notifications.size() >= maxBatchSize) {
+                send(id, current.notifications);
+                return null; // Later notifications open a new batch.
+            }
+            return current;
+        });
+        return pending.delivery();
+    }
+
+    /**
+     * Sends the open batches before the application stops.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        batches.forEach(this::flush);
+    }
+
+    /**
+     * Sends a batch once its window elapsed, unless it was already sent once full.
+     *
+     * @param userId The ID of the user.
+     * @param batch  The batch to send.
+     */
+    private void flush(String userId, PendingBatch batch) {
+        batches.computeIfPresent(userId, (id, current) -> {
+            if (current != batch) {
+                return current; // The batch was sent once full, the current one has its own window.
+            }
+            send(id, batch.notifications);
+            return null;
+        });
+    }
+
+    /**
+     * Sends the notifications of a batch as a single frame, without the superseded SEEN notifications,
+     * and completes their deliveries.
+     *
+     * @param userId  The ID of the user.
+     * @param pending The notifications of the batch, in order.
+     */
+    private void send(String userId, List<PendingNotification> pending) {
+        List<PendingNotification> retained = withoutSupersededSeen(pending);
+
+        // Only the identifiers are logged, the payload can carry message contents and media.
+        log.debug("Sending {} notifications to {}", retained.size(), userId);
+
+        final Object payload = retained.size() == 1
+                ? retained.get(0).notification()
+                : retained.stream().map(PendingNotification::notification).toList();
+        try {
+            messagingTemplate.convertAndSendToUser(
+                    userId, // The destination user ID.
+                    DESTINATION, // The WebSocket destination (subscribed topic).
+                    new NegotiatedPayload(payload) // The notification payload, written in the codec of each session.
+            );
+        } catch (RuntimeException e) {
+            log.error("Failed to send the notifications of {}", userId, e);
+            pending.forEach(notification -> notification.delivery().completeExceptionally(e));
+            return;
+        }
+
+        batchSizes.record(retained.size());
+        for (PendingNotification notification : pending) {
+            if (notification.notification().getType() != null) {
+                notification.sample().stop(sendTimers.get(notification.notification().getType()));
+            }
+            notification.delivery().complete(null); // Superseded SEEN notifications are delivered by the later one.
+        }
+    }
+
+    /**
+     * Drops the SEEN notifications followed by a later SEEN notification of the same chat.
+     *
+     * @param pending The notifications of a batch, in order.
+     * @return The notifications to send, in order.
+     */
+    private List<PendingNotification> withoutSupersededSeen(List<PendingNotification> pending) {
+        if (pending.size() == 1) {
+            return pending;
+        }
+
+        // Position of the last SEEN notification of each chat.
+        Map<String, Integer> lastSeen = new HashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            Notification notification = pending.get(i).notification();
+            if (notification.getType() == NotificationType.SEEN) {
+                lastSeen.put(notification.getChatId(), i);
+            }
+        }
+
+        List<PendingNotification> retained = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            Notification notification = pending.get(i).notification();
+            if (notification.getType() == NotificationType.SEEN && lastSeen.get(notification.getChatId()) != i) {
+                supersededSeen.increment();
+                continue;
+            }
+            retained.add(pending.get(i));
+        }
+        return retained;
+    }
+
+    /**
+     * The notifications gathered for a user during the current window.
+     */
+    private static final class PendingBatch {
+        private final List<PendingNotification> notifications = new ArrayList<>();
+    }
+
+    /**
+     * A notification waiting in a batch, with the sample timing its delivery.
+     *
+     * @param notification The notification payload.
+     * @param sample       Started when the notification was added.
+     * @param delivery     Completed once the notification was handed to the broker.
+     */
+    private record PendingNotification(Notification notification, Timer.Sample sample, CompletableFuture<Void> delivery) {
+    }
+}
@@ -0,0 +1,303 @@
+package com.mihai.whatsappclone.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers the notifications of the transactional outbox to the message broker.
+ * Each batch goes through three steps, so that no transaction stays open while the notifications are sent:
+ * a short transaction claims the notifications by setting their lease, they are sent without any transaction,
+ * and a second short transaction deletes the delivered ones and reschedules the failed ones.
+ * <p>
+ * Several nodes can drain the outbox together. A node claims the notifications of a recipient only while it holds
+ * the transaction-scoped advisory lock of that recipient, and only those with no earlier notification of the same
+ * recipient leased or waiting for a retry: the notifications of each recipient are sent in order, and a failed
+ * notification holds back the later ones of its recipient until it is retried.
+ * A notification is deleted only once the frame holding it was handed to the broker, and a notification whose
+ * lease expired, for instance because its node stopped, is claimed again; delivery is at least once.
+ * Dispatching runs on a single thread, woken up after each commit that wrote notifications and on a fixed delay.
+ */
+@Component
+@Slf4j
+public class NotificationOutboxDispatcher {
+
+    /**
+     * Finds the recipients of the deliverable notifications, oldest first: due, not leased, and with no earlier
+     * notification of the same recipient leased or waiting for a retry.
+     */
+    private static final String FIND_RECIPIENTS = """
+            SELECT o.recipient_id FROM notification_outbox o
+            WHERE o.next_attempt_at <= now()
+              AND (o.locked_until IS NULL OR o.locked_until <= now())
+              AND NOT EXISTS (SELECT 1 FROM notification_outbox e
+                              WHERE e.recipient_id = o.recipient_id AND e.id < o.id
+                                AND (e.next_attempt_at > now() OR e.locked_until > now()))
+            GROUP BY o.recipient_id
+            ORDER BY min(o.id)
+            LIMIT ?
+            """;
+
+    /**
+     * Locks a recipient until the end of the claiming transaction, unless another node is claiming its notifications.
+     */
+    private static final String LOCK_RECIPIENT = "SELECT pg_try_advisory_xact_lock(hashtext('notification_outbox'), hashtext(?))";
+
+    /**
+     * Leases the deliverable notifications of the locked recipients, in outbox order.
+     * Checked again once the recipients are locked, since another node may have leased some in the meantime.
+     */
+    private static final String CLAIM_NOTIFICATIONS = """
+            UPDATE notification_outbox SET locked_until = now() + ? * interval '1 millisecond'
+            WHERE id IN (SELECT o.id FROM notification_outbox o
+                         WHERE o.recipient_id = ANY (?)
+                           AND o.next_attempt_at <= now()
+                           AND (o.locked_until IS NULL OR o.locked_until <= now())
+                           AND NOT EXISTS (SELECT 1 FROM notification_outbox e
+                                           WHERE e.recipient_id = o.recipient_id AND e.id < o.id
+                                             AND (e.next_attempt_at > now() OR e.locked_until > now()))
+                         ORDER BY o.id
+                         LIMIT ?)
+            RETURNING id, recipient_id, payload, attempts
+            """;
+
+    private static final String DELETE_NOTIFICATION = "DELETE FROM notification_outbox WHERE id = ?";
+
+    // Dates are computed by the database, the same clock decides when notifications are due.
+    private static final String RESCHEDULE_NOTIFICATION =
+            "UPDATE notification_outbox SET attempts = ?, next_attempt_at = now() + ? * interval '1 millisecond', locked_until = NULL WHERE id = ?";
+
+    private static final String RELEASE_NOTIFICATION = "UPDATE notification_outbox SET locked_until = NULL WHERE id = ?";
+
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1); // Upper bound of the retry backoff.
+
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(10); // Longest wait for the notifications of a batch to be sent.
+
+    private final NotificationService notificationService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration lease;
+
+    private final ExecutorService executor; // Single dispatching thread of this node, virtual when virtual threads are enabled.
+    private final AtomicBoolean dispatchQueued = new AtomicBoolean(); // Coalesces the wake-ups into one drain.
+
+    public NotificationOutboxDispatcher(NotificationService notificationService,
+                                        JdbcTemplate jdbcTemplate,
+                                        TransactionTemplate transactionTemplate,
+                                        ObjectMapper objectMapper,
+                                        Environment environment,
+                                        @Value("${application.notifications.outbox.batch-size}") int batchSize,
+                                        @Value("${application.notifications.outbox.max-attempts}") int maxAttempts,
+                                        @Value("${application.notifications.outbox.retry-delay}") long retryDelayMillis,
+                                        @Value("${application.notifications.outbox.lease}") long leaseMillis) {
+        this.notificationService = notificationService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Duration.ofMillis(retryDelayMillis);
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.executor = Executors.newSingleThreadExecutor(Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("notification-outbox").factory()
+                : Thread.ofPlatform().name("notification-outbox").daemon(true).factory());
+    }
+
+    /**
+     * Dispatches the notifications written by a transaction as soon as it is committed.
+     *
+     * @param event The event published when the notifications were written.
+     */
+    @TransactionalEventListener
+    public void onNotificationsEnqueued(NotificationsEnqueuedEvent event) {
+        wake();
+    }
+
+    /**
+     * Picks up the notifications written by other nodes, and the ones due for a retry.
+     */
+    @Scheduled(fixedDelayString = "${application.notifications.outbox.poll-interval}")
+    public void poll() {
+        wake();
+    }
+
+    /**
+     * Queues a drain of the outbox, unless one is already queued.
+     */
+    public void wake() {
+        if (dispatchQueued.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops the dispatching thread once the queued drain is done, undelivered notifications stay in the outbox.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Dispatches batches until the outbox has no deliverable notification left.
+     */
+    private void drain() {
+        // Cleared first, so that a wake-up arriving during the drain queues another one.
+        dispatchQueued.set(false);
+        try {
+            int dispatched;
+            do {
+                dispatched = dispatchBatch();
+            } while (dispatched == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Failed to dispatch the notification outbox", e);
+        }
+    }
+
+    /**
+     * Claims one batch, delivers it outside any transaction and acknowledges its notifications.
+     *
+     * @return The number of claimed notifications.
+     */
+    private int dispatchBatch() {
+        final List<OutboxNotification> batch = transactionTemplate.execute(status -> claimBatch());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // The notifications are handed to the coalescer first, so that those of a recipient share its frames.
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>(batch.size());
+        for (OutboxNotification notification : batch) {
+            try {
+                deliveries.add(notificationService.sendNotification(
+                        notification.getRecipientId(),
+                        objectMapper.readValue(notification.getPayload(), Notification.class)));
+            } catch (JsonProcessingException e) {
+                log.error("Dropping unreadable notification {}", notification.getId(), e);
+                deliveries.add(CompletableFuture.completedFuture(null));
+            }
+        }
+
+        // Waits for the deliveries, the notifications stay leased until they are acknowledged.
+        final long deadline = System.nanoTime() + DELIVERY_TIMEOUT.toNanos();
+        List<Object[]> delivered = new ArrayList<>(batch.size());
+        List<Object[]> released = new ArrayList<>();
+        Map<OutboxNotification, Throwable> failed = new LinkedHashMap<>();
+        Set<String> blockedRecipients = new HashSet<>(); // Recipients whose earlier notification failed in this batch.
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxNotification notification = batch.get(i);
+            if (blockedRecipients.contains(notification.getRecipientId())) {
+                released.add(new Object[]{notification.getId()}); // Sent again after the failed notification.
+                continue;
+            }
+            try {
+                deliveries.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(new Object[]{notification.getId()});
+            } catch (ExecutionException | TimeoutException e) {
+                blockedRecipients.add(notification.getRecipientId());
+                failed.put(notification, e instanceof ExecutionException ? e.getCause() : e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return batch.size(); // Stopping, the unacknowledged notifications are claimed again once their lease expires.
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_NOTIFICATION, delivered);
+            }
+            failed.forEach(this::reschedule);
+            if (!released.isEmpty()) {
+                jdbcTemplate.batchUpdate(RELEASE_NOTIFICATION, released);
+            }
+        });
+        return batch.size();
+    }
+
+    /**
+     * Locks the recipients of the deliverable notifications one by one, skipping those claimed by another node,
+     * and leases their notifications, in the current transaction.
+     *
+     * @return The leased notifications, in outbox order.
+     */
+    private List<OutboxNotification> claimBatch() {
+        final List<String> recipients = jdbcTemplate.queryForList(FIND_RECIPIENTS, String.class, batchSize).stream()
+                .filter(recipientId -> Boolean.TRUE.equals(jdbcTemplate.queryForObject(LOCK_RECIPIENT, Boolean.class, recipientId)))
+                .toList();
+        if (recipients.isEmpty()) {
+            return List.of();
+        }
+
+        List<OutboxNotification> batch = new ArrayList<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(CLAIM_NOTIFICATIONS);
+            statement.setLong(1, lease.toMillis());
+            statement.setArray(2, connection.createArrayOf("varchar", recipients.toArray()));
+            statement.setInt(3, batchSize);
+            return statement;
+        }, (rs, rowNum) -> {
+            OutboxNotification notification = new OutboxNotification();
+            notification.setId(rs.getLong("id"));
+            notification.setRecipientId(rs.getString("recipient_id"));
+            notification.setPayload(rs.getString("payload"));
+            notification.setAttempts(rs.getInt("attempts"));
+            return notification;
+        }));
+        batch.sort(Comparator.comparing(OutboxNotification::getId)); // RETURNING does not keep the order of the subquery.
+        return batch;
+    }
+
+    /**
+     * Pushes back a notification that could not be delivered, with an exponential backoff,
+     * or drops it once it has used all its attempts.
+     *
+     * @param notification The notification that failed.
+     * @param error        The delivery failure.
+     */
+    private void reschedule(OutboxNotification notification, Throwable error) {
+        final int attempts = notification.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error("Dropping notification {} for {} after {} attempts",
+                    notification.getId(), notification.getRecipientId(), attempts, error);
+            jdbcTemplate.update(DELETE_NOTIFICATION, notification.getId());
+            return;
+        }
+
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (delay.compareTo(MAX_RETRY_DELAY) > 0) {
+            delay = MAX_RETRY_DELAY;
+        }
+        log.warn("Notification {} for {} failed, retrying in {}", notification.getId(), notification.getRecipientId(), delay, error);
+        jdbcTemplate.update(RESCHEDULE_NOTIFICATION, attempts, delay.toMillis(), notification.getId());
+    }
+}
@@ -1,36 +1,93 @@
 package com.mihai.whatsappclone.notification;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for handling and sending WebSocket notifications to users.
- * Utilizes Spring's SimpMessagingTemplate to send notifications over WebSocket.
+ * Notifications are handed to the {@link NotificationCoalescer}, which sends those of the same user in one frame.
+ * Notifications resulting from a database change are written to a transactional outbox instead, and delivered
+ * by the {@link NotificationOutboxDispatcher} once the change is committed.
  */
 @Service // Marks this class as a Spring-managed service component.
-@RequiredArgsConstructor // Generates a constructor for all final fields (dependency injection).
 @Slf4j // Enables logging using the SLF4J framework.
 public class NotificationService {
 
-    private final SimpMessagingTemplate messagingTemplate; // Template for sending WebSocket messages.
+    // Writes a notification to the outbox, dates come from the database clock like in the dispatcher.
+    private static final String INSERT_OUTBOX_NOTIFICATION =
+            "INSERT INTO notification_outbox (recipient_id, payload, attempts, next_attempt_at, created_date) VALUES (?, ?, 0, now(), now())";
+
+    private final NotificationCoalescer coalescer; // Gathers the notifications of each user into frames.
+    private final JdbcTemplate jdbcTemplate; // Writes notifications to the outbox table.
+    private final ObjectMapper objectMapper; // Serializes the notifications stored in the outbox.
+    private final ApplicationEventPublisher eventPublisher; // Wakes up the outbox dispatcher after the commit.
+
+    public NotificationService(NotificationCoalescer coalescer,
+                               JdbcTemplate jdbcTemplate,
+                               ObjectMapper objectMapper,
+                               ApplicationEventPublisher eventPublisher) {
+        this.coalescer = coalescer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Writes a notification to the outbox, in the current transaction, for its recipient.
+     * The notification is delivered once the transaction commits, and never if it rolls back.
+     *
+     * @param notification The notification payload, sent to its recipient ID.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueNotification(Notification notification) {
+        enqueueNotifications(List.of(notification));
+    }
+
+    /**
+     * Writes notifications to the outbox in one JDBC batch, in the current transaction.
+     * Notifications of the same recipient are delivered in the given order.
+     *
+     * @param notifications The notification payloads, each sent to its recipient ID.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueNotifications(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            try {
+                rows.add(new Object[]{notification.getRecipientId(), objectMapper.writeValueAsString(notification)});
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Notification cannot be serialized", e);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_NOTIFICATION, rows);
+        eventPublisher.publishEvent(new NotificationsEnqueuedEvent(rows.size()));
+    }
 
     /**
      * Sends a WebSocket notification to a specific user.
+     * The notification is sent with the other notifications of the user gathered during the coalescing window.
      *
      * @param userId The ID of the user to receive the notification.
      * @param notification The notification payload to be sent.
+     * @return Completed once the notification was handed to the broker, or with the failure of its sending.
      */
-    public void sendNotification(String userId, Notification notification) {
-        // Log the notification details for debugging purposes.
-        log.info("Sending WebSocket notification to {} with payload {}", userId, notification);
-
-        // Use the messaging template to send the notification to the specified user.
-        messagingTemplate.convertAndSendToUser(
-                userId, // The destination user ID.
-                "/chat", // The WebSocket destination (subscribed topic).
-                notification // The notification payload to be sent.
-        );
+    public CompletableFuture<Void> sendNotification(String userId, Notification notification) {
+        // Only the identifiers are logged, the payload can carry message contents and media.
+        log.debug("Sending {} notification of message {} to {}", notification.getType(), notification.getMessageId(), userId);
+
+        return coalescer.add(userId, notification);
     }
 }
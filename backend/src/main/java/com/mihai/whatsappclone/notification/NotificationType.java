@@ -9,5 +9,9 @@ public enum NotificationType {
     MESSAGE, // Notification type for a new text message.
     IMAGE,   // Notification type for a new image message.
     AUDIO,   // Notification type for a new audio message.
-    VIDEO    // Notification type for a new video message.
+    VIDEO,   // Notification type for a new video message.
+    ONLINE,  // Notification type for a contact going online.
+    OFFLINE, // Notification type for a contact going offline.
+    ACK,     // Notification type acknowledging to its sender that a message was saved.
+    REJECTED // Notification type telling its sender that a message could not be saved.
 }
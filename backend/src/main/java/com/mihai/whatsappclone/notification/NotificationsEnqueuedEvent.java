@@ -0,0 +1,10 @@
+package com.mihai.whatsappclone.notification;
+
+/**
+ * Published when notifications are written to the outbox, so that they are dispatched right after the commit
+ * instead of waiting for the next poll.
+ *
+ * @param count The number of notifications written.
+ */
+public record NotificationsEnqueuedEvent(int count) {
+}
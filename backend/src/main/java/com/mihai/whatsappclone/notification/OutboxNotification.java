@@ -0,0 +1,73 @@
+package com.mihai.whatsappclone.notification;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a notification waiting in the transactional outbox.
+ * Rows are written in the transaction that produces the notification, leased by a dispatcher while they are
+ * being delivered, and deleted once the notification has been delivered to the message broker.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity // Marks this class as a JPA entity.
+@Table( // Maps the entity to the "notification_outbox" table in the database.
+        name = "notification_outbox",
+        indexes = @Index( // Index backing the per-recipient ordering checks of the dispatcher.
+                name = "idx_notification_outbox_recipient_id",
+                columnList = "recipient_id, id"
+        )
+)
+public class OutboxNotification {
+
+    /**
+     * The position of the notification in the outbox, notifications of a recipient are delivered in this order.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The ID of the user receiving the notification.
+     */
+    @Column(name = "recipient_id", nullable = false)
+    private String recipientId;
+
+    /**
+     * The notification serialized as JSON.
+     */
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    /**
+     * The number of failed delivery attempts.
+     */
+    @Column(nullable = false)
+    private int attempts;
+
+    /**
+     * The date before which the notification must not be delivered, pushed back after each failed attempt.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * The date until which the notification is claimed by a dispatcher, null when it is not claimed.
+     * A notification whose lease expired before its delivery was acknowledged can be claimed again.
+     */
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    /**
+     * The date the notification was written to the outbox.
+     */
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+}
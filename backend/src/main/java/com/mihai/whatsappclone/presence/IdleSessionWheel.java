@@ -0,0 +1,66 @@
+package com.mihai.whatsappclone.presence;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hashed timer wheel used to expire idle WebSocket sessions.
+ * Each slot holds the sessions whose deadline falls into one tick; touching a session only updates its
+ * activity timestamp, the session is re-scheduled lazily when its slot is reached.
+ */
+class IdleSessionWheel {
+
+    private final long tickMillis;
+    private final Set<String>[] slots;
+    private volatile long currentTick;
+
+    /**
+     * Creates a wheel able to hold deadlines up to {@code slotCount - 1} ticks ahead.
+     *
+     * @param tickMillis Duration of one tick in milliseconds.
+     * @param slotCount  Number of slots of the wheel.
+     * @param now        Current time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    IdleSessionWheel(long tickMillis, int slotCount, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new Set[Math.max(slotCount, 2)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Schedules a session to be checked once its deadline is reached.
+     *
+     * @param sessionId The ID of the session.
+     * @param deadline  Time in milliseconds at which the session expires if it stays idle.
+     */
+    void schedule(String sessionId, long deadline) {
+        final long tick = Math.clamp(deadline / tickMillis, currentTick + 1, currentTick + slots.length - 1);
+        slots[(int) (tick % slots.length)].add(sessionId);
+    }
+
+    /**
+     * Advances the wheel up to the given time and checks every session of the passed slots.
+     *
+     * @param now        Current time in milliseconds.
+     * @param deadlineOf Returns the new deadline of a session, or a negative value if the session is gone or expired.
+     */
+    synchronized void advance(long now, ToLongFunction<String> deadlineOf) {
+        final long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            Set<String> slot = slots[(int) (currentTick % slots.length)];
+            for (String sessionId : slot) {
+                slot.remove(sessionId);
+                long deadline = deadlineOf.applyAsLong(sessionId);
+                if (deadline >= 0) {
+                    schedule(sessionId, deadline); // Still active, check it again at its new deadline.
+                }
+            }
+        }
+    }
+}
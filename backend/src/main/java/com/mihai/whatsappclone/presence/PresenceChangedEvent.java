@@ -0,0 +1,10 @@
+package com.mihai.whatsappclone.presence;
+
+/**
+ * Application event published when a user goes online (first session) or offline (last session).
+ *
+ * @param userId The ID of the user.
+ * @param online Whether the user is now online.
+ */
+public record PresenceChangedEvent(String userId, boolean online) {
+}
@@ -0,0 +1,36 @@
+package com.mihai.whatsappclone.presence;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Inbound channel interceptor recording every client frame, heartbeats included, as session activity.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceChannelInterceptor implements ChannelInterceptor {
+
+    private final PresenceService presenceService;
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        final MessageHeaders headers = message.getHeaders();
+        final SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+
+        // Any other frame comes from an established session, which is registered again if it expired while idle.
+        final Principal user = type == SimpMessageType.CONNECT || type == SimpMessageType.DISCONNECT
+                ? null
+                : SimpMessageHeaderAccessor.getUser(headers);
+        presenceService.touch(SimpMessageHeaderAccessor.getSessionId(headers), user);
+        return message;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mihai.whatsappclone.presence;
+
+import com.mihai.whatsappclone.chat.ChatRepository;
+import com.mihai.whatsappclone.notification.Notification;
+import com.mihai.whatsappclone.notification.NotificationService;
+import com.mihai.whatsappclone.notification.NotificationType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes presence changes to the online users sharing a chat with the user whose presence changed.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceNotifier {
+
+    private final PresenceService presenceService;
+    private final ChatRepository chatRepository;
+    private final NotificationService notificationService;
+
+    /**
+     * Notifies the online contacts of a user that the user went online or offline.
+     *
+     * @param event The presence change.
+     */
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        final NotificationType type = event.online() ? NotificationType.ONLINE : NotificationType.OFFLINE;
+
+        chatRepository.findContactIds(event.userId())
+                .stream()
+                .distinct()
+                .filter(presenceService::isOnline) // Offline contacts will read the presence when they reconnect.
+                .forEach(contactId -> notificationService.sendNotification(
+                        contactId,
+                        Notification.builder()
+                                .type(type)
+                                .senderId(event.userId())
+                                .recipientId(contactId)
+                                .build()
+                ));
+    }
+}
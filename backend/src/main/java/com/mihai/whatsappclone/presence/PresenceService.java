@@ -0,0 +1,183 @@
+package com.mihai.whatsappclone.presence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory presence of users, driven by their STOMP sessions.
+ * A user is online while at least one of their sessions is connected and active; sessions that stop
+ * sending frames (including heartbeats) for longer than the idle timeout are expired.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private static final long TICK_MILLIS = 1000; // Resolution of the idle session expiry.
+
+    private final ApplicationEventPublisher eventPublisher; // Publishes presence changes to interested listeners.
+    private final long idleTimeoutMillis; // Inactivity after which a session is considered gone.
+    private final Map<String, PresenceSession> sessions = new ConcurrentHashMap<>(); // Sessions by session ID.
+    private final Map<String, Integer> sessionCounts = new ConcurrentHashMap<>(); // Number of sessions by user ID.
+    private final IdleSessionWheel idleSessions;
+
+    public PresenceService(ApplicationEventPublisher eventPublisher,
+                           @Value("${application.presence.idle-timeout}") long idleTimeoutMillis) {
+        this.eventPublisher = eventPublisher;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.idleSessions = new IdleSessionWheel(TICK_MILLIS, (int) (idleTimeoutMillis / TICK_MILLIS) + 2, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks whether a user currently has at least one active session.
+     *
+     * @param userId The ID of the user.
+     * @return true if the user is online, false otherwise.
+     */
+    public boolean isOnline(String userId) {
+        return userId != null && sessionCounts.containsKey(userId);
+    }
+
+    /**
+     * Returns the number of authenticated STOMP sessions currently registered.
+     *
+     * @return the number of sessions.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of users with at least one registered session.
+     *
+     * @return the number of online users.
+     */
+    public int getOnlineUserCount() {
+        return sessionCounts.size();
+    }
+
+    /**
+     * Registers an authenticated STOMP session once it is connected.
+     *
+     * @param event The event published when the CONNECTED frame is sent.
+     */
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        final Principal user = event.getUser();
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return; // Anonymous sessions do not count for presence.
+        }
+
+        startSession(sessionId, user.getName());
+    }
+
+    /**
+     * Removes a STOMP session once it is closed.
+     *
+     * @param event The event published when the session is disconnected.
+     */
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        endSession(event.getSessionId());
+    }
+
+    /**
+     * Records activity (any inbound frame, including heartbeats) on a session.
+     * A session expired while idle that sends frames again is still connected: it is registered again, so its
+     * user is back online without reconnecting.
+     *
+     * @param sessionId The ID of the session.
+     * @param user      The authenticated user of the session, null if the frame does not prove it is established.
+     */
+    public void touch(String sessionId, Principal user) {
+        if (sessionId == null) {
+            return;
+        }
+        PresenceSession session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastActivity = System.currentTimeMillis();
+        } else if (user != null) {
+            log.debug("Session {} of user {} is active again", sessionId, user.getName());
+            startSession(sessionId, user.getName());
+        }
+    }
+
+    /**
+     * Expires the sessions that have been idle for longer than the idle timeout.
+     */
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void expireIdleSessions() {
+        final long now = System.currentTimeMillis();
+        idleSessions.advance(now, sessionId -> {
+            PresenceSession session = sessions.get(sessionId);
+            if (session == null) {
+                return -1; // Already disconnected.
+            }
+            long deadline = session.lastActivity + idleTimeoutMillis;
+            if (deadline <= now) {
+                log.debug("Expiring idle session {} of user {}", sessionId, session.userId);
+                endSession(sessionId);
+                return -1;
+            }
+            return deadline;
+        });
+    }
+
+    /**
+     * Adds a session and publishes the user as online when it is their first one.
+     *
+     * @param sessionId The ID of the session.
+     * @param userId    The ID of the user of the session.
+     */
+    private void startSession(String sessionId, String userId) {
+        final long now = System.currentTimeMillis();
+        if (sessions.putIfAbsent(sessionId, new PresenceSession(userId, now)) != null) {
+            return;
+        }
+        idleSessions.schedule(sessionId, now + idleTimeoutMillis);
+
+        if (sessionCounts.merge(userId, 1, Integer::sum) == 1) {
+            eventPublisher.publishEvent(new PresenceChangedEvent(userId, true));
+        }
+    }
+
+    /**
+     * Removes a session and publishes the user as offline when it was their last one.
+     *
+     * @param sessionId The ID of the session.
+     */
+    private void endSession(String sessionId) {
+        PresenceSession session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        if (sessionCounts.computeIfPresent(session.userId, (userId, count) -> count > 1 ? count - 1 : null) == null) {
+            eventPublisher.publishEvent(new PresenceChangedEvent(session.userId, false));
+        }
+    }
+
+    /**
+     * A connected session of a user and the time of its last inbound frame.
+     */
+    private static final class PresenceSession {
+
+        private final String userId;
+        private volatile long lastActivity;
+
+        private PresenceSession(String userId, long lastActivity) {
+            this.userId = userId;
+            this.lastActivity = lastActivity;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mihai.whatsappclone.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replaces Keycloak with a stub issuer while the "loadtest" profile is active.
+ * <p>
+ * Tokens are signed with a secret shared with the load-test client (HS256), so thousands of simulated users
+ * can authenticate without a round trip to the identity provider. The decoder is picked up both by the
+ * resource server and by the STOMP CONNECT authentication; the claims are the ones Keycloak would issue.
+ */
+@Configuration
+@Profile("loadtest") // Never active in a regular deployment.
+public class LoadTestJwtConfig {
+
+    /**
+     * Creates the decoder validating the tokens minted by the load-test client.
+     *
+     * @param secret The shared HS256 secret, at least 32 bytes long.
+     * @param issuer The issuer the tokens must carry.
+     * @return the JwtDecoder used instead of the one resolved from the issuer URI.
+     */
+    @Bean
+    public JwtDecoder loadTestJwtDecoder(@Value("${application.loadtest.jwt.secret}") String secret,
+                                         @Value("${application.loadtest.jwt.issuer}") String issuer) {
+        final byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < 32) {
+            throw new IllegalArgumentException("The load-test JWT secret must be at least 32 bytes long");
+        }
+
+        NimbusJwtDecoder decoder = NimbusJwtDecoder
+                .withSecretKey(new SecretKeySpec(key, "HmacSHA256"))
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+
+        // Keep the expiry and issuer checks of the regular decoder.
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mihai.whatsappclone.security;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
@@ -54,8 +55,11 @@ public class SecurityConfig {
                                         "/swagger-ui/**",
                                         "/webjars/**",
                                         "/swagger-ui.html",
-                                        "/ws/**"
+                                        "/ws/**",
+                                        "/ws-native"
                                 ).permitAll()
+                                // Allows the scraping of the metrics without a token, on the management port only.
+                                .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                                 // Requires authentication for all other requests.
                                 .anyRequest().authenticated()
                 )
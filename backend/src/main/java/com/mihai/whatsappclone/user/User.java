@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,18 +26,12 @@ import java.util.List;
         name = UserConstants.FIND_USER_BY_EMAIL,
         query = "SELECT u FROM User u WHERE u.email= :email"
 )
-@NamedQuery( // Predefined query to find all users except the current user.
-        name = UserConstants.FIND_ALL_USERS_EXCEPT_SELF,
-        query = "SELECT u FROM User u WHERE u.id != :publicId"
-)
 @NamedQuery( // Predefined query to find a user by their public ID.
         name = UserConstants.FIND_USER_BY_PUBLIC_ID,
         query = "SELECT u FROM User u WHERE u.id = :publicId"
 )
 public class User extends BaseAuditingEntity {
 
-    private static final int LAST_ACTIVE_INTERVAL = 5; // Interval in minutes to determine if the user is online.
-
     @Id // Specifies the primary key of the entity.
     private String id;
 
@@ -48,6 +43,11 @@ public class User extends BaseAuditingEntity {
 
     private LocalDateTime lastSeen; // Timestamp indicating the user's last activity.
 
+    // Sequence number of the last numbered entry of the user's change feed, only incremented in SQL by the change feed.
+    @ColumnDefault("0")
+    @Column(name = "change_seq", nullable = false, insertable = false, updatable = false)
+    private long changeSeq;
+
     // Defines a one-to-many relationship with Chat, where the user is the sender.
     @OneToMany(mappedBy = "sender")
     private List<Chat> chatAsSender;
@@ -55,15 +55,4 @@ public class User extends BaseAuditingEntity {
     // Defines a one-to-many relationship with Chat, where the user is the recipient.
     @OneToMany(mappedBy = "recipient")
     private List<Chat> chatAsRecipient;
-
-    /**
-     * Determines if the user is currently online.
-     * A user is considered online if their `lastSeen` timestamp is within the last 5 minutes.
-     *
-     * @return true if the user is online, false otherwise.
-     */
-    @Transient // Marks this method as non-persistent (not stored in the database).
-    public boolean isOnline() {
-        return lastSeen != null && lastSeen.isAfter(LocalDateTime.now().minusMinutes(LAST_ACTIVE_INTERVAL));
-    }
 }
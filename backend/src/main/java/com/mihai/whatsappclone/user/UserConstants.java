@@ -13,10 +13,14 @@ public class UserConstants {
     public static final String FIND_USER_BY_EMAIL = "Users.findUserByEmail";
 
     /**
-     * Constant for the query name to find all users except the current user.
-     * This query is used when retrieving a list of users excluding the user who is performing the operation.
+     * Number of users returned by a directory page when the client does not ask for a size.
      */
-    public static final String FIND_ALL_USERS_EXCEPT_SELF = "Users.findAllUsersExceptSelf";
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Upper bound for the size of a directory page.
+     */
+    public static final int MAX_PAGE_SIZE = 50;
 
     /**
      * Constant for the query name to find a user by their public ID.
@@ -6,9 +6,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
 
 /**
  * This controller handles HTTP requests related to users.
@@ -24,14 +24,22 @@ public class UserController {
     private final UserService userService;
 
     /**
-     * Endpoint to fetch all users except the authenticated user.
+     * Endpoint to browse or search the user directory, excluding the authenticated user.
      *
+     * @param query          Optional text matched against the first name, last name and email (prefixes and typos tolerated).
+     * @param page           The index of the page, starting at 0.
+     * @param size           The number of users of the page (bounded by the server).
      * @param authentication The current authenticated user.
-     * @return A list of UserResponse objects, representing all users except the authenticated one.
+     * @return One page of UserResponse objects, best matches first.
      */
     @GetMapping
-    public ResponseEntity<List<UserResponse>> getAllUsers(Authentication authentication) {
-        // Call the service to fetch users and return the list as the response
-        return ResponseEntity.ok(userService.getAllUsersExceptSelf(authentication));
+    public ResponseEntity<UserPageResponse> getUsers(
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "size", required = false) Integer size,
+            Authentication authentication
+    ) {
+        // Call the service to search the directory and return the page as the response
+        return ResponseEntity.ok(userService.findUsers(query, page, size, authentication));
     }
 }
@@ -0,0 +1,311 @@
+package com.mihai.whatsappclone.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory search index of the user directory.
+ * Users are found by the prefix of any word of their first name, last name or email, through a sorted map of
+ * terms, and by approximate spelling through a trigram index when prefixes do not give enough results.
+ * The index is loaded once at startup and kept current by {@link UserSynchronizer}; every search examines
+ * a bounded number of candidates, whatever the size of the directory.
+ */
+@Component
+@Slf4j
+public class UserDirectory {
+
+    /**
+     * Statement loading the searchable fields of every user at startup.
+     */
+    private static final String LOAD_USERS = "SELECT id, first_name, last_name, email FROM users";
+
+    /**
+     * Maximum number of users matched by a search, results beyond it are not reachable by pagination.
+     */
+    private static final int MAX_MATCHES = 1000;
+
+    /**
+     * Trigrams shared by more users than this are too common to tell users apart and are skipped.
+     */
+    private static final int MAX_TRIGRAM_POSTINGS = 10_000;
+
+    /**
+     * Minimum share of the query trigrams an entry must contain to be an approximate match.
+     */
+    private static final double MIN_SIMILARITY = 0.5;
+
+    /**
+     * Separator between the display name and the ID in the keys of {@link #sortedNames}.
+     */
+    private static final char SORT_KEY_SEPARATOR = '\u0000';
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, DirectoryEntry> entries = new ConcurrentHashMap<>(); // Indexed users by ID.
+    private final NavigableMap<String, Set<String>> terms = new ConcurrentSkipListMap<>(); // User IDs by term.
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>(); // User IDs by trigram of their terms.
+    private final NavigableSet<String> sortedNames = new ConcurrentSkipListSet<>(); // Sort keys of all the users.
+
+    public UserDirectory(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Loads the existing users into the index once the application is started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        jdbcTemplate.query(LOAD_USERS, rs -> {
+            index(rs.getString("id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+        });
+        log.info("User directory loaded with {} users", entries.size());
+    }
+
+    /**
+     * Adds a user to the index, or replaces its previous version.
+     *
+     * @param user The synchronized user.
+     */
+    public void index(User user) {
+        index(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail());
+    }
+
+    /**
+     * Searches the directory.
+     * Users whose words start with every word of the query come first, ordered by name, followed by users
+     * whose words have a close spelling. Without a query, all users are listed by name.
+     *
+     * @param query         The searched text, may be null or blank.
+     * @param excludedId    The ID of a user to leave out of the results (the searching user).
+     * @param offset        The number of results to skip, may exceed the size of the directory.
+     * @param limit         The maximum number of results.
+     * @return The IDs of the matching users and whether more results exist.
+     */
+    public DirectoryPage search(String query, String excludedId, long offset, int limit) {
+        // No page starts past the last user, which also keeps the offset within the range of an int.
+        if (offset >= entries.size()) {
+            return new DirectoryPage(List.of(), false);
+        }
+        final int start = (int) offset;
+
+        final List<String> queryTerms = tokenize(query);
+        final int needed = start + limit + 1; // One more result tells whether a next page exists.
+
+        final List<String> matches = queryTerms.isEmpty()
+                ? listByName(excludedId, needed)
+                : findMatches(queryTerms, excludedId, Math.min(needed, MAX_MATCHES));
+
+        final boolean hasMore = matches.size() > start + limit;
+        final List<String> page = start >= matches.size()
+                ? List.of()
+                : matches.subList(start, Math.min(matches.size(), start + limit));
+        return new DirectoryPage(List.copyOf(page), hasMore);
+    }
+
+    /**
+     * Lists the users by name, without search terms.
+     */
+    private List<String> listByName(String excludedId, int needed) {
+        List<String> ids = new ArrayList<>(needed);
+        for (String sortKey : sortedNames) {
+            String id = sortKey.substring(sortKey.indexOf(SORT_KEY_SEPARATOR) + 1);
+            if (!id.equals(excludedId)) {
+                ids.add(id);
+                if (ids.size() == needed) {
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the users matching the query terms, by prefix first and then by spelling.
+     */
+    private List<String> findMatches(List<String> queryTerms, String excludedId, int needed) {
+        // The longest query term is the most selective, the others are checked on each candidate.
+        final String longest = queryTerms.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+
+        // Every page sorts the same bounded set of matches by name, whatever the number of results it needs.
+        List<DirectoryEntry> prefixMatches = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Set<String> ids : terms.subMap(longest, true, longest + Character.MAX_VALUE, false).values()) {
+            for (String id : ids) {
+                DirectoryEntry entry = entries.get(id);
+                if (entry != null && !id.equals(excludedId) && seen.add(id) && entry.matchesPrefixes(queryTerms)) {
+                    prefixMatches.add(entry);
+                }
+            }
+            if (prefixMatches.size() >= MAX_MATCHES) {
+                break;
+            }
+        }
+        prefixMatches.sort(Comparator.comparing(DirectoryEntry::sortKey));
+
+        Set<String> matches = new LinkedHashSet<>();
+        prefixMatches.stream().limit(needed).forEach(entry -> matches.add(entry.id()));
+        if (matches.size() < needed) {
+            for (String id : findSimilar(queryTerms, excludedId)) {
+                if (matches.size() >= needed) {
+                    break;
+                }
+                matches.add(id);
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Finds the users whose terms share most trigrams with the query, best first and then by ID.
+     */
+    private List<String> findSimilar(List<String> queryTerms, String excludedId) {
+        Set<String> queryTrigrams = new HashSet<>();
+        queryTerms.forEach(term -> queryTrigrams.addAll(trigramsOf(term)));
+
+        Map<String, Integer> hits = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> ids = trigrams.get(trigram);
+            if (ids != null && ids.size() <= MAX_TRIGRAM_POSTINGS) {
+                ids.forEach(id -> hits.merge(id, 1, Integer::sum));
+            }
+        }
+
+        final int minHits = (int) Math.ceil(queryTrigrams.size() * MIN_SIMILARITY);
+        return hits.entrySet().stream()
+                .filter(hit -> hit.getValue() >= minHits && !hit.getKey().equals(excludedId))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_MATCHES)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Adds or replaces the entry of a user in every index.
+     */
+    private synchronized void index(String id, String firstName, String lastName, String email) {
+        DirectoryEntry previous = entries.get(id);
+        DirectoryEntry entry = DirectoryEntry.of(id, firstName, lastName, email);
+        if (entry.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        entries.put(id, entry);
+        sortedNames.add(entry.sortKey());
+        for (String term : entry.terms()) {
+            terms.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(id);
+            for (String trigram : trigramsOf(term)) {
+                trigrams.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry of a user from the term, trigram and name indexes.
+     */
+    private void unindex(DirectoryEntry entry) {
+        sortedNames.remove(entry.sortKey());
+        for (String term : entry.terms()) {
+            removePosting(terms, term, entry.id());
+            for (String trigram : trigramsOf(term)) {
+                removePosting(trigrams, trigram, entry.id());
+            }
+        }
+    }
+
+    private static void removePosting(Map<String, Set<String>> index, String key, String id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Splits a text into lowercase words; an email also keeps its full lowercase form as a word.
+     */
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Returns the trigrams of a term, padded so that short terms and word starts also produce trigrams.
+     */
+    private static Set<String> trigramsOf(String term) {
+        String padded = "  " + term + " ";
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * The searchable form of a user.
+     *
+     * @param id      The ID of the user.
+     * @param sortKey The lowercase display name followed by the ID, ordering the results.
+     * @param terms   The words of the first name, last name and email, and the full email.
+     */
+    private record DirectoryEntry(String id, String sortKey, Set<String> terms) {
+
+        static DirectoryEntry of(String id, String firstName, String lastName, String email) {
+            Set<String> terms = new LinkedHashSet<>();
+            terms.addAll(tokenize(firstName));
+            terms.addAll(tokenize(lastName));
+            terms.addAll(tokenize(email));
+            if (email != null && !email.isBlank()) {
+                terms.add(email.toLowerCase(Locale.ROOT));
+            }
+            String name = (nullToEmpty(firstName) + " " + nullToEmpty(lastName)).trim().toLowerCase(Locale.ROOT);
+            return new DirectoryEntry(id, name + SORT_KEY_SEPARATOR + id, Set.copyOf(terms));
+        }
+
+        /**
+         * Checks whether every query term is the prefix of one of the terms of the entry.
+         */
+        boolean matchesPrefixes(Collection<String> queryTerms) {
+            return queryTerms.stream().allMatch(queryTerm -> terms.stream().anyMatch(term -> term.startsWith(queryTerm)));
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+    }
+
+    /**
+     * One page of directory search results.
+     *
+     * @param userIds The IDs of the users of the page, in result order.
+     * @param hasMore Whether more results exist after this page.
+     */
+    public record DirectoryPage(List<String> userIds, boolean hasMore) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.mihai.whatsappclone.user;
 
+import com.mihai.whatsappclone.presence.PresenceService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -11,8 +13,11 @@ import java.util.Map;
  * the corresponding fields of the User entity.
  */
 @Service
+@RequiredArgsConstructor
 public class UserMapper {
 
+    private final PresenceService presenceService; // Source of the online status of users.
+
     /**
      * Maps user attributes from the provided token attributes to a User object.
      *
@@ -68,7 +73,7 @@ public class UserMapper {
                 .lastName(user.getLastName()) // Set the User's last name
                 .email(user.getEmail()) // Set the User's email
                 .lastSeen(user.getLastSeen()) // Set the last seen time
-                .isOnline(user.isOnline()) // Set the online status
+                .isOnline(presenceService.isOnline(user.getId())) // Set the online status from the active WebSocket sessions
                 .build(); // Return the built UserResponse object
     }
 }
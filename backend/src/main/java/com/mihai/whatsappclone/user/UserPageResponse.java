@@ -0,0 +1,22 @@
+package com.mihai.whatsappclone.user;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A DTO (Data Transfer Object) representing one page of the user directory.
+ */
+@Getter // Generates getter methods for all fields.
+@Setter // Generates setter methods for all fields.
+@AllArgsConstructor // Generates a constructor with all fields as parameters.
+@NoArgsConstructor // Generates a no-argument constructor.
+@Builder // Provides a builder pattern for the class to create instances with ease.
+public class UserPageResponse {
+
+    private List<UserResponse> users; // The users of the page, best matches first.
+    private int page; // The index of the page, starting at 0.
+    private int size; // The maximum number of users of the page.
+    private boolean hasMore; // Indicates whether more users exist after this page.
+
+}
@@ -5,7 +5,6 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -34,14 +33,4 @@ public interface UserRepository extends JpaRepository<User, String> {
      */
     @Query(name = UserConstants.FIND_USER_BY_PUBLIC_ID)
     Optional<User> findByPublicId(@Param("publicId") String publicId);
-
-    /**
-     * Custom query method to find all users except the one with the specified public ID.
-     * This is useful for excluding the current user when retrieving a list of users.
-     *
-     * @param senderId The public ID of the current user, who will be excluded from the result.
-     * @return A list of users excluding the one with the provided senderId.
-     */
-    @Query(name = UserConstants.FIND_ALL_USERS_EXCEPT_SELF) // Custom query using a named query
-    List<User> findAllUsersExceptSelf(@Param("publicId") String senderId);
 }
@@ -4,7 +4,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service // Marks the class as a Spring service.
 @RequiredArgsConstructor // Generates a constructor with required arguments (in this case, for final fields).
@@ -12,19 +15,41 @@ public class UserService {
 
     private final UserRepository userRepository; // Repository to access user data from the database.
     private final UserMapper userMapper; // Mapper to convert entities to DTOs (Data Transfer Objects).
+    private final UserDirectory userDirectory; // In-memory search index of the users.
 
     /**
-     * Fetches all users except the currently authenticated user.
+     * Fetches one page of the user directory, excluding the currently authenticated user.
+     * The directory index selects the users of the page, only those are loaded from the database.
      *
+     * @param query         Optional text matched against the first name, last name and email.
+     * @param page          The index of the page, starting at 0.
+     * @param size          The number of users of the page (bounded by the server).
      * @param connectedUser The authenticated user (the user currently logged in).
-     * @return A list of user responses (DTOs) for all users except the authenticated user.
+     * @return One page of user responses (DTOs), in result order.
      */
-    public List<UserResponse> getAllUsersExceptSelf(Authentication connectedUser){
-        // Calls the repository method to get all users except the one matching the authenticated user's name.
-        return userRepository.findAllUsersExceptSelf(connectedUser.getName())
-                // Maps the result to UserResponse objects using the userMapper.
-                .stream()
-                .map(userMapper::toUserResponse)
-                .toList(); // Collects and returns the result as a List of UserResponse objects.
+    public UserPageResponse findUsers(String query, Integer page, Integer size, Authentication connectedUser) {
+        final int pageSize = size == null
+                ? UserConstants.DEFAULT_PAGE_SIZE
+                : Math.clamp(size, 1, UserConstants.MAX_PAGE_SIZE);
+        final int pageIndex = page == null ? 0 : Math.max(page, 0);
+
+        // The offset is computed as a long, the product of a large page index and the size would overflow an int.
+        UserDirectory.DirectoryPage result = userDirectory.search(
+                query, connectedUser.getName(), (long) pageIndex * pageSize, pageSize);
+
+        // Loads the users of the page at once, then restores the order of the results.
+        Map<String, User> users = userRepository.findAllById(result.userIds()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        return UserPageResponse.builder()
+                .users(result.userIds().stream()
+                        .map(users::get)
+                        .filter(Objects::nonNull)
+                        .map(userMapper::toUserResponse)
+                        .toList())
+                .page(pageIndex)
+                .size(pageSize)
+                .hasMore(result.hasMore())
+                .build();
     }
 }
@@ -1,23 +1,53 @@
 package com.mihai.whatsappclone.user;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mihai.whatsappclone.chat.ChatDescriptorCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This service class handles the synchronization of user data with the identity provider (IDP).
  * It retrieves the user information from the IDP using the provided JWT token and updates
  * the user data in the repository.
+ * <p>
+ * The profile is only written when the relevant claims of a subject change: synchronized subjects are
+ * cached together with their claims, and the "last seen" timestamps of cached users are buffered in
+ * memory and flushed to the database in periodic JDBC batches. The cache is bounded and its entries expire,
+ * so it does not grow with every subject that ever authenticated and each profile is written again periodically.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UserSynchronizer {
 
+    /**
+     * The token claims mapped to the User entity, a change in any of them triggers a new synchronization.
+     */
+    private static final List<String> SYNCHRONIZED_CLAIMS = List.of("sub", "email", "given_name", "nickname", "family_name");
+
+    /**
+     * Statement updating the last activity of a user.
+     */
+    private static final String UPDATE_LAST_SEEN = "UPDATE users SET last_seen = ? WHERE id = ?";
+
     /**
      * The repository responsible for interacting with the User data in the database.
      */
@@ -28,12 +58,84 @@ public class UserSynchronizer {
      */
     private final UserMapper userMapper;
 
+    /**
+     * Template used to flush the buffered "last seen" timestamps in batches.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The in-memory search index of the users, updated on every synchronization.
+     */
+    private final UserDirectory userDirectory;
+
+    /**
+     * The cached participants of the chats, holding the names of the users.
+     */
+    private final ChatDescriptorCache chatDescriptorCache;
+
+    /**
+     * Synchronized subjects, keyed by the "sub" claim.
+     */
+    private final Cache<String, SyncedUser> syncedUsers;
+
+    /**
+     * Latest activity of each user not yet written to the database, keyed by user ID.
+     */
+    private final Map<String, LocalDateTime> pendingLastSeen = new ConcurrentHashMap<>();
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer flushTimer;
+
+    public UserSynchronizer(UserRepository userRepository,
+                            UserMapper userMapper,
+                            JdbcTemplate jdbcTemplate,
+                            UserDirectory userDirectory,
+                            ChatDescriptorCache chatDescriptorCache,
+                            MeterRegistry meterRegistry,
+                            @Value("${application.user-sync.cache.max-size}") long cacheMaxSize,
+                            @Value("${application.user-sync.cache.expire-after-write}") long cacheExpireAfterWrite) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.userDirectory = userDirectory;
+        this.chatDescriptorCache = chatDescriptorCache;
+        this.syncedUsers = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheExpireAfterWrite))
+                .build();
+        this.cacheHits = Counter.builder("user.sync.cache")
+                .description("Synchronizations skipped because the token claims did not change")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("user.sync.cache")
+                .description("Synchronizations that wrote the user profile to the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("user.sync.last-seen.flush")
+                .description("Time spent writing a batch of buffered last seen timestamps")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("user.sync.last-seen.pending", List.of(), pendingLastSeen);
+    }
+
     /**
      * Synchronizes the user data with the identity provider (IDP) based on the provided JWT token.
+     * If the subject was already synchronized with the same claims, only its activity is recorded.
      *
      * @param token The JWT token containing user data from the IDP.
      */
     public void synchronizeWithIdp(Jwt token) {
+        final List<String> claims = getSynchronizedClaims(token);
+
+        // Skip the database upsert while the claims of the subject are unchanged.
+        SyncedUser syncedUser = syncedUsers.getIfPresent(token.getSubject());
+        if (syncedUser != null && syncedUser.claims().equals(claims)) {
+            cacheHits.increment();
+            pendingLastSeen.put(syncedUser.userId(), LocalDateTime.now());
+            return;
+        }
+        cacheMisses.increment();
+
         log.info("Synchronizing user with idp");
 
         // Retrieve the user's email from the token, and proceed if it's available
@@ -51,9 +153,50 @@ public class UserSynchronizer {
 
             // Save or update the user in the repository
             userRepository.save(user);
+
+            // Keep the directory search index current
+            userDirectory.index(user);
+
+            // Drop the cached chats of the user, their names may have changed
+            chatDescriptorCache.invalidateUser(user.getId());
+
+            // Remember the synchronized claims so the next requests skip the upsert
+            syncedUsers.put(token.getSubject(), new SyncedUser(user.getId(), claims));
+        });
+    }
+
+    /**
+     * Writes the buffered "last seen" timestamps to the database in a single JDBC batch.
+     */
+    @Scheduled(fixedDelayString = "${application.user-sync.last-seen-flush-interval}")
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        // Drain the buffer, keeping any timestamp recorded concurrently for the next flush.
+        // Users are updated in ID order, the order the change feed locks them in, so the batch cannot deadlock with it.
+        List<Object[]> batch = new ArrayList<>(pendingLastSeen.size());
+        new TreeMap<>(pendingLastSeen).forEach((userId, lastSeen) -> {
+            if (pendingLastSeen.remove(userId, lastSeen)) {
+                batch.add(new Object[]{lastSeen, userId});
+            }
+        });
+
+        flushTimer.record(() -> {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_LAST_SEEN, batch);
+            log.debug("Flushed last seen of {} users", Arrays.stream(updated).filter(count -> count > 0).count());
         });
     }
 
+    /**
+     * Flushes the remaining "last seen" timestamps before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushLastSeen();
+    }
+
     /**
      * Retrieves the user's email from the JWT token's claims.
      *
@@ -71,4 +214,26 @@ public class UserSynchronizer {
         // Return empty if the email is not present
         return Optional.empty();
     }
+
+    /**
+     * Retrieves the values of the claims that are mapped to the User entity.
+     *
+     * @param token The JWT token containing user information.
+     * @return The claim values, in the order of {@link #SYNCHRONIZED_CLAIMS}.
+     */
+    private List<String> getSynchronizedClaims(Jwt token) {
+        Map<String, Object> attributes = token.getClaims();
+        return SYNCHRONIZED_CLAIMS.stream()
+                .map(claim -> Optional.ofNullable(attributes.get(claim)).map(Object::toString).orElse(""))
+                .toList();
+    }
+
+    /**
+     * A synchronized subject: the ID of its User row and the claims it was synchronized with.
+     *
+     * @param userId The ID of the User entity.
+     * @param claims The synchronized claim values.
+     */
+    private record SyncedUser(String userId, List<String> claims) {
+    }
 }
@@ -0,0 +1,38 @@
+package com.mihai.whatsappclone.websocket;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A payload sent to user destinations without being serialized up front. Each session it reaches receives it
+ * in the codec it negotiated, and each codec is only written once, however many sessions use it.
+ */
+@RequiredArgsConstructor
+public final class NegotiatedPayload {
+
+    /**
+     * The object to serialize.
+     */
+    @Getter
+    private final Object value;
+
+    /**
+     * The payload already written, per codec.
+     */
+    private final Map<PayloadCodec, byte[]> encoded = new EnumMap<>(PayloadCodec.class);
+
+    /**
+     * Returns the payload written in the given codec, writing it on first use.
+     *
+     * @param codec The codec of the receiving session.
+     * @param writer Writes the value in the codec.
+     * @return The serialized payload.
+     */
+    public synchronized byte[] encode(PayloadCodec codec, Function<Object, byte[]> writer) {
+        return encoded.computeIfAbsent(codec, c -> writer.apply(value));
+    }
+}
@@ -0,0 +1,34 @@
+package com.mihai.whatsappclone.websocket;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * Passes {@link NegotiatedPayload}s through to the broker unserialized, the {@link PayloadCodecInterceptor}
+ * writes them for each session on the client outbound channel.
+ */
+public class NegotiatedPayloadMessageConverter implements MessageConverter {
+
+    @Override
+    public Object fromMessage(@NonNull Message<?> message, @NonNull Class<?> targetClass) {
+        return null; // Clients never send negotiated payloads.
+    }
+
+    @Override
+    public Message<?> toMessage(@NonNull Object payload, @Nullable MessageHeaders headers) {
+        if (!(payload instanceof NegotiatedPayload)) {
+            return null;
+        }
+        // Keep the mutable headers of the messaging template, as the other converters do.
+        MessageHeaderAccessor accessor = headers != null ? MessageHeaderAccessor.getAccessor(headers, MessageHeaderAccessor.class) : null;
+        if (accessor != null && accessor.isMutable()) {
+            return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        }
+        return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+    }
+}
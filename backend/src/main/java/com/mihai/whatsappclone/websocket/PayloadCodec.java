@@ -0,0 +1,94 @@
+package com.mihai.whatsappclone.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.Getter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Encodings of the STOMP payloads a client can negotiate for its connection.
+ * The binary encodings carry the same data model as JSON, written with the matching Jackson data format.
+ */
+@Getter
+public enum PayloadCodec {
+
+    JSON(MimeTypeUtils.APPLICATION_JSON),
+    CBOR(new MimeType("application", "cbor")),
+    SMILE(new MimeType("application", "x-jackson-smile"));
+
+    /**
+     * Parameter naming the codec in the content type of the binary frames sent to clients.
+     */
+    private static final String CODEC_PARAMETER = "codec";
+
+    /**
+     * The content type a client declares to select the codec, and uses for the frames it sends.
+     */
+    private final MimeType mimeType;
+
+    /**
+     * The content type of the frames sent to clients.
+     * Spring sends a STOMP frame as a binary WebSocket message only when its content type is
+     * "application/octet-stream", a text message would not carry the binary payload intact, so the binary
+     * codecs are named by a parameter of that content type instead.
+     */
+    private final MimeType frameContentType;
+
+    PayloadCodec(MimeType mimeType) {
+        this.mimeType = mimeType;
+        this.frameContentType = MimeTypeUtils.APPLICATION_JSON.equals(mimeType)
+                ? mimeType
+                : new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM, Map.of(CODEC_PARAMETER, name().toLowerCase()));
+    }
+
+    /**
+     * Indicates whether the codec produces binary payloads, which can only be sent over raw WebSocket sessions.
+     *
+     * @return true for the binary codecs.
+     */
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /**
+     * Creates the mapper writing and reading this codec, with the configuration and modules of the JSON mapper.
+     *
+     * @param objectMapper The application JSON mapper.
+     * @return A mapper for this codec.
+     */
+    public ObjectMapper mapper(ObjectMapper objectMapper) {
+        return switch (this) {
+            case JSON -> objectMapper;
+            case CBOR -> objectMapper.copyWith(new CBORFactory());
+            case SMILE -> objectMapper.copyWith(new SmileFactory());
+        };
+    }
+
+    /**
+     * Finds the codec matching a content type.
+     *
+     * @param contentType The content type declared by a client, may be null.
+     * @return The matching codec, JSON when the content type is missing or unknown.
+     */
+    public static PayloadCodec fromContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return JSON;
+        }
+        final MimeType mimeType;
+        try {
+            mimeType = MimeTypeUtils.parseMimeType(contentType);
+        } catch (IllegalArgumentException e) {
+            return JSON;
+        }
+        for (PayloadCodec codec : values()) {
+            if (codec.mimeType.equalsTypeAndSubtype(mimeType)) {
+                return codec;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,111 @@
+package com.mihai.whatsappclone.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates the payload codec of each STOMP session and serializes the {@link NegotiatedPayload}s sent to it.
+ * <p>
+ * On the inbound channel, the "content-type" header of the CONNECT frame selects the codec of the session: JSON,
+ * CBOR or Smile. Binary codecs are only granted to sessions opened on the raw WebSocket endpoint, SockJS transports
+ * carry text only. On the outbound channel, every negotiated payload is written in the codec of its session.
+ */
+@Component
+@Slf4j
+public class PayloadCodecInterceptor implements ChannelInterceptor {
+
+    /**
+     * Handshake attribute marking the sessions that can receive binary WebSocket messages.
+     */
+    public static final String BINARY_FRAMES_ATTRIBUTE = "binaryFrames";
+
+    private final Map<PayloadCodec, ObjectWriter> writers = new EnumMap<>(PayloadCodec.class); // Writer of each codec.
+    private final Map<String, PayloadCodec> sessionCodecs = new ConcurrentHashMap<>(); // Codecs other than JSON, by session ID.
+
+    public PayloadCodecInterceptor(ObjectMapper objectMapper) {
+        for (PayloadCodec codec : PayloadCodec.values()) {
+            writers.put(codec, codec.mapper(objectMapper).writer());
+        }
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (message.getPayload() instanceof NegotiatedPayload payload) {
+            return encode(message, payload);
+        }
+
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (sessionId != null && messageType == SimpMessageType.CONNECT) {
+            negotiate(sessionId, message);
+        } else if (sessionId != null && messageType == SimpMessageType.DISCONNECT) {
+            sessionCodecs.remove(sessionId);
+        }
+        return message;
+    }
+
+    /**
+     * Records the codec requested by a CONNECT frame, when the session can receive it.
+     *
+     * @param sessionId The ID of the connecting session.
+     * @param message The CONNECT message.
+     */
+    private void negotiate(String sessionId, Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return;
+        }
+
+        PayloadCodec codec = PayloadCodec.fromContentType(accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER));
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (codec.isBinary() && (attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE)))) {
+            log.debug("Session {} requested {} over a text-only transport, falling back to JSON", sessionId, codec);
+            codec = PayloadCodec.JSON;
+        }
+        if (codec != PayloadCodec.JSON) {
+            sessionCodecs.put(sessionId, codec);
+        }
+    }
+
+    /**
+     * Writes a negotiated payload in the codec of the session it is sent to.
+     *
+     * @param message The outbound message.
+     * @param payload The payload of the message.
+     * @return The message carrying the serialized payload and its content type.
+     */
+    private Message<byte[]> encode(Message<?> message, NegotiatedPayload payload) {
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        final PayloadCodec codec = sessionId == null ? PayloadCodec.JSON : sessionCodecs.getOrDefault(sessionId, PayloadCodec.JSON);
+
+        byte[] bytes = payload.encode(codec, value -> write(codec, value));
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(codec.getFrameContentType());
+        return MessageBuilder.createMessage(bytes, accessor.getMessageHeaders());
+    }
+
+    private byte[] write(PayloadCodec codec, Object value) {
+        try {
+            return writers.get(codec).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Payload cannot be serialized as " + codec, e);
+        }
+    }
+}
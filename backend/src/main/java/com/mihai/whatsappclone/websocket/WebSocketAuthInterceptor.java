@@ -0,0 +1,43 @@
+package com.mihai.whatsappclone.websocket;
+
+import com.mihai.whatsappclone.security.KeycloakJwtAuthenticationConverter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates STOMP sessions with the bearer token sent in the headers of the CONNECT frame.
+ * The resulting user is attached to the session, which makes user destinations and session events
+ * aware of who is connected.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtDecoder jwtDecoder; // Validates the token against the identity provider.
+    private final KeycloakJwtAuthenticationConverter authenticationConverter = new KeycloakJwtAuthenticationConverter();
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+
+        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+            final String authorization = accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION);
+            if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+                // An invalid token fails the CONNECT frame with an error.
+                accessor.setUser(authenticationConverter.convert(jwtDecoder.decode(authorization.substring(BEARER_PREFIX.length()))));
+            }
+        }
+        return message;
+    }
+}
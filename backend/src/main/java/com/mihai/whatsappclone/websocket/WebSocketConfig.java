@@ -1,15 +1,23 @@
 package com.mihai.whatsappclone.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihai.whatsappclone.presence.PresenceChannelInterceptor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.messaging.converter.DefaultContentTypeResolver;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.messaging.context.AuthenticationPrincipalArgumentResolver;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -29,6 +37,26 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final long HEARTBEAT_INTERVAL = 10000; // Interval in milliseconds of STOMP heartbeats in both directions.
+
+    private final WebSocketAuthInterceptor authInterceptor; // Authenticates sessions on CONNECT.
+    private final PresenceChannelInterceptor presenceInterceptor; // Records session activity for presence.
+    private final ObjectMapper objectMapper; // Application JSON mapper, supporting the java.time types of the payloads.
+    private final Environment environment; // Decides whether the channels run on virtual threads.
+    private final PayloadCodecInterceptor payloadCodecInterceptor; // Negotiates and writes the payload codec of each session.
+
+    private TaskScheduler messageBrokerTaskScheduler; // Scheduler sending and checking the broker heartbeats.
+
+    /**
+     * Injects the scheduler of the message broker lazily, as it is created by the broker configuration itself.
+     *
+     * @param messageBrokerTaskScheduler The scheduler of the message broker.
+     */
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy TaskScheduler messageBrokerTaskScheduler) {
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+
     /**
      * Configures the message broker settings.
      *
@@ -36,8 +64,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // Enable simple broker for user-specific messages.
-        registry.enableSimpleBroker("/user");
+        // Enable simple broker for user-specific messages; user destinations are resolved to "/chat-user{sessionId}".
+        // No broker prefix may match the "/users" user prefix: the broker would also register the untranslated
+        // SUBSCRIBE under the same subscription ID, and the resolved subscription would then be ignored.
+        // Heartbeats let clients keep their session, and their presence, alive.
+        registry.enableSimpleBroker("/chat")
+                .setHeartbeatValue(new long[]{HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL})
+                .setTaskScheduler(messageBrokerTaskScheduler);
 
         // Set the application destination prefixes. Messages that start with "/app" will be routed to application controllers.
         registry.setApplicationDestinationPrefixes("/app");
@@ -58,6 +91,45 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .addEndpoint("/ws")
                 .setAllowedOrigins("http://localhost:4200") // Allow connections from Angular client running on this port.
                 .withSockJS(); // Use SockJS to provide fallback options for clients that don't support WebSocket.
+
+        // Register the "/ws-native" endpoint for raw WebSocket connections, which can negotiate binary payload codecs.
+        // Tomcat negotiates permessage-deflate on both endpoints for clients offering it in the handshake.
+        registry
+                .addEndpoint("/ws-native")
+                .setAllowedOrigins("http://localhost:4200")
+                .addInterceptors(new BinaryFramesHandshakeInterceptor());
+    }
+
+    /**
+     * Configures the channel carrying the frames received from clients.
+     *
+     * @param registration The registration of the client inbound channel.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authenticate the session first, so the following interceptors see the user.
+        registration.interceptors(authInterceptor, presenceInterceptor, payloadCodecInterceptor);
+
+        // Inbound frames end in blocking JDBC and file I/O, a bounded pool would stall on slow disks or databases.
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+
+    /**
+     * Configures the channel carrying the frames sent to clients.
+     *
+     * @param registration The registration of the client outbound channel.
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Write the negotiated payloads in the codec of the session they are sent to.
+        registration.interceptors(payloadCodecInterceptor);
+
+        // A client with a slow connection blocks its sending thread, which is cheap when it is virtual.
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
     }
 
     /**
@@ -85,12 +157,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         // Create a Jackson message converter for converting Java objects to JSON.
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
-        converter.setObjectMapper(new ObjectMapper()); // Use Jackson's ObjectMapper for JSON conversion.
+        converter.setObjectMapper(objectMapper); // Use the application's ObjectMapper for JSON conversion.
         converter.setContentTypeResolver(resolver); // Set the resolver for content type.
 
+        // Negotiated payloads are serialized per session on the outbound channel, they must not reach the JSON converter.
+        messageConverters.add(new NegotiatedPayloadMessageConverter());
+
         // Add the message converter to the list.
         messageConverters.add(converter);
 
+        // Read the frames of the clients that negotiated a binary codec.
+        messageConverters.add(new MappingJackson2MessageConverter(PayloadCodec.CBOR.mapper(objectMapper), PayloadCodec.CBOR.getMimeType()));
+        messageConverters.add(new MappingJackson2MessageConverter(PayloadCodec.SMILE.mapper(objectMapper), PayloadCodec.SMILE.getMimeType()));
+
         return false; // Return false to prevent overriding default message converters.
     }
 }
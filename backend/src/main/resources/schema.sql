@@ -0,0 +1,65 @@
+-- Applied after Hibernate has created or updated the tables (spring.jpa.defer-datasource-initialization).
+-- Every statement must be idempotent, the script runs on each startup.
+
+-- Full-text index of message contents, maintained by PostgreSQL on every insert or update of a message.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple'::regconfig, coalesce(content, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_messages_content_tsv ON messages USING gin (content_tsv);
+
+-- Index backing the hourly purge of the change feed entries older than the retention period.
+CREATE INDEX IF NOT EXISTS idx_user_changes_created_date ON user_changes (created_date);
+
+-- Reference count of the media stored while it was not maintained: the messages whose file is the content.
+-- Only unreferenced contents are counted, so a count maintained on write is never overwritten.
+UPDATE media_blob b SET ref_count = r.refs
+FROM (SELECT substring(media_file_path from '[0-9a-f]{64}$') AS hash, count(*) AS refs
+      FROM messages
+      WHERE media_file_path IS NOT NULL
+      GROUP BY 1) r
+WHERE b.hash = r.hash
+  AND b.ref_count = 0;
+
+-- Canonical participant pair of the chats created before the column existed: both user IDs, the lowest first
+-- in code point order (COLLATE "C"), like String.compareTo.
+-- Only the oldest chat of a pair gets the key, later duplicates keep a NULL key and never match a new chat.
+UPDATE chat c SET participant_pair = p.pair
+FROM (SELECT DISTINCT ON (pair) id, pair
+      FROM (SELECT id, created_date, least(sender_id COLLATE "C", recipient_id COLLATE "C") || ':' || greatest(sender_id COLLATE "C", recipient_id COLLATE "C") AS pair
+            FROM chat WHERE participant_pair IS NULL) unkeyed
+      ORDER BY pair, created_date, id) p
+WHERE c.id = p.id
+  AND NOT EXISTS (SELECT 1 FROM chat e WHERE e.participant_pair = p.pair);
+
+-- Two users share at most one chat, chat creation upserts on this index.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_participant_pair ON chat (participant_pair);
+
+-- Summary of the chats whose messages were sent before it was maintained on write: last message and unread counters.
+-- Only chats without a last message date are backfilled, so a summary maintained on write is never overwritten.
+-- Messages not marked as seen and past the read watermark of their recipient count as unread.
+UPDATE chat c
+SET last_message_preview = left(l.content, 100), -- ChatConstants.LAST_MESSAGE_PREVIEW_LENGTH
+    last_message_type = l.type,
+    last_message_date = l.created_date,
+    last_message_id = s.max_id,
+    sender_unread_count = s.sender_unread,
+    recipient_unread_count = s.recipient_unread
+FROM chat u
+CROSS JOIN LATERAL (SELECT content, type, created_date FROM messages
+                    WHERE chat_id = u.id
+                    ORDER BY created_date DESC, id DESC
+                    LIMIT 1) l
+CROSS JOIN LATERAL (SELECT max(id) AS max_id,
+                           count(*) FILTER (WHERE recipient_id = u.sender_id AND state <> 'SEEN'
+                                              AND id > coalesce(u.sender_last_read_message_id, 0)) AS sender_unread,
+                           count(*) FILTER (WHERE recipient_id = u.recipient_id AND state <> 'SEEN'
+                                              AND id > coalesce(u.recipient_last_read_message_id, 0)) AS recipient_unread
+                    FROM messages
+                    WHERE chat_id = u.id) s
+WHERE c.id = u.id
+  AND u.last_message_date IS NULL;
+
+-- ID of the last message of the chats summarized before it was recorded.
+UPDATE chat c SET last_message_id = (SELECT max(id) FROM messages m WHERE m.chat_id = c.id)
+WHERE c.last_message_id IS NULL
+  AND c.last_message_date IS NOT NULL;
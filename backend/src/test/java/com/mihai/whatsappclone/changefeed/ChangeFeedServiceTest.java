@@ -0,0 +1,132 @@
+package com.mihai.whatsappclone.changefeed;
+
+import com.mihai.whatsappclone.chat.ChatDescriptor;
+import com.mihai.whatsappclone.user.User;
+import com.mihai.whatsappclone.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that concurrent changes of a user do not wait for each other, and that the feed stays gapless
+ * whatever the order in which they are committed.
+ */
+@SpringBootTest
+class ChangeFeedServiceTest {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentChangesOfAUserAreNumberedInCommitOrder() throws Exception {
+        final User reader = saveUser();
+        final User sender = saveUser();
+        final ChatDescriptor chat = chat(sender, reader);
+
+        // A first change stays uncommitted while a second change of the same users is committed.
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            changeFeedService.recordSeen(chat, reader.getId(), 1L);
+            appended.countDown();
+            await(release);
+        }));
+        assertTrue(appended.await(10, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> changeFeedService.recordSeen(chat, reader.getId(), 2L))).get(5, TimeUnit.SECONDS);
+
+        // Only the committed change is numbered.
+        ChangeFeedResponse before = findChanges(reader, 0L);
+        assertEquals(List.of(2L), messageIds(before));
+        assertEquals(1L, before.getLastSeq());
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        // The change committed late follows the one already read, without a gap.
+        ChangeFeedResponse after = findChanges(reader, before.getLastSeq());
+        assertFalse(after.isResyncRequired());
+        assertEquals(List.of(1L), messageIds(after));
+        assertEquals(2L, after.getLastSeq());
+        // Changes committed before a read are numbered in the order they were appended.
+        assertEquals(List.of(1L, 2L), messageIds(findChanges(sender, 0L)));
+    }
+
+    @Test
+    void purgedChangesRequireAResync() {
+        final User reader = saveUser();
+        final ChatDescriptor chat = chat(saveUser(), reader);
+        recordSeen(chat, reader, 1L);
+        final long position = findChanges(reader, 0L).getLastSeq();
+
+        // One change read before the retention elapsed, another one never read.
+        recordSeen(chat, reader, 2L);
+        findChanges(reader, position);
+        recordSeen(chat, reader, 3L);
+        jdbcTemplate.update("UPDATE user_changes SET created_date = now() - interval '30 days' WHERE user_id = ?", reader.getId());
+        jdbcTemplate.update("UPDATE pending_user_changes SET created_date = now() - interval '30 days' WHERE user_id = ?", reader.getId());
+
+        changeFeedService.purgeChanges();
+
+        ChangeFeedResponse response = findChanges(reader, position);
+        assertTrue(response.isResyncRequired());
+        assertEquals(3L, response.getLastSeq());
+        assertTrue(findChanges(reader, response.getLastSeq()).getChanges().isEmpty());
+    }
+
+    private static ChatDescriptor chat(User sender, User recipient) {
+        return new ChatDescriptor(UUID.randomUUID().toString(), sender.getId(), recipient.getId(), "First Last", "First Last");
+    }
+
+    private void recordSeen(ChatDescriptor chat, User reader, Long messageId) {
+        transactionTemplate.executeWithoutResult(status -> changeFeedService.recordSeen(chat, reader.getId(), messageId));
+    }
+
+    private ChangeFeedResponse findChanges(User user, Long since) {
+        return changeFeedService.findChanges(since, null, new TestingAuthenticationToken(user.getId(), null));
+    }
+
+    private static List<Long> messageIds(ChangeFeedResponse response) {
+        return response.getChanges().stream().map(ChangeResponse::getMessageId).toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setId(UUID.randomUUID().toString());
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail(user.getId() + "@example.com");
+        return userRepository.save(user);
+    }
+}
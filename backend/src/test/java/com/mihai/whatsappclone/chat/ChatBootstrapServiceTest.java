@@ -0,0 +1,160 @@
+package com.mihai.whatsappclone.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihai.whatsappclone.message.Message;
+import com.mihai.whatsappclone.message.MessageCursor;
+import com.mihai.whatsappclone.message.MessagePageResponse;
+import com.mihai.whatsappclone.message.MessageRepository;
+import com.mihai.whatsappclone.message.MessageResponse;
+import com.mihai.whatsappclone.message.MessageState;
+import com.mihai.whatsappclone.message.MessageType;
+import com.mihai.whatsappclone.user.User;
+import com.mihai.whatsappclone.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the pages and cursors of the inbox bootstrap, assembled from the rows of a single statement.
+ */
+@SpringBootTest
+@Transactional // Every fixture is rolled back after the test.
+class ChatBootstrapServiceTest {
+
+    @Autowired
+    private ChatBootstrapService chatBootstrapService;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void bootstrapHoldsTheNewestPageOfTheMostRecentlyActiveChats() throws IOException {
+        final User viewer = saveUser();
+        final LocalDateTime now = LocalDateTime.now();
+
+        // The most recent chat, with more messages than a page.
+        final Chat recent = saveChat(viewer, saveUser(), now);
+        saveMessage(recent, false, "first");
+        final Message reply = saveMessage(recent, true, "reply");
+        final Message last = saveMessage(recent, false, "last");
+        recent.setSenderLastReadMessageId(last.getId()); // The viewer has read everything addressed to them.
+        recent.setLastMessageId(last.getId());
+
+        // A less recent chat, with a single message.
+        final Chat older = saveChat(saveUser(), viewer, now.minusHours(1));
+        final Message only = saveMessage(older, false, "only");
+
+        // The least recent chat, beyond the number of chats requested.
+        final Chat oldest = saveChat(viewer, saveUser(), now.minusDays(1));
+        saveMessage(oldest, true, "ignored");
+
+        entityManager.flush();
+        entityManager.clear();
+
+        ChatBootstrapResponse bootstrap = writeBootstrap(viewer, 2, 2);
+
+        // The chat list keeps the order of GET /api/v1/chats, only the pages follow the chat activity.
+        assertEquals(Set.of(recent.getId(), older.getId(), oldest.getId()),
+                bootstrap.getChats().stream().map(ChatResponse::getId).collect(Collectors.toSet()));
+        assertEquals(List.of(recent.getId(), older.getId()), List.copyOf(bootstrap.getMessages().keySet()));
+
+        MessagePageResponse recentPage = bootstrap.getMessages().get(recent.getId());
+        assertEquals(List.of(reply.getId(), last.getId()), ids(recentPage));
+        assertTrue(recentPage.isHasOlder(), "The oldest message of the chat is not in the page");
+        assertFalse(recentPage.isHasNewer());
+        assertEquals(MessageCursor.of(recentPage.getMessages().getFirst()).encode(), recentPage.getOlderCursor());
+        assertEquals(MessageCursor.of(recentPage.getMessages().getLast()).encode(), recentPage.getNewerCursor());
+
+        // SEEN is derived from the watermark of the recipient of each message.
+        assertEquals(MessageState.SENT, recentPage.getMessages().get(0).getState(), "The partner has read nothing");
+        assertEquals(MessageState.SEEN, recentPage.getMessages().get(1).getState());
+
+        MessagePageResponse olderPage = bootstrap.getMessages().get(older.getId());
+        assertEquals(List.of(only.getId()), ids(olderPage));
+        assertFalse(olderPage.isHasOlder());
+        assertEquals(olderPage.getOlderCursor(), olderPage.getNewerCursor());
+    }
+
+    @Test
+    void bootstrapWithoutPagesOnlyListsTheChats() throws IOException {
+        final User viewer = saveUser();
+        final Chat chat = saveChat(viewer, saveUser(), LocalDateTime.now());
+        saveMessage(chat, true, "message");
+        entityManager.flush();
+        entityManager.clear();
+
+        ChatBootstrapResponse bootstrap = writeBootstrap(viewer, 0, 2);
+
+        assertEquals(1, bootstrap.getChats().size());
+        assertTrue(bootstrap.getMessages().isEmpty());
+    }
+
+    private ChatBootstrapResponse writeBootstrap(User viewer, int chats, int messages) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        chatBootstrapService.writeBootstrap(viewer.getId(), chats, messages, body);
+        return objectMapper.readValue(body.toByteArray(), ChatBootstrapResponse.class);
+    }
+
+    private Chat saveChat(User sender, User recipient, LocalDateTime lastMessageDate) {
+        Chat chat = new Chat();
+        chat.setSender(sender);
+        chat.setRecipient(recipient);
+        chat.setLastMessagePreview("message");
+        chat.setLastMessageType(MessageType.TEXT);
+        chat.setLastMessageDate(lastMessageDate);
+        return chatRepository.save(chat);
+    }
+
+    /**
+     * Saves a message of a chat, sent by its sender or by its recipient.
+     */
+    private Message saveMessage(Chat chat, boolean fromSender, String content) {
+        Message message = new Message();
+        message.setChat(chat);
+        message.setSenderId(fromSender ? chat.getSender().getId() : chat.getRecipient().getId());
+        message.setRecipientId(fromSender ? chat.getRecipient().getId() : chat.getSender().getId());
+        message.setContent(content);
+        message.setType(MessageType.TEXT);
+        message.setState(MessageState.SENT);
+        return messageRepository.saveAndFlush(message);
+    }
+
+    private static List<Long> ids(MessagePageResponse page) {
+        return page.getMessages().stream().map(MessageResponse::getId).toList();
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setId(UUID.randomUUID().toString());
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail(user.getId() + "@example.com");
+        return userRepository.save(user);
+    }
+}
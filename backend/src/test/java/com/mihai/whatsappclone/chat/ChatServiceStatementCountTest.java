@@ -0,0 +1,93 @@
+package com.mihai.whatsappclone.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihai.whatsappclone.message.MessageType;
+import com.mihai.whatsappclone.metrics.StatementCountingInspector;
+import com.mihai.whatsappclone.user.User;
+import com.mihai.whatsappclone.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that listing the chats of a user issues the same number of SQL statements whatever the number of chats.
+ */
+@SpringBootTest
+@Transactional // Every fixture is rolled back after the test.
+class ChatServiceStatementCountTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void listingChatsIssuesAConstantNumberOfStatements() throws IOException {
+        final int fewChats = countStatementsListingChats(1);
+        final int manyChats = countStatementsListingChats(25);
+
+        assertEquals(1, fewChats);
+        assertEquals(fewChats, manyChats);
+    }
+
+    /**
+     * Creates a user with the given number of chats, then counts the statements issued to list them.
+     *
+     * @param chatCount The number of chats of the user.
+     * @return The number of statements prepared while listing the chats.
+     */
+    private int countStatementsListingChats(int chatCount) throws IOException {
+        final User viewer = saveUser();
+        for (int i = 0; i < chatCount; i++) {
+            Chat chat = new Chat();
+            // Alternate the role of the viewer, both sides of the chat must be resolved by the query.
+            chat.setSender(i % 2 == 0 ? viewer : saveUser());
+            chat.setRecipient(chat.getSender() == viewer ? saveUser() : viewer);
+            chat.setLastMessagePreview("message " + i);
+            chat.setLastMessageType(i % 3 == 0 ? MessageType.IMAGE : MessageType.TEXT);
+            chat.setLastMessageDate(LocalDateTime.now());
+            chat.setRecipientUnreadCount(i);
+            chatRepository.save(chat);
+        }
+
+        // Start from an empty persistence context so nothing is served from the first-level cache.
+        entityManager.flush();
+        entityManager.clear();
+
+        StatementCountingInspector.start();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        chatService.writeChatsByReceiverId(viewer.getId(), body);
+        int statements = StatementCountingInspector.stop();
+
+        assertEquals(chatCount, objectMapper.readValue(body.toByteArray(), ChatResponse[].class).length);
+        return statements;
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setId(UUID.randomUUID().toString());
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail(user.getId() + "@example.com");
+        return userRepository.save(user);
+    }
+}
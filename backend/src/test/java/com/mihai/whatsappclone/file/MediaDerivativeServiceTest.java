@@ -0,0 +1,73 @@
+package com.mihai.whatsappclone.file;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Verifies the sizes of the renditions generated for an uploaded image.
+ */
+class MediaDerivativeServiceTest {
+
+    private final MediaDerivativeService service = new MediaDerivativeService(new SimpleMeterRegistry(), 128, 32, 8, 1);
+
+    @TempDir
+    private Path folder;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void tallImageIsBoundedByItsHeight() throws Exception {
+        final Path original = writeImage(64, 2048);
+
+        assertNotNull(service.generateDerivatives(original.toString(), "image/png").get(10, TimeUnit.SECONDS));
+
+        assertSize(original, MediaVariant.DISPLAY, 4, 128);
+        assertSize(original, MediaVariant.PREVIEW, 1, 32);
+        assertSize(original, MediaVariant.PLACEHOLDER, 1, 8);
+    }
+
+    @Test
+    void wideImageIsBoundedByItsWidth() throws Exception {
+        final Path original = writeImage(1000, 500);
+
+        service.generateDerivatives(original.toString(), "image/png").get(10, TimeUnit.SECONDS);
+
+        assertSize(original, MediaVariant.DISPLAY, 128, 64);
+        assertSize(original, MediaVariant.PREVIEW, 32, 16);
+    }
+
+    @Test
+    void smallImageKeepsItsSize() throws Exception {
+        final Path original = writeImage(20, 10);
+
+        service.generateDerivatives(original.toString(), "image/png").get(10, TimeUnit.SECONDS);
+
+        assertSize(original, MediaVariant.DISPLAY, 20, 10);
+        assertSize(original, MediaVariant.PLACEHOLDER, 8, 4);
+    }
+
+    private Path writeImage(int width, int height) throws IOException {
+        Path file = folder.resolve("image-" + width + "x" + height);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+
+    private static void assertSize(Path original, MediaVariant variant, int width, int height) throws IOException {
+        BufferedImage rendition = ImageIO.read(variant.resolve(original).toFile());
+        assertEquals(width + "x" + height, rendition.getWidth() + "x" + rendition.getHeight(), variant.name());
+    }
+}
@@ -0,0 +1,77 @@
+package com.mihai.whatsappclone.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the encoding of the keyset positions handed to clients to continue reading a chat's history.
+ */
+class MessageCursorTest {
+
+    private static final LocalDateTime CREATED_DATE = LocalDateTime.of(2025, 1, 15, 10, 30, 45, 123456000);
+
+    @Test
+    void decodingAnEncodedCursorReturnsTheSamePosition() {
+        MessageCursor cursor = new MessageCursor(CREATED_DATE, 42L);
+
+        assertEquals(cursor, MessageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodingKeepsTheFullPrecisionOfTheDate() {
+        // Dropping the fraction of a second would skip or repeat the messages of the same second.
+        MessageCursor wholeSecond = new MessageCursor(CREATED_DATE.withNano(0), 7L);
+        MessageCursor nanos = new MessageCursor(CREATED_DATE.withNano(1), 7L);
+
+        assertEquals(wholeSecond, MessageCursor.decode(wholeSecond.encode()));
+        assertEquals(nanos, MessageCursor.decode(nanos.encode()));
+    }
+
+    @Test
+    void messagesCreatedAtTheSameDateHaveDistinctCursors() {
+        MessageCursor first = new MessageCursor(CREATED_DATE, 1L);
+        MessageCursor second = new MessageCursor(CREATED_DATE, 2L);
+
+        assertNotEquals(first.encode(), second.encode());
+        assertEquals(2L, MessageCursor.decode(second.encode()).id());
+    }
+
+    @Test
+    void cursorsOfAMessageAndOfItsResponsePointAtTheSamePosition() {
+        Message message = new Message();
+        message.setId(42L);
+        message.setCreatedDate(CREATED_DATE);
+        MessageResponse response = MessageResponse.builder().id(42L).createdAt(CREATED_DATE).build();
+
+        assertEquals(MessageCursor.of(message), MessageCursor.of(response));
+        assertEquals(MessageCursor.of(message).encode(), MessageCursor.of(response).encode());
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        final String token = new MessageCursor(CREATED_DATE, Long.MAX_VALUE).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode(encode("no separator")));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode(encode("yesterday|42")));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode(encode(CREATED_DATE + "|forty-two")));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode(""));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
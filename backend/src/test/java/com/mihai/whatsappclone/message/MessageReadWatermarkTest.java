@@ -0,0 +1,151 @@
+package com.mihai.whatsappclone.message;
+
+import com.mihai.whatsappclone.chat.Chat;
+import com.mihai.whatsappclone.chat.ChatRepository;
+import com.mihai.whatsappclone.user.User;
+import com.mihai.whatsappclone.user.UserRepository;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that a read watermark only covers the messages committed before it, whatever the order in which
+ * concurrent senders are scheduled.
+ */
+@SpringBootTest
+class MessageReadWatermarkTest {
+
+    private static final String FIRST_SENDER_THREAD = "first-sender";
+
+    // Latches holding the first send, shared with the repository interceptor.
+    private static volatile CountDownLatch firstSaved;
+    private static volatile CountDownLatch releaseFirst;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void messageCommittedAfterTheChatWasReadStaysUnread() throws Exception {
+        final User sender = saveUser();
+        final User reader = saveUser();
+        Chat chat = new Chat();
+        chat.setSender(sender);
+        chat.setRecipient(reader);
+        chat = chatRepository.save(chat);
+        final String chatId = chat.getId();
+
+        // The first send is held after its message is saved, before the chat summary is updated.
+        firstSaved = new CountDownLatch(1);
+        releaseFirst = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = run(FIRST_SENDER_THREAD, () -> messageService.saveMessage(request(chatId, sender, reader, "first")));
+        assertTrue(firstSaved.await(10, TimeUnit.SECONDS));
+
+        // A second send and a read of the chat, which must not overtake the first send.
+        CompletableFuture<Void> second = run("second-sender", () -> messageService.saveMessage(request(chatId, sender, reader, "second")));
+        awaitQuietly(second);
+        CompletableFuture<Void> read = run("reader", () -> messageService.setMessagesToSeen(chatId, new TestingAuthenticationToken(reader.getId(), null)));
+        awaitQuietly(read);
+
+        releaseFirst.countDown();
+        CompletableFuture.allOf(first, second, read).get(10, TimeUnit.SECONDS);
+
+        // Every message up to the watermark is read, every message past it is counted as unread.
+        final Chat saved = chatRepository.findById(chatId).orElseThrow();
+        final Long watermark = saved.getRecipientLastReadMessageId();
+        final List<Message> messages = messageRepository.findLatestMessagesByChatId(chatId, PageRequest.of(0, 10));
+        final long unread = messages.stream().filter(m -> watermark == null || m.getId() > watermark).count();
+        assertEquals(2, messages.size());
+        assertEquals(unread, saved.getRecipientUnreadCount(), "Messages past the watermark of " + watermark);
+    }
+
+    /**
+     * Holds the first sender when it updates the chat summary, once its message is saved.
+     */
+    @TestConfiguration
+    static class HeldSendConfiguration {
+
+        @Bean
+        static BeanPostProcessor holdFirstSend() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                    if (!(bean instanceof ChatRepository)) {
+                        return bean;
+                    }
+                    ProxyFactory proxyFactory = new ProxyFactory(bean);
+                    proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                        if (invocation.getMethod().getName().equals("recordLastMessage")
+                                && Thread.currentThread().getName().equals(FIRST_SENDER_THREAD)) {
+                            firstSaved.countDown();
+                            assertTrue(releaseFirst.await(10, TimeUnit.SECONDS));
+                        }
+                        return invocation.proceed();
+                    });
+                    return proxyFactory.getProxy();
+                }
+            };
+        }
+    }
+
+    /**
+     * Waits a moment for a task expected to be blocked by the held send.
+     */
+    private static void awaitQuietly(CompletableFuture<Void> task) throws Exception {
+        try {
+            task.get(2, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // Blocked until the first send is committed.
+        }
+    }
+
+    private static CompletableFuture<Void> run(String threadName, Runnable task) {
+        return CompletableFuture.runAsync(task, runnable -> Thread.ofPlatform().name(threadName).start(runnable));
+    }
+
+    private static MessageRequest request(String chatId, User sender, User recipient, String content) {
+        return MessageRequest.builder()
+                .chatId(chatId)
+                .senderId(sender.getId())
+                .recipientId(recipient.getId())
+                .content(content)
+                .type(MessageType.TEXT)
+                .build();
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setId(UUID.randomUUID().toString());
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail(user.getId() + "@example.com");
+        return userRepository.save(user);
+    }
+}
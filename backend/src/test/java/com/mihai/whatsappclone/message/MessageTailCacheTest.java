@@ -0,0 +1,61 @@
+package com.mihai.whatsappclone.message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Verifies when a tail read from the database is stored in the cache.
+ */
+class MessageTailCacheTest {
+
+    private static final String CHAT_ID = "chat";
+
+    private final MessageTailCache cache = new MessageTailCache(new SimpleMeterRegistry(), 50, 1 << 20, 60_000);
+
+    @Test
+    void tailIsReadOnceThenServedFromTheCache() {
+        final AtomicInteger loads = new AtomicInteger();
+        final MessageTail tail = MessageTail.of(List.of(), true, Map.of());
+
+        assertSame(tail, cache.get(CHAT_ID, id -> {
+            loads.incrementAndGet();
+            return tail;
+        }));
+        assertSame(tail, cache.get(CHAT_ID, id -> {
+            loads.incrementAndGet();
+            return MessageTail.of(List.of(), true, Map.of());
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void tailReadWhileAWriteIsAppliedIsNotStored() {
+        final MessageTail tail = MessageTail.of(List.of(), true, Map.of());
+
+        // The read started before the watermark moved, so the tail may miss it.
+        final MessageTail returned = cache.get(CHAT_ID, id -> {
+            cache.markSeen(CHAT_ID, "reader", 42L);
+            return tail;
+        });
+
+        assertSame(tail, returned, "The request is still answered with what it read");
+        assertNull(cache.getIfPresent(CHAT_ID));
+    }
+
+    @Test
+    void writeAppliedAfterTheTailIsStoredUpdatesIt() {
+        cache.get(CHAT_ID, id -> MessageTail.of(List.of(), true, Map.of()));
+
+        cache.markSeen(CHAT_ID, "reader", 42L);
+
+        assertEquals(42L, cache.getIfPresent(CHAT_ID).lastReadMessageIds().get("reader"));
+    }
+}
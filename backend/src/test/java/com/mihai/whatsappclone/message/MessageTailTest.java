@@ -0,0 +1,143 @@
+package com.mihai.whatsappclone.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies how the cached tail of a chat follows the writes applied to it.
+ */
+class MessageTailTest {
+
+    private static final String ALICE = "alice";
+    private static final String BOB = "bob";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 15, 10, 0);
+
+    @Test
+    void addedMessagesAreKeptInHistoryOrder() {
+        MessageTail tail = MessageTail.of(List.of(message(1, ALICE, 0), message(3, BOB, 2)), true, Map.of());
+
+        MessageTail updated = tail.withMessages(List.of(message(2, BOB, 1), message(4, ALICE, 3)), 10);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(updated));
+        assertTrue(updated.complete());
+    }
+
+    @Test
+    void messagesAlreadyInTheTailAreIgnored() {
+        MessageTail tail = MessageTail.of(List.of(message(1, ALICE, 0)), true, Map.of());
+
+        MessageTail updated = tail.withMessages(List.of(message(1, ALICE, 0), message(2, BOB, 1)), 10);
+
+        assertEquals(List.of(1L, 2L), ids(updated));
+    }
+
+    @Test
+    void oldestMessagesAreDroppedBeyondTheCapacity() {
+        MessageTail tail = MessageTail.of(List.of(message(1, ALICE, 0), message(2, BOB, 1)), true, Map.of());
+
+        MessageTail updated = tail.withMessages(List.of(message(3, ALICE, 2)), 2);
+
+        assertEquals(List.of(2L, 3L), ids(updated));
+        assertFalse(updated.complete(), "Dropped messages are only in the database");
+    }
+
+    @Test
+    void addedMessageCoveredByTheWatermarkOfItsRecipientIsSeen() {
+        // Bob has read up to message 5, for instance from another device, before message 4 reached the tail.
+        MessageTail tail = MessageTail.of(List.of(), true, Map.of(BOB, 5L));
+
+        MessageTail updated = tail.withMessages(List.of(message(4, BOB, 0), message(6, BOB, 1), message(3, ALICE, 2)), 10);
+
+        assertEquals(MessageState.SEEN, state(updated, 4));
+        assertEquals(MessageState.SENT, state(updated, 6));
+        assertEquals(MessageState.SENT, state(updated, 3), "Only the watermark of the recipient applies");
+    }
+
+    @Test
+    void addedMessagesAreRoundedToTheStoredPrecision() {
+        MessageTail tail = MessageTail.of(List.of(), true, Map.of());
+        MessageResponse message = message(1, BOB, 0).toBuilder().createdAt(START.withNano(123_456_789)).build();
+
+        MessageTail updated = tail.withMessages(List.of(message), 10);
+
+        assertEquals(START.withNano(123_457_000), updated.messages().getFirst().getCreatedAt());
+    }
+
+    @Test
+    void readerWatermarkMarksTheMessagesAddressedToThemAsSeen() {
+        MessageTail tail = MessageTail.of(
+                List.of(message(1, BOB, 0), message(2, ALICE, 1), message(3, BOB, 2), message(4, BOB, 3)), true, Map.of());
+
+        MessageTail updated = tail.withSeen(BOB, 3L);
+
+        assertEquals(MessageState.SEEN, state(updated, 1));
+        assertEquals(MessageState.SENT, state(updated, 2), "Messages sent by the reader keep their state");
+        assertEquals(MessageState.SEEN, state(updated, 3));
+        assertEquals(MessageState.SENT, state(updated, 4));
+        assertEquals(3L, updated.lastReadMessageIds().get(BOB));
+    }
+
+    @Test
+    void readerWatermarkNeverMovesBack() {
+        MessageTail tail = MessageTail.of(List.of(message(1, BOB, 0)), true, Map.of(BOB, 5L));
+
+        MessageTail updated = tail.withSeen(BOB, 2L);
+
+        assertEquals(5L, updated.lastReadMessageIds().get(BOB));
+    }
+
+    @Test
+    void unchangedMessagesAreShared() {
+        MessageResponse unread = message(2, BOB, 1);
+        MessageTail tail = MessageTail.of(List.of(message(1, BOB, 0), unread), true, Map.of());
+
+        MessageTail updated = tail.withSeen(BOB, 1L);
+
+        assertSame(unread, updated.messages().get(1));
+    }
+
+    @Test
+    void hasOlderWhenThePageLeavesMessagesOfTheTail() {
+        MessageTail tail = MessageTail.of(List.of(message(1, ALICE, 0), message(2, BOB, 1), message(3, ALICE, 2)), true, Map.of());
+
+        assertTrue(tail.hasOlder(2));
+        assertFalse(tail.hasOlder(3));
+        assertEquals(List.of(2L, 3L), tail.latest(2).stream().map(MessageResponse::getId).toList());
+    }
+
+    @Test
+    void hasOlderWhenTheTailIsIncomplete() {
+        MessageTail tail = MessageTail.of(List.of(message(5, ALICE, 0)), false, Map.of());
+
+        assertTrue(tail.hasOlder(1));
+        assertTrue(tail.hasOlder(10));
+    }
+
+    private static MessageResponse message(long id, String recipientId, int minutes) {
+        return MessageResponse.builder()
+                .id(id)
+                .content("Message " + id)
+                .type(MessageType.TEXT)
+                .state(MessageState.SENT)
+                .senderId(ALICE.equals(recipientId) ? BOB : ALICE)
+                .recipientId(recipientId)
+                .createdAt(START.plusMinutes(minutes))
+                .build();
+    }
+
+    private static List<Long> ids(MessageTail tail) {
+        return tail.messages().stream().map(MessageResponse::getId).toList();
+    }
+
+    private static MessageState state(MessageTail tail, long id) {
+        return tail.messages().stream().filter(m -> m.getId() == id).findFirst().orElseThrow().getState();
+    }
+}
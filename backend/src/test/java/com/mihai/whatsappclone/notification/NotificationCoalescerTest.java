@@ -0,0 +1,169 @@
+package com.mihai.whatsappclone.notification;
+
+import com.mihai.whatsappclone.websocket.NegotiatedPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies how the notifications of a user are gathered into frames, and when their deliveries complete.
+ */
+class NotificationCoalescerTest {
+
+    private static final String USER_ID = "user";
+    private static final long LONG_WINDOW = 60_000; // Batches are only sent once full.
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private NotificationCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+    }
+
+    @Test
+    void seenNotificationSupersedesTheEarlierSeenOfTheSameChat() {
+        coalescer = coalescer(LONG_WINDOW, 3);
+        Notification message = notification(NotificationType.MESSAGE, "chat", 2L);
+        Notification latestSeen = notification(NotificationType.SEEN, "chat", 3L);
+
+        CompletableFuture<Void> supersededDelivery = coalescer.add(USER_ID, notification(NotificationType.SEEN, "chat", 1L));
+        coalescer.add(USER_ID, message);
+        coalescer.add(USER_ID, latestSeen);
+
+        assertEquals(List.of(message, latestSeen), sentPayload());
+        assertTrue(supersededDelivery.isDone(), "A superseded notification is delivered by the later one");
+    }
+
+    @Test
+    void seenNotificationsOfOtherChatsAreKept() {
+        coalescer = coalescer(LONG_WINDOW, 3);
+        Notification otherChat = notification(NotificationType.SEEN, "other", 1L);
+        Notification latestSeen = notification(NotificationType.SEEN, "chat", 2L);
+
+        coalescer.add(USER_ID, notification(NotificationType.SEEN, "chat", 1L));
+        coalescer.add(USER_ID, otherChat);
+        coalescer.add(USER_ID, latestSeen);
+
+        assertEquals(List.of(otherChat, latestSeen), sentPayload());
+    }
+
+    @Test
+    void batchIsSentWhenTheWindowElapses() throws Exception {
+        coalescer = coalescer(10, 50);
+        Notification first = notification(NotificationType.MESSAGE, "chat", 1L);
+        Notification second = notification(NotificationType.MESSAGE, "chat", 2L);
+
+        coalescer.add(USER_ID, first);
+        coalescer.add(USER_ID, second).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(first, second), sentPayload());
+    }
+
+    @Test
+    void notificationIsSentAloneWithoutWindow() {
+        coalescer = coalescer(0, 50);
+        Notification notification = notification(NotificationType.MESSAGE, "chat", 1L);
+
+        CompletableFuture<Void> delivery = coalescer.add(USER_ID, notification);
+
+        assertSame(notification, sentPayload());
+        assertTrue(delivery.isDone());
+    }
+
+    @Test
+    void failedSendCompletesTheDeliveriesExceptionally() {
+        coalescer = coalescer(LONG_WINDOW, 2);
+        doThrow(new MessageDeliveryException("Broker unavailable"))
+                .when(messagingTemplate).convertAndSendToUser(eq(USER_ID), any(), any(Object.class));
+
+        CompletableFuture<Void> first = coalescer.add(USER_ID, notification(NotificationType.MESSAGE, "chat", 1L));
+        assertFalse(first.isDone(), "The batch is not full yet");
+        CompletableFuture<Void> second = coalescer.add(USER_ID, notification(NotificationType.MESSAGE, "chat", 2L));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+    }
+
+    @Test
+    void concurrentNotificationsNeverExceedTheMaximumBatchSize() throws Exception {
+        coalescer = coalescer(LONG_WINDOW, 5);
+        final int senders = 8;
+        final int notificationsPerSender = 50;
+
+        List<CompletableFuture<Void>> adders = new ArrayList<>();
+        for (int sender = 0; sender < senders; sender++) {
+            final String chatId = "chat-" + sender;
+            adders.add(CompletableFuture.runAsync(() -> {
+                for (long id = 0; id < notificationsPerSender; id++) {
+                    coalescer.add(USER_ID, notification(NotificationType.MESSAGE, chatId, id));
+                }
+            }));
+        }
+        CompletableFuture.allOf(adders.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // Every frame is full, and the notifications of each sender keep their order across the frames.
+        List<Notification> sent = new ArrayList<>();
+        for (Object payload : sentPayloads(senders * notificationsPerSender / 5)) {
+            List<?> frame = assertInstanceOf(List.class, payload);
+            assertEquals(5, frame.size());
+            frame.forEach(notification -> sent.add((Notification) notification));
+        }
+        assertEquals(senders * notificationsPerSender, sent.size());
+        for (int sender = 0; sender < senders; sender++) {
+            final String chatId = "chat-" + sender;
+            List<Long> ids = sent.stream().filter(n -> n.getChatId().equals(chatId)).map(Notification::getMessageId).toList();
+            assertEquals(LongStream.range(0, notificationsPerSender).boxed().toList(), ids);
+        }
+    }
+
+    private NotificationCoalescer coalescer(long windowMillis, int maxBatchSize) {
+        return new NotificationCoalescer(messagingTemplate, new MockEnvironment(), new SimpleMeterRegistry(),
+                windowMillis, maxBatchSize, 2);
+    }
+
+    /**
+     * Returns the values of the frames sent to the user, in order.
+     */
+    private List<Object> sentPayloads(int frames) {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(frames)).convertAndSendToUser(eq(USER_ID), eq("/chat"), payload.capture());
+        return payload.getAllValues().stream().map(value -> ((NegotiatedPayload) value).getValue()).toList();
+    }
+
+    /**
+     * Returns the value of the only frame sent to the user.
+     */
+    private Object sentPayload() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, timeout(5000)).convertAndSendToUser(eq(USER_ID), eq("/chat"), payload.capture());
+        return ((NegotiatedPayload) payload.getValue()).getValue();
+    }
+
+    private static Notification notification(NotificationType type, String chatId, Long messageId) {
+        return Notification.builder().type(type).chatId(chatId).messageId(messageId).build();
+    }
+}
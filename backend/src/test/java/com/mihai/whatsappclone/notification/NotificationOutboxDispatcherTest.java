@@ -0,0 +1,179 @@
+package com.mihai.whatsappclone.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the order in which the notifications of the outbox are delivered, and how failed or leased
+ * notifications hold back the later ones of their recipient.
+ */
+@SpringBootTest
+class NotificationOutboxDispatcherTest {
+
+    private static final int BATCH_SIZE = 2;
+    private static final long RETRY_DELAY = 60_000; // Retries are only due once the test moves them.
+
+    private static final String INSERT_NOTIFICATION =
+            "INSERT INTO notification_outbox (recipient_id, payload, attempts, next_attempt_at, created_date) VALUES (?, ?, 0, now(), now())";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final List<String> recipients = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        recipients.forEach(recipientId -> jdbcTemplate.update("DELETE FROM notification_outbox WHERE recipient_id = ?", recipientId));
+    }
+
+    @Test
+    void notificationsOfARecipientAreSentInOrderAcrossBatches() throws Exception {
+        final String first = recipient();
+        final String second = recipient();
+        enqueue(first, 1L);
+        enqueue(second, 1L);
+        enqueue(first, 2L);
+        enqueue(first, 3L);
+        when(notificationService.sendNotification(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        drain();
+
+        assertEquals(List.of(1L, 2L, 3L), sentMessageIds(first));
+        assertEquals(List.of(1L), sentMessageIds(second));
+        assertTrue(outbox(first).isEmpty());
+        assertTrue(outbox(second).isEmpty());
+    }
+
+    @Test
+    void failedNotificationHoldsBackTheLaterOnesUntilItIsRetried() throws Exception {
+        final String recipientId = recipient();
+        enqueue(recipientId, 1L);
+        enqueue(recipientId, 2L);
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        when(notificationService.sendNotification(eq(recipientId), any())).thenAnswer(invocation -> {
+            Notification notification = invocation.getArgument(1);
+            return notification.getMessageId() == 1L && failing.getAndSet(false)
+                    ? CompletableFuture.failedFuture(new MessageDeliveryException("Broker unavailable"))
+                    : CompletableFuture.completedFuture(null);
+        });
+
+        drain();
+
+        // The failed notification waits for its retry, the later one is released without counting an attempt.
+        List<Map<String, Object>> rows = outbox(recipientId);
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).get("attempts"));
+        assertTrue((Boolean) rows.get(0).get("retry_pending"));
+        assertEquals(0, rows.get(1).get("attempts"));
+        rows.forEach(row -> assertNull(row.get("locked_until")));
+
+        // Nothing is sent to the recipient before the retry is due.
+        drain();
+        assertEquals(List.of(1L, 2L), sentMessageIds(recipientId));
+
+        jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = now() WHERE recipient_id = ?", recipientId);
+        drain();
+
+        // Both notifications are sent again, the failed one first.
+        assertEquals(List.of(1L, 2L, 1L, 2L), sentMessageIds(recipientId));
+        assertTrue(outbox(recipientId).isEmpty());
+    }
+
+    @Test
+    void leasedNotificationHoldsBackItsRecipientUntilTheLeaseExpires() throws Exception {
+        final String leased = recipient();
+        final String other = recipient();
+        enqueue(leased, 1L);
+        enqueue(leased, 2L);
+        enqueue(other, 1L);
+        when(notificationService.sendNotification(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // The first notification is being delivered by another node.
+        jdbcTemplate.update("UPDATE notification_outbox SET locked_until = now() + interval '1 hour' WHERE id = ?",
+                outbox(leased).getFirst().get("id"));
+        drain();
+
+        assertEquals(List.of(1L), sentMessageIds(other));
+        assertEquals(2, outbox(leased).size());
+
+        // The node stopped before acknowledging it, the notification is claimed again once its lease expires.
+        jdbcTemplate.update("UPDATE notification_outbox SET locked_until = now() - interval '1 second' WHERE recipient_id = ?", leased);
+        drain();
+
+        assertEquals(List.of(1L, 2L), sentMessageIds(leased));
+        assertTrue(outbox(leased).isEmpty());
+    }
+
+    /**
+     * Runs one drain of the outbox with a dispatcher of its own, and waits for it.
+     */
+    private void drain() throws InterruptedException {
+        NotificationOutboxDispatcher dispatcher = new NotificationOutboxDispatcher(notificationService, jdbcTemplate,
+                transactionTemplate, objectMapper, new MockEnvironment(), BATCH_SIZE, 10, RETRY_DELAY, 30_000);
+        dispatcher.wake();
+        dispatcher.stop();
+    }
+
+    private String recipient() {
+        String recipientId = UUID.randomUUID().toString();
+        recipients.add(recipientId);
+        return recipientId;
+    }
+
+    private void enqueue(String recipientId, Long messageId) throws Exception {
+        Notification notification = Notification.builder()
+                .type(NotificationType.MESSAGE)
+                .chatId("chat")
+                .messageId(messageId)
+                .recipientId(recipientId)
+                .build();
+        jdbcTemplate.update(INSERT_NOTIFICATION, recipientId, objectMapper.writeValueAsString(notification));
+    }
+
+    /**
+     * Returns the IDs of the messages of the notifications sent to a recipient, in the order they were sent.
+     */
+    private List<Long> sentMessageIds(String recipientId) {
+        ArgumentCaptor<Notification> sent = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationService, atLeast(0)).sendNotification(eq(recipientId), sent.capture());
+        return sent.getAllValues().stream().map(Notification::getMessageId).toList();
+    }
+
+    private List<Map<String, Object>> outbox(String recipientId) {
+        return jdbcTemplate.queryForList(
+                "SELECT id, attempts, locked_until, next_attempt_at > now() AS retry_pending FROM notification_outbox WHERE recipient_id = ? ORDER BY id",
+                recipientId);
+    }
+}
@@ -0,0 +1,53 @@
+package com.mihai.whatsappclone.presence;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.security.Principal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies how the frames of a session keep its user online.
+ */
+class PresenceServiceTest {
+
+    private static final String SESSION_ID = "session";
+    private static final Principal USER = () -> "user";
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final PresenceService presenceService = new PresenceService(eventPublisher, 60_000);
+
+    @Test
+    void unknownSessionOfAnAuthenticatedUserIsRegisteredAgain() {
+        // The session was expired while idle, and sends a frame again without reconnecting.
+        presenceService.touch(SESSION_ID, USER);
+
+        assertTrue(presenceService.isOnline(USER.getName()));
+        assertEquals(1, presenceService.getSessionCount());
+        verify(eventPublisher).publishEvent(new PresenceChangedEvent(USER.getName(), true));
+    }
+
+    @Test
+    void knownSessionIsOnlyTouched() {
+        presenceService.touch(SESSION_ID, USER);
+        presenceService.touch(SESSION_ID, USER);
+
+        assertEquals(1, presenceService.getSessionCount());
+        verify(eventPublisher).publishEvent(any(PresenceChangedEvent.class));
+    }
+
+    @Test
+    void unknownSessionWithoutUserIsIgnored() {
+        presenceService.touch(SESSION_ID, null);
+
+        assertFalse(presenceService.isOnline(USER.getName()));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+}
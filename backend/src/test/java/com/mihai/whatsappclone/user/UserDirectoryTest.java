@@ -0,0 +1,64 @@
+package com.mihai.whatsappclone.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the pages of a directory search follow one another, in name order.
+ */
+class UserDirectoryTest {
+
+    private final UserDirectory directory = new UserDirectory(null); // The index is filled without loading users.
+
+    @Test
+    void pagesOfPrefixMatchesFollowTheNameOrder() {
+        // The order of the matched terms is the reverse of the order of the names.
+        directory.index(user("e", "Eve", "Smaa"));
+        directory.index(user("d", "Dan", "Smab"));
+        directory.index(user("c", "Cat", "Smac"));
+        directory.index(user("b", "Bob", "Smad"));
+        directory.index(user("a", "Ann", "Smae"));
+        directory.index(user("searcher", "Sam", "Smaf"));
+
+        UserDirectory.DirectoryPage first = directory.search("sma", "searcher", 0, 2);
+        UserDirectory.DirectoryPage second = directory.search("sma", "searcher", 2, 2);
+        UserDirectory.DirectoryPage last = directory.search("sma", "searcher", 4, 2);
+
+        assertEquals(List.of("a", "b"), first.userIds());
+        assertTrue(first.hasMore());
+        assertEquals(List.of("c", "d"), second.userIds());
+        assertTrue(second.hasMore());
+        assertEquals(List.of("e"), last.userIds());
+        assertFalse(last.hasMore());
+    }
+
+    @Test
+    void pagesOfSimilarMatchesDoNotRepeatUsers() {
+        for (int i = 0; i < 10; i++) {
+            directory.index(user("user-" + i, "Jonathan", "Doe"));
+        }
+
+        List<String> paged = new ArrayList<>();
+        for (int offset = 0; offset < 10; offset += 3) {
+            paged.addAll(directory.search("jonahtan", null, offset, 3).userIds());
+        }
+
+        assertEquals(directory.search("jonahtan", null, 0, 10).userIds(), paged);
+        assertEquals(10, paged.stream().distinct().count());
+    }
+
+    private static User user(String id, String firstName, String lastName) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(id + "@example.com");
+        return user;
+    }
+}
@@ -21,9 +21,15 @@ export class ChatListComponent {
   // Flag to indicate whether the user is searching for a new contact.
   searchNewContact = false;
 
-  // Array to hold the list of all users (contacts).
+  // Array to hold the pages of users (contacts) loaded so far.
   contacts: Array<UserResponse> = [];
 
+  // Index of the last page of contacts loaded.
+  contactsPage = 0;
+
+  // Flag to indicate whether more contacts can be loaded.
+  hasMoreContacts = false;
+
   // Output signal to emit the selected chat when a user selects or clicks on a chat.
   chatSelected = output<ChatResponse>();
 
@@ -35,18 +41,34 @@ export class ChatListComponent {
   ) {}
 
   /**
-   * Retrieves all users (contacts) from the server to display for new chat creation.
+   * Retrieves the first page of users (contacts) from the server to display for new chat creation.
    */
   searchContact() {
-    this.userService.getAllUsers() // Call the user service to fetch all users.
+    this.userService.getUsers({page: 0}) // Call the user service to fetch the first page of users.
       .subscribe({
-        next: (users) => {
-          this.contacts = users; // Assign fetched users to the `contacts` array.
+        next: (usersPage) => {
+          this.contacts = usersPage.users ?? []; // Assign fetched users to the `contacts` array.
+          this.contactsPage = 0;
+          this.hasMoreContacts = !!usersPage.hasMore;
           this.searchNewContact = true; // Show the contact search UI.
         }
       });
   }
 
+  /**
+   * Appends the next page of users (contacts) to the list.
+   */
+  loadMoreContacts() {
+    this.userService.getUsers({page: this.contactsPage + 1})
+      .subscribe({
+        next: (usersPage) => {
+          this.contacts = [...this.contacts, ...(usersPage.users ?? [])]; // Append the fetched users.
+          this.contactsPage = usersPage.page ?? this.contactsPage + 1;
+          this.hasMoreContacts = !!usersPage.hasMore;
+        }
+      });
+  }
+
   /**
    * Handles the selection of a contact and creates a new chat between the current user and the selected contact.
    *
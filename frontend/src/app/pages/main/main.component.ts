@@ -6,8 +6,9 @@ import { KeycloakService } from '../../utils/keycloak/keycloak.service';
 import { MessageResponse } from '../../services/models/message-response';
 import { MessageRequest } from '../../services/models/message-request';
 import { Notification } from './models/notification';
+import { AuthenticatedMediaPipe } from '../../utils/media/authenticated-media.pipe';
 
-import { DatePipe } from '@angular/common';
+import { AsyncPipe, DatePipe } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { PickerComponent } from '@ctrl/ngx-emoji-mart';
 import { EmojiData } from '@ctrl/ngx-emoji-mart/ngx-emoji';
@@ -18,6 +19,8 @@ import * as Stomp from "stompjs";
   selector: 'app-main',
   imports: [
     ChatListComponent, // Chat list component for displaying chats
+    AsyncPipe,         // Resolves the media loaded asynchronously
+    AuthenticatedMediaPipe, // Loads media with the user's token
     DatePipe,          // Used for date formatting
     FormsModule,       // Enables template-driven forms
     PickerComponent    // Emoji picker component
@@ -148,33 +151,18 @@ export class MainComponent implements OnInit, OnDestroy, AfterViewChecked {
   uploadMedia(target: EventTarget | null) {
     const file = this.extractFileFromTarget(target); // Extract file from input
     if (file !== null) {
-      const reader = new FileReader();
-      reader.onload = () => {
-        if (reader.result) {
-          const mediaLines = reader.result.toString().split(',')[1];
-
-          // Upload media via service
-          this.messageService.uploadMedia({
-            'chat-id': this.selectedChat.id as string,
-            body: { file: file }
-          }).subscribe({
-            next: () => {
-              // Add media message to chat messages
-              const message: MessageResponse = {
-                senderId: this.getSenderId(),
-                recipientId: this.getReceiverId(),
-                content: 'Attachment',
-                type: 'IMAGE',
-                state: 'SENT',
-                media: [mediaLines],
-                createdAt: new Date().toString()
-              };
-              this.chatMessages.push(message);
-            }
-          });
+      const chatId = this.selectedChat.id as string;
+
+      // Upload media via service
+      this.messageService.uploadMedia({
+        'chat-id': chatId,
+        body: { file: file }
+      }).subscribe({
+        next: () => {
+          // Reload the chat messages, the server assigns the URL of the uploaded media
+          this.getAllChatMessages(chatId);
         }
-      };
-      reader.readAsDataURL(file);
+      });
     }
   }
 
@@ -218,7 +206,7 @@ export class MainComponent implements OnInit, OnDestroy, AfterViewChecked {
     if (this.keycloakService.keycloak.tokenParsed?.sub) {
       let ws = new SockJS('http://localhost:8080/ws'); // WebSocket server URL
       this.socketClient = Stomp.over(ws);
-      const subUrl = `/user/${this.keycloakService.keycloak.tokenParsed?.sub}/chat`;
+      const subUrl = '/users/chat';
 
       // Connect to WebSocket with token
       this.socketClient.connect(
@@ -226,8 +214,10 @@ export class MainComponent implements OnInit, OnDestroy, AfterViewChecked {
         () => {
           // Subscribe to notifications
           this.notificationSubscription = this.socketClient.subscribe(subUrl, (message: any) => {
-            const notification: Notification = JSON.parse(message.body);
-            this.handleNotification(notification); // Handle notifications
+            // Notifications sent together arrive as an array, in the order they were sent
+            const payload: Notification | Notification[] = JSON.parse(message.body);
+            const notifications = Array.isArray(payload) ? payload : [payload];
+            notifications.forEach(notification => this.handleNotification(notification)); // Handle notifications
           });
         },
         () => console.error('Error while connecting to webSocket')
@@ -249,7 +239,7 @@ export class MainComponent implements OnInit, OnDestroy, AfterViewChecked {
             recipientId: notification.receiverId,
             content: notification.content,
             type: notification.messageType,
-            media: notification.media,
+            mediaUrl: notification.mediaUrl,
             createdAt: new Date().toString()
           };
           if (notification.type === 'IMAGE') {
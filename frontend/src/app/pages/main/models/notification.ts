@@ -6,5 +6,5 @@ export interface Notification {
   messageType?: 'TEXT' | 'IMAGE' | 'VIDEO' | 'AUDIO';
   type?: 'SEEN' | 'MESSAGE' | 'IMAGE' | 'VIDEO' | 'AUDIO';
   chatName?: string;
-  media?: Array<string>;
+  mediaUrl?: string;
 }
@@ -8,14 +8,20 @@ import { filter, map } from 'rxjs/operators';
 import { StrictHttpResponse } from '../../strict-http-response';
 import { RequestBuilder } from '../../request-builder';
 
-import { UserResponse } from '../../models/user-response';
+import { UserPageResponse } from '../../models/user-page-response';
 
-export interface GetAllUsers$Params {
+export interface GetUsers$Params {
+  q?: string;
+  page?: number;
+  size?: number;
 }
 
-export function getAllUsers(http: HttpClient, rootUrl: string, params?: GetAllUsers$Params, context?: HttpContext): Observable<StrictHttpResponse<Array<UserResponse>>> {
-  const rb = new RequestBuilder(rootUrl, getAllUsers.PATH, 'get');
+export function getUsers(http: HttpClient, rootUrl: string, params?: GetUsers$Params, context?: HttpContext): Observable<StrictHttpResponse<UserPageResponse>> {
+  const rb = new RequestBuilder(rootUrl, getUsers.PATH, 'get');
   if (params) {
+    rb.query('q', params.q, {});
+    rb.query('page', params.page, {});
+    rb.query('size', params.size, {});
   }
 
   return http.request(
@@ -23,9 +29,9 @@ export function getAllUsers(http: HttpClient, rootUrl: string, params?: GetAllUs
   ).pipe(
     filter((r: any): r is HttpResponse<any> => r instanceof HttpResponse),
     map((r: HttpResponse<any>) => {
-      return r as StrictHttpResponse<Array<UserResponse>>;
+      return r as StrictHttpResponse<UserPageResponse>;
     })
   );
 }
 
-getAllUsers.PATH = '/api/v1/users';
+getUsers.PATH = '/api/v1/users';
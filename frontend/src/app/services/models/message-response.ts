@@ -6,7 +6,9 @@ export interface MessageResponse {
   content?: string;
   createdAt?: string;
   id?: string;
-  media?: Array<string>;
+  mediaContentType?: string;
+  mediaSize?: number;
+  mediaUrl?: string;
   recipientId?: string;
   senderId?: string;
   state?: 'SENT' | 'SEEN';
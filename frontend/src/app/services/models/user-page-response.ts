@@ -0,0 +1,11 @@
+/* tslint:disable */
+/* eslint-disable */
+/* Code generated by ng-openapi-gen DO NOT EDIT. */
+
+import { UserResponse } from '../models/user-response';
+export interface UserPageResponse {
+  hasMore?: boolean;
+  page?: number;
+  size?: number;
+  users?: Array<UserResponse>;
+}
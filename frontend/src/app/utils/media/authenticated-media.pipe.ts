@@ -0,0 +1,42 @@
+// Import necessary modules and services from Angular and RxJS
+import { HttpClient } from '@angular/common/http';
+import { OnDestroy, Pipe, PipeTransform } from '@angular/core';
+import { map, Observable, of } from 'rxjs';
+import { ApiConfiguration } from '../../services/api-configuration';
+
+// Loads a media file of the API and exposes it as a local blob URL.
+// An <img src> cannot send the bearer token the media endpoint requires, so the file is fetched with the
+// HttpClient, whose Keycloak interceptor authenticates the request, and displayed from memory.
+@Pipe({
+  name: 'authenticatedMedia'
+})
+export class AuthenticatedMediaPipe implements PipeTransform, OnDestroy {
+
+  // Blob URLs created by this pipe, released when the view using it is destroyed
+  private objectUrls: Array<string> = [];
+
+  constructor(
+    private http: HttpClient,                   // HTTP client carrying the Keycloak token
+    private apiConfiguration: ApiConfiguration // Root URL of the API
+  ) { }
+
+  // Fetches the media at the given API path (e.g. "/api/v1/messages/1/media") and emits its blob URL
+  transform(mediaUrl?: string): Observable<string | undefined> {
+    if (!mediaUrl) {
+      return of(undefined);
+    }
+    return this.http.get(this.apiConfiguration.rootUrl + mediaUrl, { responseType: 'blob' }).pipe(
+      map(blob => {
+        const objectUrl = URL.createObjectURL(blob);
+        this.objectUrls.push(objectUrl);
+        return objectUrl;
+      })
+    );
+  }
+
+  // Releases the memory held by the loaded media
+  ngOnDestroy(): void {
+    this.objectUrls.forEach(objectUrl => URL.revokeObjectURL(objectUrl));
+    this.objectUrls = [];
+  }
+}
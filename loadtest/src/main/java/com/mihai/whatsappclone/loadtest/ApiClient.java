@@ -0,0 +1,124 @@
+package com.mihai.whatsappclone.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+/**
+ * The REST calls of the simulated users, made with the JDK HTTP client on virtual threads.
+ */
+public class ApiClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUrl;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    public ApiClient(URI baseUrl, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lists the chats of the user, which as its first authenticated request also creates the user in the API.
+     *
+     * @param token The access token of the user.
+     */
+    public void listChats(String token) throws IOException, InterruptedException {
+        send(token, request("/api/v1/chats").GET());
+    }
+
+    /**
+     * Creates, or finds, the chat between two users.
+     *
+     * @param token       The access token of the sender.
+     * @param senderId    The ID of the sender.
+     * @param recipientId The ID of the recipient.
+     * @return the ID of the chat.
+     */
+    public String createChat(String token, String senderId, String recipientId) throws IOException, InterruptedException {
+        String path = "/api/v1/chats?sender-id=" + encode(senderId) + "&recipient-id=" + encode(recipientId);
+        JsonNode response = objectMapper.readTree(send(token, request(path).POST(HttpRequest.BodyPublishers.noBody())));
+        return response.get("response").asText();
+    }
+
+    /**
+     * Sends a text message with one REST call, which returns once the message is saved.
+     *
+     * @param token   The access token of the sender.
+     * @param message The message request: content, sender, recipient, chat and type.
+     */
+    public void saveMessage(String token, Map<String, String> message) throws IOException, InterruptedException {
+        send(token, request("/api/v1/messages")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(message))));
+    }
+
+    /**
+     * Uploads an image to a chat.
+     *
+     * @param token  The access token of the sender.
+     * @param chatId The ID of the chat.
+     * @param image  The JPEG bytes of the image.
+     */
+    public void uploadMedia(String token, String chatId, byte[] image) throws IOException, InterruptedException {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(image);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        send(token, request("/api/v1/messages/upload-media?chat-id=" + encode(chatId))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())));
+    }
+
+    /**
+     * Marks the messages of a chat as seen.
+     *
+     * @param token  The access token of the reader.
+     * @param chatId The ID of the chat.
+     */
+    public void markSeen(String token, String chatId) throws IOException, InterruptedException {
+        send(token, request("/api/v1/messages?chat-id=" + encode(chatId))
+                .method("PATCH", HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private byte[] send(String token, HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(
+                request.header("Authorization", "Bearer " + token).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 300) {
+            throw new IOException(response.request().method() + " " + response.uri().getPath()
+                    + " failed with status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.mihai.whatsappclone.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of a locally running API: starts the simulated users, reports every interval and prints the
+ * latency distributions at the end.
+ * <p>
+ * The API must run with the "loadtest" profile, which accepts the tokens of the {@link StubTokenIssuer}.
+ * Increase "--users" between runs to find the point where the p99 latency stops being flat.
+ */
+public class LoadTest {
+
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    /**
+     * Heartbeats of the STOMP sessions, matching the ones of the API.
+     */
+    private static final long HEARTBEAT_INTERVAL = 10000;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY); // Frames carry one notification or an array.
+        WebSocketStompClient stompClient = createStompClient(objectMapper);
+        ApiClient apiClient = new ApiClient(options.baseUrl(), objectMapper);
+        StubTokenIssuer tokenIssuer = new StubTokenIssuer(options.jwtSecret(), options.jwtIssuer(),
+                options.rampUp().plus(options.duration()).plusHours(1));
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        byte[] image = createImage();
+
+        System.out.printf("Starting %d users against %s over %ds, running for %ds, sending over %s%n",
+                options.users(), options.baseUrl(), options.rampUp().toSeconds(), options.duration().toSeconds(),
+                options.sendPath());
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> metrics.reportInterval(System.out),
+                REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + options.rampUp().plus(options.duration()).toNanos();
+        long startInterval = options.rampUp().toNanos() / options.users();
+
+        // Start the users evenly over the ramp-up, each pair sharing one chat.
+        List<Thread> threads = new ArrayList<>(options.users());
+        SimulatedUser.ChatPair pair = null;
+        for (int index = 0; index < options.users(); index++) {
+            if (index % 2 == 0) {
+                pair = new SimulatedUser.ChatPair();
+            }
+            SimulatedUser user = new SimulatedUser(index, tokenIssuer, pair, options, stompClient, apiClient,
+                    metrics, image, endNanos);
+            threads.add(Thread.ofVirtual().name("user-" + index).start(user));
+            TimeUnit.NANOSECONDS.sleep(startInterval);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.shutdownNow();
+        metrics.reportSummary(System.out, System.nanoTime() - startNanos);
+        stompClient.stop();
+        System.exit(0);
+    }
+
+    private static WebSocketStompClient createStompClient(ObjectMapper objectMapper) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("stomp-heartbeat-");
+        scheduler.initialize();
+
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(converter);
+        stompClient.setTaskScheduler(scheduler);
+        stompClient.setDefaultHeartbeat(new long[]{HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL});
+        return stompClient;
+    }
+
+    /**
+     * Draws the image uploaded by the users, large enough for the API to generate its derivatives.
+     *
+     * @return the bytes of a 640x480 JPEG.
+     */
+    private static byte[] createImage() throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int y = 0; y < image.getHeight(); y += 40) {
+            for (int x = 0; x < image.getWidth(); x += 40) {
+                graphics.setColor(new Color(x % 256, y % 256, (x + y) % 256));
+                graphics.fillRect(x, y, 40, 40);
+            }
+        }
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,147 @@
+package com.mihai.whatsappclone.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the latencies and counters of a run.
+ * <p>
+ * Latencies are recorded in microseconds into HdrHistogram recorders, which every reporting interval
+ * are swapped for a fresh histogram and accumulated into the totals of the run.
+ */
+public class LoadTestMetrics {
+
+    /**
+     * The highest latency tracked, longer ones are clamped to it.
+     */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    /**
+     * Time from sending a text message to its notification reaching the recipient.
+     */
+    private final Recorder deliveryLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+    /**
+     * Time from sending a text message to its acknowledgement reaching the sender.
+     */
+    private final Recorder ackLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+    /**
+     * Time of the REST calls (chat creation, media upload, seen).
+     */
+    private final Recorder restLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+    private final Histogram totalDelivery = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram totalAck = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram totalRest = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+    private Histogram intervalDelivery;
+    private Histogram intervalAck;
+    private Histogram intervalRest;
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder acknowledged = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder timedOut = new LongAdder();
+    final LongAdder mediaUploaded = new LongAdder();
+    final LongAdder seenMarked = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder frames = new LongAdder(); // Notification frames received, each carrying one or more notifications.
+    final LongAdder notifications = new LongAdder();
+
+    private long lastDelivered;
+    private long lastReportNanos = System.nanoTime();
+    private final long startNanos = lastReportNanos;
+
+    void recordDelivery(long sentNanos) {
+        deliveryLatency.recordValue(toMicros(System.nanoTime() - sentNanos));
+        delivered.increment();
+    }
+
+    void recordAck(long sentNanos) {
+        ackLatency.recordValue(toMicros(System.nanoTime() - sentNanos));
+        acknowledged.increment();
+    }
+
+    void recordRest(long startedNanos) {
+        restLatency.recordValue(toMicros(System.nanoTime() - startedNanos));
+    }
+
+    /**
+     * Prints one line for the interval since the previous report, and adds it to the totals.
+     *
+     * @param out The stream to print to.
+     */
+    synchronized void reportInterval(PrintStream out) {
+        intervalDelivery = deliveryLatency.getIntervalHistogram(intervalDelivery);
+        intervalAck = ackLatency.getIntervalHistogram(intervalAck);
+        intervalRest = restLatency.getIntervalHistogram(intervalRest);
+        totalDelivery.add(intervalDelivery);
+        totalAck.add(intervalAck);
+        totalRest.add(intervalRest);
+
+        long now = System.nanoTime();
+        long deliveredNow = delivered.sum();
+        double seconds = (now - lastReportNanos) / 1e9;
+        out.printf("%6.0fs users=%d delivered/s=%.0f delivery p50=%.1fms p99=%.1fms ack p99=%.1fms rest p99=%.1fms rejected=%d timeouts=%d errors=%d%n",
+                (now - startNanos) / 1e9,
+                connected.sum(),
+                (deliveredNow - lastDelivered) / seconds,
+                millis(intervalDelivery.getValueAtPercentile(50)),
+                millis(intervalDelivery.getValueAtPercentile(99)),
+                millis(intervalAck.getValueAtPercentile(99)),
+                millis(intervalRest.getValueAtPercentile(99)),
+                rejected.sum(),
+                timedOut.sum(),
+                errors.sum());
+        lastDelivered = deliveredNow;
+        lastReportNanos = now;
+    }
+
+    /**
+     * Prints the totals of the run: counters, throughput and the latency distributions.
+     *
+     * @param out            The stream to print to.
+     * @param measuredNanos The duration of the measured phase, used for the throughput.
+     */
+    synchronized void reportSummary(PrintStream out, long measuredNanos) {
+        reportInterval(out);
+        double seconds = measuredNanos / 1e9;
+
+        out.println();
+        out.printf("sent=%d delivered=%d acknowledged=%d rejected=%d timeouts=%d media=%d seen=%d errors=%d%n",
+                sent.sum(), delivered.sum(), acknowledged.sum(), rejected.sum(), timedOut.sum(),
+                mediaUploaded.sum(), seenMarked.sum(), errors.sum());
+        out.printf("throughput: %.0f messages/s sent, %.0f notifications/s delivered%n",
+                sent.sum() / seconds, delivered.sum() / seconds);
+        out.printf("frames: %d frames carrying %d notifications%n", frames.sum(), notifications.sum());
+        printDistribution(out, "send-to-notification latency", totalDelivery);
+        printDistribution(out, "send-to-ack latency", totalAck);
+        printDistribution(out, "rest latency", totalRest);
+    }
+
+    private static void printDistribution(PrintStream out, String name, Histogram histogram) {
+        out.printf("%s (ms, n=%d): p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                name,
+                histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
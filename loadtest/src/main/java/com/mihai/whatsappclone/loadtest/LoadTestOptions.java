@@ -0,0 +1,109 @@
+package com.mihai.whatsappclone.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The parameters of a load-test run, read from "--name=value" command line arguments.
+ *
+ * @param baseUrl        The base URL of the API under test.
+ * @param users          The number of simulated users; users are paired into chats, so it must be even.
+ * @param duration       How long the users keep sending messages once all of them are connected.
+ * @param rampUp         The time over which the users are started.
+ * @param thinkTime      The mean pause of a user between two actions.
+ * @param mediaRatio     The share of the actions that upload an image instead of sending a text message.
+ * @param seenRatio      The share of the actions that mark the chat as seen.
+ * @param ackTimeout     How long a user waits for the acknowledgement of a message.
+ * @param sendPath       How text messages are sent: over STOMP, batched by the API, or with one REST call each.
+ * @param jwtSecret      The HS256 secret shared with the "loadtest" profile of the API.
+ * @param jwtIssuer      The issuer of the minted tokens.
+ */
+public record LoadTestOptions(URI baseUrl,
+                              int users,
+                              Duration duration,
+                              Duration rampUp,
+                              Duration thinkTime,
+                              double mediaRatio,
+                              double seenRatio,
+                              Duration ackTimeout,
+                              SendPath sendPath,
+                              String jwtSecret,
+                              String jwtIssuer) {
+
+    /**
+     * Parses the command line arguments, using the defaults for the missing ones.
+     *
+     * @param args The arguments, e.g. "--users=2000 --duration=120".
+     * @return the options of the run.
+     * @throws IllegalArgumentException if an argument is unknown or invalid.
+     */
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(Map.ofEntries(
+                Map.entry("base-url", "http://localhost:8080"),
+                Map.entry("users", "1000"),
+                Map.entry("duration", "120"),
+                Map.entry("ramp-up", "30"),
+                Map.entry("think-time", "1000"),
+                Map.entry("media-ratio", "0.02"),
+                Map.entry("seen-ratio", "0.2"),
+                Map.entry("ack-timeout", "10000"),
+                Map.entry("send-path", "stomp"),
+                Map.entry("jwt-secret", System.getenv().getOrDefault("LOADTEST_JWT_SECRET", "whatsapp-clone-loadtest-shared-secret")),
+                Map.entry("jwt-issuer", "http://localhost:9090/realms/whatsapp-clone")
+        ));
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected an argument like --name=value, got " + arg);
+            }
+            String name = arg.substring(2, separator);
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown argument " + name + ", expected one of " + values.keySet());
+            }
+            values.put(name, arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                URI.create(values.get("base-url")),
+                Integer.parseInt(values.get("users")),
+                Duration.ofSeconds(Long.parseLong(values.get("duration"))),
+                Duration.ofSeconds(Long.parseLong(values.get("ramp-up"))),
+                Duration.ofMillis(Long.parseLong(values.get("think-time"))),
+                Double.parseDouble(values.get("media-ratio")),
+                Double.parseDouble(values.get("seen-ratio")),
+                Duration.ofMillis(Long.parseLong(values.get("ack-timeout"))),
+                SendPath.valueOf(values.get("send-path").toUpperCase(Locale.ROOT)),
+                values.get("jwt-secret"),
+                values.get("jwt-issuer")
+        );
+        if (options.users() < 2 || options.users() % 2 != 0) {
+            throw new IllegalArgumentException("The number of users must be even and at least 2");
+        }
+        if (options.mediaRatio() + options.seenRatio() > 1) {
+            throw new IllegalArgumentException("The media and seen ratios cannot exceed 1 together");
+        }
+        return options;
+    }
+
+    /**
+     * Resolves the raw WebSocket transport of the SockJS "/ws" endpoint.
+     *
+     * @return the WebSocket URL of the STOMP endpoint.
+     */
+    public String webSocketUrl() {
+        String scheme = "https".equals(baseUrl.getScheme()) ? "wss" : "ws";
+        return scheme + "://" + baseUrl.getAuthority() + "/ws/websocket";
+    }
+
+    /**
+     * The ways the simulated users send their text messages.
+     */
+    public enum SendPath {
+        STOMP, // SEND frames to "/app/chat.send", persisted in batches and acknowledged by an ACK notification.
+        REST // POST /api/v1/messages, persisted one by one and acknowledged by the response.
+    }
+}
@@ -0,0 +1,22 @@
+package com.mihai.whatsappclone.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The fields of a notification of the API that the simulated users read.
+ *
+ * @param type            The notification type, e.g. MESSAGE, ACK or REJECTED.
+ * @param chatId          The ID of the chat.
+ * @param messageId       The ID of the message.
+ * @param clientMessageId The ID chosen by the sender, echoed back in ACK and REJECTED notifications.
+ * @param content         The content of a text message.
+ * @param senderId        The ID of the sender.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record NotificationFrame(String type,
+                                String chatId,
+                                String messageId,
+                                String clientMessageId,
+                                String content,
+                                String senderId) {
+}
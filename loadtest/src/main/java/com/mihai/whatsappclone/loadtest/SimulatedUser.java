@@ -0,0 +1,309 @@
+package com.mihai.whatsappclone.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One simulated user, run on its own virtual thread.
+ * <p>
+ * The user connects over STOMP, subscribes to its notifications and, together with its partner, sets up a
+ * chat. Until the end of the run it then loops: pause for an exponentially distributed think time, and
+ * either send a text message and wait for its acknowledgement, upload an image, or mark the chat as seen.
+ * Text messages are sent over STOMP, or with REST calls to compare both paths under the same load.
+ * Text messages carry the time they were sent, so the partner receiving the notification records the
+ * end-to-end latency.
+ */
+public class SimulatedUser extends StompSessionHandlerAdapter implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulatedUser.class);
+
+    /**
+     * Prefix of the content of the measured messages, followed by the send time in nanoseconds.
+     */
+    private static final String CONTENT_PREFIX = "lt:";
+
+    private static final String CONTENT_FILLER = ":the quick brown fox jumps over the lazy dog";
+
+    /**
+     * How long a user stays connected after its last action, so the notifications in flight still arrive.
+     */
+    private static final long DRAIN_MILLIS = 2000;
+
+    private final int index;
+    private final String userId;
+    private final String partnerId;
+    private final String token;
+    private final ChatPair pair;
+    private final LoadTestOptions options;
+    private final WebSocketStompClient stompClient;
+    private final ApiClient apiClient;
+    private final LoadTestMetrics metrics;
+    private final byte[] image;
+    private final long endNanos;
+
+    /**
+     * Messages waiting for their acknowledgement, keyed by client message ID.
+     */
+    private final Map<String, PendingMessage> pendingMessages = new ConcurrentHashMap<>();
+
+    SimulatedUser(int index,
+                  StubTokenIssuer tokenIssuer,
+                  ChatPair pair,
+                  LoadTestOptions options,
+                  WebSocketStompClient stompClient,
+                  ApiClient apiClient,
+                  LoadTestMetrics metrics,
+                  byte[] image,
+                  long endNanos) {
+        this.index = index;
+        this.userId = StubTokenIssuer.subjectOf(index);
+        this.partnerId = StubTokenIssuer.subjectOf(index ^ 1);
+        this.token = tokenIssuer.issue(index);
+        this.pair = pair;
+        this.options = options;
+        this.stompClient = stompClient;
+        this.apiClient = apiClient;
+        this.metrics = metrics;
+        this.image = image;
+        this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+        StompSession session = null;
+        try {
+            // The first authenticated request creates the user, the partner can only start a chat afterwards.
+            long started = System.nanoTime();
+            apiClient.listChats(token);
+            metrics.recordRest(started);
+
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + token);
+            session = stompClient.connectAsync(options.webSocketUrl(), new WebSocketHttpHeaders(), connectHeaders, this)
+                    .get(30, TimeUnit.SECONDS);
+            session.subscribe("/users/chat", this);
+            metrics.connected.increment();
+
+            String chatId = setUpChat();
+            while (System.nanoTime() < endNanos) {
+                think();
+                act(session, chatId);
+            }
+            Thread.sleep(DRAIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            metrics.errors.increment();
+            log.warn("User {} stopped: {}", index, e.toString());
+            // Let a waiting partner fail fast instead of waiting for its timeout.
+            pair.fail(e);
+        } finally {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+                metrics.connected.decrement();
+            }
+        }
+    }
+
+    /**
+     * The even user of a pair creates the chat once its partner exists, the odd one waits for it.
+     *
+     * @return the ID of the chat of the pair.
+     */
+    private String setUpChat() throws Exception {
+        long timeout = options.rampUp().toSeconds() + 60;
+        if (index % 2 == 1) {
+            pair.recipientReady().complete(null);
+            return pair.chatId().get(timeout, TimeUnit.SECONDS);
+        }
+
+        pair.recipientReady().get(timeout, TimeUnit.SECONDS);
+        long started = System.nanoTime();
+        String chatId = apiClient.createChat(token, userId, partnerId);
+        metrics.recordRest(started);
+        pair.chatId().complete(chatId);
+        return chatId;
+    }
+
+    private void think() throws InterruptedException {
+        // Exponential think times make the users independent arrivals rather than a synchronized wave.
+        double mean = options.thinkTime().toMillis();
+        long pause = (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        long remaining = TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime());
+        Thread.sleep(Math.max(0, Math.min(pause, remaining)));
+    }
+
+    private void act(StompSession session, String chatId) throws Exception {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < options.mediaRatio()) {
+            long started = System.nanoTime();
+            apiClient.uploadMedia(token, chatId, image);
+            metrics.recordRest(started);
+            metrics.mediaUploaded.increment();
+        } else if (roll < options.mediaRatio() + options.seenRatio()) {
+            long started = System.nanoTime();
+            apiClient.markSeen(token, chatId);
+            metrics.recordRest(started);
+            metrics.seenMarked.increment();
+        } else if (options.sendPath() == LoadTestOptions.SendPath.REST) {
+            postMessage(chatId);
+        } else {
+            sendMessage(session, chatId);
+        }
+    }
+
+    /**
+     * Sends a text message with a REST call, whose response acknowledges it.
+     */
+    private void postMessage(String chatId) throws IOException, InterruptedException {
+        long sentNanos = System.nanoTime();
+        metrics.sent.increment();
+        apiClient.saveMessage(token, Map.of(
+                "content", CONTENT_PREFIX + sentNanos + CONTENT_FILLER,
+                "senderId", userId,
+                "recipientId", partnerId,
+                "chatId", chatId,
+                "type", "TEXT"
+        ));
+        metrics.recordAck(sentNanos);
+    }
+
+    /**
+     * Sends a text message and waits for the API to acknowledge or reject it.
+     */
+    private void sendMessage(StompSession session, String chatId) throws InterruptedException {
+        String clientMessageId = UUID.randomUUID().toString();
+        long sentNanos = System.nanoTime();
+        PendingMessage pending = new PendingMessage(sentNanos, new CompletableFuture<>());
+        pendingMessages.put(clientMessageId, pending);
+
+        session.send("/app/chat.send", Map.of(
+                "content", CONTENT_PREFIX + sentNanos + CONTENT_FILLER,
+                "recipientId", partnerId,
+                "chatId", chatId,
+                "type", "TEXT",
+                "clientMessageId", clientMessageId
+        ));
+        metrics.sent.increment();
+
+        try {
+            pending.outcome().get(options.ackTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            metrics.timedOut.increment();
+        } catch (ExecutionException e) {
+            metrics.errors.increment();
+        } finally {
+            pendingMessages.remove(clientMessageId);
+        }
+    }
+
+    @Override
+    @NonNull
+    public Type getPayloadType(@NonNull StompHeaders headers) {
+        return NotificationFrame[].class;
+    }
+
+    @Override
+    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+        if (payload != null) {
+            NotificationFrame[] notifications = (NotificationFrame[]) payload;
+            metrics.frames.increment();
+            metrics.notifications.add(notifications.length);
+            for (NotificationFrame notification : notifications) {
+                handleNotification(notification);
+            }
+        }
+    }
+
+    /**
+     * Records the latency of a delivered message or acknowledgement.
+     */
+    private void handleNotification(NotificationFrame notification) {
+        if (notification == null || notification.type() == null) {
+            return;
+        }
+        switch (notification.type()) {
+            case "MESSAGE" -> {
+                String content = notification.content();
+                if (content != null && content.startsWith(CONTENT_PREFIX)) {
+                    int end = content.indexOf(':', CONTENT_PREFIX.length());
+                    metrics.recordDelivery(Long.parseLong(content.substring(CONTENT_PREFIX.length(), end)));
+                }
+            }
+            case "ACK" -> {
+                PendingMessage pending = pendingMessages.get(notification.clientMessageId());
+                if (pending != null) {
+                    metrics.recordAck(pending.sentNanos());
+                    pending.outcome().complete(true);
+                }
+            }
+            case "REJECTED" -> {
+                PendingMessage pending = pendingMessages.get(notification.clientMessageId());
+                if (pending != null) {
+                    metrics.rejected.increment();
+                    pending.outcome().complete(false);
+                }
+            }
+            default -> {
+                // SEEN, IMAGE and presence notifications are not measured.
+            }
+        }
+    }
+
+    @Override
+    public void handleException(@NonNull StompSession session, StompCommand command, @NonNull StompHeaders headers,
+                                @NonNull byte[] payload, @NonNull Throwable exception) {
+        metrics.errors.increment();
+    }
+
+    @Override
+    public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
+        metrics.errors.increment();
+        pendingMessages.values().forEach(pending -> pending.outcome().completeExceptionally(exception));
+    }
+
+    /**
+     * A sent message waiting for its acknowledgement.
+     *
+     * @param sentNanos The time it was sent.
+     * @param outcome   Completed with true once acknowledged, false once rejected.
+     */
+    private record PendingMessage(long sentNanos, CompletableFuture<Boolean> outcome) {
+    }
+
+    /**
+     * The rendezvous of the two users sharing a chat.
+     *
+     * @param recipientReady Completed once the odd user exists in the API.
+     * @param chatId         Completed with the chat created by the even user.
+     */
+    record ChatPair(CompletableFuture<Void> recipientReady, CompletableFuture<String> chatId) {
+
+        ChatPair() {
+            this(new CompletableFuture<>(), new CompletableFuture<>());
+        }
+
+        void fail(Throwable cause) {
+            recipientReady.completeExceptionally(cause);
+            chatId.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mihai.whatsappclone.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stands in for Keycloak: mints HS256 tokens carrying the claims the API reads from a Keycloak token.
+ * <p>
+ * The subjects are derived from the index of the simulated user, so repeated runs reuse the same users
+ * and chats instead of growing the database.
+ */
+public class StubTokenIssuer {
+
+    private final MACSigner signer;
+    private final String issuer;
+    private final Duration validity;
+
+    public StubTokenIssuer(String secret, String issuer, Duration validity) {
+        try {
+            this.signer = new MACSigner(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (JOSEException e) {
+            throw new IllegalArgumentException("The JWT secret must be at least 32 bytes long", e);
+        }
+        this.issuer = issuer;
+        this.validity = validity;
+    }
+
+    /**
+     * Returns the subject, which is also the user ID in the API, of a simulated user.
+     *
+     * @param index The index of the simulated user.
+     * @return a stable UUID for the index.
+     */
+    public static String subjectOf(int index) {
+        return UUID.nameUUIDFromBytes(("loadtest-user-" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Mints the access token of a simulated user.
+     *
+     * @param index The index of the simulated user.
+     * @return the serialized, signed token.
+     */
+    public String issue(int index) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject(subjectOf(index))
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(validity)))
+                .claim("email", "loadtest-user-" + index + "@loadtest.local")
+                .claim("given_name", "Load")
+                .claim("family_name", "User " + index)
+                .claim("nickname", "loadtest-user-" + index)
+                // Read by the KeycloakJwtAuthenticationConverter of the API.
+                .claim("resource_access", Map.of("account", Map.of("roles", List.of("manage-account"))))
+                .build();
+
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        try {
+            jwt.sign(signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not sign the token of user " + index, e);
+        }
+        return jwt.serialize();
+    }
+}